@@ -6,14 +6,30 @@
 
 package dev.latvian.mods.rhino;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Cache of generated classes and data structures to access Java runtime
  * from JavaScript.
+ * <p>
+ * All operations are lock free, so scripts running on several threads
+ * against the same scope don't contend on the cache. Reflection information
+ * can optionally be limited to a maximum number of classes, in which case
+ * classes that haven't been used recently are evicted first.
  *
  * @author Igor Bukanov
  * @since Rhino 1.5 Release 5
@@ -23,12 +39,50 @@ public class ClassCache implements Serializable {
 	private static final long serialVersionUID = -8866246036237312215L;
 	private static final Object AKEY = "ClassCache";
 	private volatile boolean cachingIsEnabled = true;
-	private transient Map<Class<?>, JavaMembers> classTable;
-	private transient Map<JavaAdapter.JavaAdapterSignature, Class<?>> classAdapterCache;
-	private transient Map<Class<?>, Object> interfaceAdapterCache;
-	private int generatedClassSerial;
+	private transient volatile Map<Class<?>, Entry> classTable;
+	// Classes in the order they were cached, scanned by the eviction clock
+	private transient volatile Queue<Class<?>> evictionQueue;
+	private transient volatile Map<JavaAdapter.JavaAdapterSignature, Class<?>> classAdapterCache;
+	private transient volatile Map<Class<?>, Object> interfaceAdapterCache;
+	private final AtomicInteger generatedClassSerial = new AtomicInteger();
+	private volatile int maxCachedClasses;
+	private transient LongAdder hits;
+	private transient LongAdder misses;
+	private transient LongAdder evictions;
 	private Scriptable associatedScope;
 
+	/**
+	 * Reflection information of a class with the reference bit of the eviction clock.
+	 */
+	private static final class Entry {
+		final JavaMembers members;
+		volatile boolean referenced;
+
+		Entry(JavaMembers members) {
+			this.members = members;
+		}
+	}
+
+	public ClassCache() {
+		init();
+	}
+
+	private void init() {
+		classTable = new ConcurrentHashMap<>();
+		evictionQueue = new ConcurrentLinkedQueue<>();
+		classAdapterCache = new ConcurrentHashMap<>();
+		interfaceAdapterCache = new ConcurrentHashMap<>();
+		hits = new LongAdder();
+		misses = new LongAdder();
+		evictions = new LongAdder();
+	}
+
+	@Serial
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		init();
+	}
+
 	/**
 	 * Search for ClassCache object in the given scope.
 	 * The method first calls
@@ -74,10 +128,25 @@ public class ClassCache implements Serializable {
 	/**
 	 * Empty caches of generated Java classes and Java reflection information.
 	 */
-	public synchronized void clearCaches() {
-		classTable = null;
-		classAdapterCache = null;
-		interfaceAdapterCache = null;
+	public void clearCaches() {
+		classTable = new ConcurrentHashMap<>();
+		evictionQueue = new ConcurrentLinkedQueue<>();
+		classAdapterCache = new ConcurrentHashMap<>();
+		interfaceAdapterCache = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Remove everything cached for classes defined by the given class loader,
+	 * so that the classes can be collected once the loader is discarded.
+	 * Cached reflection information references its class, so entries have
+	 * to be removed explicitly before that can happen.
+	 */
+	public void clearCaches(ClassLoader loader) {
+		classTable.values().removeIf(entry -> entry.members.getReflectedClass().getClassLoader() == loader);
+		classTable.keySet().removeIf(c -> c.getClassLoader() == loader);
+		evictionQueue.removeIf(c -> c.getClassLoader() == loader);
+		classAdapterCache.values().removeIf(c -> c.getClassLoader() == loader);
+		interfaceAdapterCache.keySet().removeIf(c -> c.getClassLoader() == loader);
 	}
 
 	/**
@@ -105,7 +174,7 @@ public class ClassCache implements Serializable {
 	 * @param enabled if true, caching is enabled
 	 * @see #clearCaches()
 	 */
-	public synchronized void setCachingEnabled(boolean enabled) {
+	public void setCachingEnabled(boolean enabled) {
 		if (enabled == cachingIsEnabled) {
 			return;
 		}
@@ -116,21 +185,177 @@ public class ClassCache implements Serializable {
 	}
 
 	/**
-	 * @return a map from classes to associated JavaMembers objects
+	 * @return maximum number of classes to keep reflection information of, 0 if unlimited
+	 */
+	public int getMaxCachedClasses() {
+		return maxCachedClasses;
+	}
+
+	/**
+	 * Limit the number of classes whose reflection information is cached.
+	 * Once the limit is exceeded, classes that weren't looked up since the
+	 * last time the eviction clock passed them are evicted.
+	 *
+	 * @param max maximum number of classes, 0 for no limit
 	 */
-	Map<Class<?>, JavaMembers> getClassCacheMap() {
-		if (classTable == null) {
-			// Use 1 as concurrency level here and for other concurrent hash maps
-			// as we don't expect high levels of sustained concurrent writes.
-			classTable = new ConcurrentHashMap<>(16, 0.75f, 1);
+	public void setMaxCachedClasses(int max) {
+		if (max < 0) {
+			throw new IllegalArgumentException();
 		}
-		return classTable;
+
+		maxCachedClasses = max;
+		evict();
 	}
 
-	Map<JavaAdapter.JavaAdapterSignature, Class<?>> getInterfaceAdapterCacheMap() {
-		if (classAdapterCache == null) {
-			classAdapterCache = new ConcurrentHashMap<>(16, 0.75f, 1);
+	/**
+	 * @return number of lookups that found cached reflection information
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return number of lookups that had to reflect the class
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return number of classes evicted because of {@link #setMaxCachedClasses(int)}
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return number of classes with cached reflection information
+	 */
+	public int getCachedClassCount() {
+		return classTable.size();
+	}
+
+	/**
+	 * Reflect the given classes ahead of time, so that the first script that
+	 * touches one of them doesn't have to. Every class is reflected on its own
+	 * task of <code>pool</code>; classes that can't be reflected are skipped.
+	 * <p>
+	 * Reflection reads the function prototype of the associated scope, so
+	 * this should run before scripts start modifying the top level scope.
+	 *
+	 * @param classes classes to reflect
+	 * @param pool    the pool to reflect on
+	 * @return future that completes once all classes are cached
+	 * @see JavaMembersSnapshot
+	 */
+	public CompletableFuture<Void> preload(Collection<Class<?>> classes, ForkJoinPool pool) {
+		List<CompletableFuture<Void>> tasks = new ArrayList<>(classes.size());
+
+		for (Class<?> cl : classes) {
+			tasks.add(CompletableFuture.runAsync(() -> {
+				try {
+					JavaMembers.lookupClass(this, cl, cl, false);
+				} catch (RuntimeException | LinkageError ex) {
+					// Hidden by the class shutter or failed to link, the script will report it
+				}
+			}, pool));
+		}
+
+		return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]));
+	}
+
+	/**
+	 * @return reflection information of all cached classes
+	 */
+	List<JavaMembers> getCachedJavaMembers() {
+		List<JavaMembers> list = new ArrayList<>(classTable.size());
+
+		for (Entry entry : classTable.values()) {
+			list.add(entry.members);
+		}
+
+		return list;
+	}
+
+	/**
+	 * @return cached reflection information of the class or null
+	 */
+	JavaMembers getJavaMembers(Class<?> cl) {
+		Entry entry = classTable.get(cl);
+
+		if (entry == null) {
+			return null;
+		}
+
+		if (!entry.referenced) {
+			entry.referenced = true;
+		}
+
+		hits.increment();
+		return entry.members;
+	}
+
+	/**
+	 * Called once per lookup that had to reflect a class, however many
+	 * superclasses it tried.
+	 */
+	void countMiss() {
+		misses.increment();
+	}
+
+	void cacheJavaMembers(Class<?> cl, JavaMembers members) {
+		if (!cachingIsEnabled) {
+			return;
 		}
+
+		if (classTable.putIfAbsent(cl, new Entry(members)) == null) {
+			evictionQueue.add(cl);
+
+			if (maxCachedClasses > 0) {
+				evict();
+			}
+		}
+	}
+
+	/**
+	 * Second chance eviction: classes at the head of the queue that were used
+	 * since they were last checked move to the tail, the others are removed.
+	 */
+	private void evict() {
+		int max = maxCachedClasses;
+
+		if (max <= 0) {
+			return;
+		}
+
+		Map<Class<?>, Entry> table = classTable;
+		Queue<Class<?>> queue = evictionQueue;
+
+		// Other threads keep setting reference bits, give up after two rounds
+		for (int budget = table.size() * 2; budget > 0 && table.size() > max; budget--) {
+			Class<?> cl = queue.poll();
+
+			if (cl == null) {
+				break;
+			}
+
+			Entry entry = table.get(cl);
+
+			if (entry == null) {
+				continue;
+			} else if (entry.referenced) {
+				entry.referenced = false;
+				queue.add(cl);
+			} else if (table.remove(cl, entry)) {
+				evictions.increment();
+			} else if (table.containsKey(cl)) {
+				// Replaced by another thread, keep the class in the queue
+				queue.add(cl);
+			}
+		}
+	}
+
+	Map<JavaAdapter.JavaAdapterSignature, Class<?>> getInterfaceAdapterCacheMap() {
 		return classAdapterCache;
 	}
 
@@ -138,19 +363,16 @@ public class ClassCache implements Serializable {
 	 * Internal engine method to return serial number for generated classes
 	 * to ensure name uniqueness.
 	 */
-	public final synchronized int newClassSerialNumber() {
-		return ++generatedClassSerial;
+	public final int newClassSerialNumber() {
+		return generatedClassSerial.incrementAndGet();
 	}
 
 	Object getInterfaceAdapter(Class<?> cl) {
-		return interfaceAdapterCache == null ? null : interfaceAdapterCache.get(cl);
+		return interfaceAdapterCache.get(cl);
 	}
 
-	synchronized void cacheInterfaceAdapter(Class<?> cl, Object iadapter) {
+	void cacheInterfaceAdapter(Class<?> cl, Object iadapter) {
 		if (cachingIsEnabled) {
-			if (interfaceAdapterCache == null) {
-				interfaceAdapterCache = new ConcurrentHashMap<>(16, 0.75f, 1);
-			}
 			interfaceAdapterCache.put(cl, iadapter);
 		}
 	}
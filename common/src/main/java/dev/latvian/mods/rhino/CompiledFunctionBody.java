@@ -0,0 +1,29 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package dev.latvian.mods.rhino;
+
+/**
+ * Body of an interpreted function that was translated to JVM bytecode by
+ * {@link IcodeCompiler} after it became hot.
+ * <p>
+ * Implementations are generated at runtime and defined by their own class
+ * loader, which is why this interface is public. It is not meant to be
+ * implemented or called outside of the interpreter.
+ */
+public interface CompiledFunctionBody {
+	/**
+	 * Execute the function body.
+	 *
+	 * @param fn      the function being called
+	 * @param cx      the current Context
+	 * @param scope   the parent scope of the function
+	 * @param thisObj the value of <code>this</code>
+	 * @param args    the call arguments
+	 * @return the result of the call
+	 */
+	Object call(NativeFunction fn, Context cx, Scriptable scope, Scriptable thisObj, Object[] args);
+}
@@ -0,0 +1,175 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package dev.latvian.mods.rhino;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of compiled scripts, so that unchanged sources don't have to
+ * be parsed and compiled again on every reload.
+ * <p>
+ * Entries are keyed by a SHA-256 hash of the source text, its name and first
+ * line number and every compiler option that affects the generated code.
+ * Each file starts with a version stamp; entries written by a different
+ * version of the engine are discarded and recompiled.
+ * <p>
+ * Parser warnings are only reported when a script is actually compiled, not
+ * when it is loaded from the cache.
+ *
+ * @see Context#setCompiledScriptCache(CompiledScriptCache)
+ */
+public class CompiledScriptCache {
+	/**
+	 * Increment when the layout of {@link InterpreterData} or the meaning of
+	 * icode changes in a way that the stamp below wouldn't notice.
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	private static final String FILE_EXTENSION = ".rjsc";
+
+	private static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter("dev.latvian.mods.rhino.**;java.lang.Object;java.lang.String;java.lang.Number;java.lang.Double;java.lang.Integer;java.lang.Boolean;!*");
+
+	private static String versionStamp;
+
+	private static String getVersionStamp() {
+		if (versionStamp == null) {
+			String implementationVersion = ImplementationVersion.get();
+			versionStamp = "rhino-script-cache:" + FORMAT_VERSION + ':' + Icode.MIN_ICODE + ':' + Token.LAST_TOKEN + ':' + (implementationVersion == null ? "" : implementationVersion);
+		}
+
+		return versionStamp;
+	}
+
+	private final Path directory;
+
+	public CompiledScriptCache(Path directory) {
+		if (directory == null) {
+			throw new IllegalArgumentException();
+		}
+
+		this.directory = directory;
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Delete all cached scripts.
+	 */
+	public void clear() throws IOException {
+		if (!Files.isDirectory(directory)) {
+			return;
+		}
+
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				if (file.getFileName().toString().endsWith(FILE_EXTENSION)) {
+					Files.deleteIfExists(file);
+				}
+			}
+		}
+	}
+
+	String getKey(String source, String sourceName, int lineno, boolean returnFunction, boolean strict, CompilerEnvirons compilerEnv) {
+		MessageDigest digest;
+
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+
+		StringBuilder options = new StringBuilder(getVersionStamp());
+		options.append('\n').append(sourceName);
+		options.append('\n').append(lineno);
+		options.append('\n').append(returnFunction ? 'F' : 'S');
+		options.append(strict ? 'S' : '-');
+		options.append(compilerEnv.isReservedKeywordAsIdentifier() ? 'R' : '-');
+		options.append(compilerEnv.isAllowMemberExprAsFunctionName() ? 'M' : '-');
+		options.append(compilerEnv.isStrictMode() ? 'S' : '-');
+		options.append(compilerEnv.reportWarningAsError() ? 'W' : '-');
+		options.append('\n');
+		digest.update(options.toString().getBytes(StandardCharsets.UTF_8));
+		digest.update(source.getBytes(StandardCharsets.UTF_8));
+
+		byte[] hash = digest.digest();
+		StringBuilder key = new StringBuilder(hash.length * 2);
+
+		for (byte b : hash) {
+			key.append(Character.forDigit((b >> 4) & 0xF, 16));
+			key.append(Character.forDigit(b & 0xF, 16));
+		}
+
+		return key.toString();
+	}
+
+	/**
+	 * @return cached compiled script or null if there is no valid entry
+	 */
+	InterpreterData load(String key) {
+		Path file = directory.resolve(key + FILE_EXTENSION);
+
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+
+		try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			in.setObjectInputFilter(FILTER);
+
+			if (getVersionStamp().equals(in.readUTF()) && in.readObject() instanceof InterpreterData data) {
+				return data;
+			}
+		} catch (IOException | ClassNotFoundException | RuntimeException ex) {
+			// Corrupt or incompatible entry, fall through and replace it
+		}
+
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException ex) {
+			// Will be overwritten by store()
+		}
+
+		return null;
+	}
+
+	/**
+	 * Store compiled script. Failures are ignored, the script is simply
+	 * compiled again next time.
+	 */
+	void store(String key, InterpreterData data) {
+		try {
+			Files.createDirectories(directory);
+			Path temp = Files.createTempFile(directory, key, ".tmp");
+
+			try {
+				try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+					out.writeUTF(getVersionStamp());
+					out.writeObject(data);
+				}
+
+				Files.move(temp, directory.resolve(key + FILE_EXTENSION), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException | RuntimeException ex) {
+			// Cache is best effort only
+		}
+	}
+}
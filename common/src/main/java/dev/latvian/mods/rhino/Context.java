@@ -22,9 +22,12 @@ import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This class represents the runtime context of an executing script.
@@ -1116,6 +1119,48 @@ public class Context {
 		}
 	}
 
+	/**
+	 * Compiles with settings taken from another context, so that the
+	 * workers of {@link ScriptBatch} never touch the context that started
+	 * them. Errors go to the error reporter of <code>compilerEnv</code>.
+	 */
+	final Script compileString(String source, CompilerEnvirons compilerEnv, CompiledScriptCache cache, boolean strict, String sourceName, int lineno) {
+		try {
+			return (Script) compileImpl(null, source, sourceName, lineno, null, false, null, compilerEnv, cache, strict, compilerEnv.getErrorReporter());
+		} catch (IOException ioe) {
+			// Should not happen when dealing with source as string
+			throw new RuntimeException(ioe);
+		}
+	}
+
+	/**
+	 * Compiles many sources in parallel on the common {@link ForkJoinPool}.
+	 *
+	 * @param sources the scripts to compile
+	 * @return one result per source, in the same order as <code>sources</code>
+	 * @see #compileScripts(Collection, ForkJoinPool)
+	 */
+	public final List<ScriptBatch.Result> compileScripts(Collection<ScriptBatch.Source> sources) {
+		return compileScripts(sources, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Compiles many sources in parallel.
+	 * <p>
+	 * Every source is parsed and compiled on its own task of
+	 * <code>pool</code> with the settings of this context. Errors and
+	 * warnings are collected per source instead of being reported to the
+	 * context's {@link ErrorReporter}, and a source with errors doesn't stop
+	 * the others from compiling.
+	 *
+	 * @param sources the scripts to compile
+	 * @param pool    the pool to compile on
+	 * @return one result per source, in the same order as <code>sources</code>
+	 */
+	public final List<ScriptBatch.Result> compileScripts(Collection<ScriptBatch.Source> sources, ForkJoinPool pool) {
+		return ScriptBatch.compile(this, sources, pool);
+	}
+
 	/**
 	 * Compile a JavaScript function.
 	 * <p>
@@ -1162,6 +1207,21 @@ public class Context {
 		return result;
 	}
 
+	/**
+	 * Create a new JavaScript object with room for the given number of properties.
+	 *
+	 * @param scope         the scope to search for the constructor and to evaluate
+	 *                      against
+	 * @param propertyCount number of properties the caller is going to add
+	 * @return the new object
+	 */
+	public Scriptable newObject(Scriptable scope, int propertyCount) {
+		NativeObject result = new NativeObject();
+		result.ensurePropertyCapacity(propertyCount);
+		ScriptRuntime.setBuiltinProtoAndParent(result, scope, TopLevel.Builtins.Object);
+		return result;
+	}
+
 	/**
 	 * Create a new JavaScript object by executing the named constructor.
 	 * <p>
@@ -1454,6 +1514,90 @@ public class Context {
 		maximumInterpreterStackDepth = max;
 	}
 
+	/**
+	 * Returns the number of calls after which an interpreted function is
+	 * compiled to JVM bytecode.
+	 *
+	 * @return the current compile threshold, 0 if compilation is disabled
+	 * @see #setCompileThreshold(int)
+	 */
+	public final int getCompileThreshold() {
+		return compileThreshold;
+	}
+
+	/**
+	 * Sets the number of calls after which an interpreted function is
+	 * compiled to JVM bytecode. Only plain functions without closures,
+	 * try/catch/finally, generators or const variables are compiled, anything
+	 * else keeps running in the interpreter. Compiled functions are not used
+	 * while instruction observation is enabled, or for calls nested deep
+	 * enough that the Java stack could run out, and count towards
+	 * {@link #getMaximumInterpreterStackDepth()} like interpreter frames.
+	 * Defaults to 0, which disables compilation.
+	 *
+	 * @param threshold number of calls before a function is compiled
+	 * @throws IllegalArgumentException if the threshold is negative
+	 */
+	public final void setCompileThreshold(int threshold) {
+		if (sealed) {
+			onSealedMutation();
+		}
+		if (threshold < 0) {
+			throw new IllegalArgumentException("Cannot set compileThreshold to less than 0");
+		}
+		compileThreshold = threshold;
+	}
+
+	/**
+	 * Returns the cache used to skip compilation of unchanged scripts.
+	 *
+	 * @return the current compiled script cache or null if there is none
+	 * @see #setCompiledScriptCache(CompiledScriptCache)
+	 */
+	public final CompiledScriptCache getCompiledScriptCache() {
+		return compiledScriptCache;
+	}
+
+	/**
+	 * Sets the cache for compiled scripts. When set, scripts and functions
+	 * compiled with this context are looked up in the cache before being
+	 * parsed, and stored into it after a successful compilation.
+	 *
+	 * @param cache the cache to use or null to disable caching
+	 */
+	public final void setCompiledScriptCache(CompiledScriptCache cache) {
+		if (sealed) {
+			onSealedMutation();
+		}
+		compiledScriptCache = cache;
+	}
+
+	/**
+	 * Returns the scheduler that accounts for the instructions executed with
+	 * this context.
+	 *
+	 * @return the current scheduler or null if there is none
+	 * @see #setScriptScheduler(ScriptScheduler)
+	 */
+	public final ScriptScheduler getScriptScheduler() {
+		return scriptScheduler;
+	}
+
+	/**
+	 * Sets the scheduler that accounts for the instructions executed with this
+	 * context per source name. This turns on instruction counting with the check
+	 * interval of the scheduler, and turns it off again when the scheduler is removed.
+	 *
+	 * @param scheduler the scheduler to use or null to stop accounting
+	 */
+	public final void setScriptScheduler(ScriptScheduler scheduler) {
+		if (sealed) {
+			onSealedMutation();
+		}
+		scriptScheduler = scheduler;
+		setInstructionObserverThreshold(scheduler == null ? 0 : scheduler.getCheckInterval());
+	}
+
 	/**
 	 * Set the LiveConnect access filter for this context.
 	 * <p> {@link ClassShutter} may only be set if it is currently null.
@@ -1768,6 +1912,16 @@ public class Context {
 	}
 
 	private Object compileImpl(Scriptable scope, String sourceString, String sourceName, int lineno, Object securityDomain, boolean returnFunction, Evaluator compiler, ErrorReporter compilationErrorReporter) throws IOException {
+		CompilerEnvirons compilerEnv = new CompilerEnvirons();
+		compilerEnv.initFromContext(this);
+		if (compilationErrorReporter == null) {
+			compilationErrorReporter = compilerEnv.getErrorReporter();
+		}
+
+		return compileImpl(scope, sourceString, sourceName, lineno, securityDomain, returnFunction, compiler, compilerEnv, compiler == null ? compiledScriptCache : null, isStrictMode(), compilationErrorReporter);
+	}
+
+	private Object compileImpl(Scriptable scope, String sourceString, String sourceName, int lineno, Object securityDomain, boolean returnFunction, Evaluator compiler, CompilerEnvirons compilerEnv, CompiledScriptCache cache, boolean strict, ErrorReporter compilationErrorReporter) throws IOException {
 		if (sourceName == null) {
 			sourceName = "unnamed script";
 		}
@@ -1780,13 +1934,19 @@ public class Context {
 			Kit.codeBug();
 		}
 
-		CompilerEnvirons compilerEnv = new CompilerEnvirons();
-		compilerEnv.initFromContext(this);
-		if (compilationErrorReporter == null) {
-			compilationErrorReporter = compilerEnv.getErrorReporter();
+		String cacheKey = null;
+		if (cache != null) {
+			cacheKey = cache.getKey(sourceString, sourceName, lineno, returnFunction, strict, compilerEnv);
+			InterpreterData data = cache.load(cacheKey);
+			if (data != null) {
+				if (returnFunction) {
+					return InterpretedFunction.createFunction(this, scope, data, securityDomain);
+				}
+				return InterpretedFunction.createScript(data, securityDomain);
+			}
 		}
 
-		ScriptNode tree = parse(sourceString, sourceName, lineno, compilerEnv, compilationErrorReporter, returnFunction);
+		ScriptNode tree = parse(sourceString, sourceName, lineno, compilerEnv, compilationErrorReporter, returnFunction, strict);
 
 		Object bytecode;
 		try {
@@ -1799,12 +1959,16 @@ public class Context {
 			// we hit some class file limit, fall back to interpreter or report
 
 			// we have to recreate the tree because the compile call might have changed the tree already
-			tree = parse(sourceString, sourceName, lineno, compilerEnv, compilationErrorReporter, returnFunction);
+			tree = parse(sourceString, sourceName, lineno, compilerEnv, compilationErrorReporter, returnFunction, strict);
 
 			compiler = createInterpreter();
 			bytecode = compiler.compile(compilerEnv, tree, returnFunction);
 		}
 
+		if (cacheKey != null && bytecode instanceof InterpreterData data) {
+			cache.store(cacheKey, data);
+		}
+
 		Object result;
 		if (returnFunction) {
 			result = compiler.createFunctionObject(this, scope, bytecode, securityDomain);
@@ -1815,12 +1979,12 @@ public class Context {
 		return result;
 	}
 
-	private ScriptNode parse(String sourceString, String sourceName, int lineno, CompilerEnvirons compilerEnv, ErrorReporter compilationErrorReporter, boolean returnFunction) throws IOException {
+	private ScriptNode parse(String sourceString, String sourceName, int lineno, CompilerEnvirons compilerEnv, ErrorReporter compilationErrorReporter, boolean returnFunction, boolean strict) throws IOException {
 		Parser p = new Parser(compilerEnv, compilationErrorReporter);
 		if (returnFunction) {
 			p.calledByCompileFunction = true;
 		}
-		if (isStrictMode()) {
+		if (strict) {
 			p.setDefaultUseStrictDirective(true);
 		}
 
@@ -1851,7 +2015,7 @@ public class Context {
 		if (cx == null) {
 			return null;
 		}
-		if (cx.lastInterpreterFrame != null) {
+		if (cx.lastInterpreterFrame != null && cx.compiledCallDepth == 0) {
 			Evaluator evaluator = createInterpreter();
 			if (evaluator != null) {
 				return evaluator.getSourcePositionFromStack(cx, linep);
@@ -1863,6 +2027,13 @@ public class Context {
 		 */
 		StackTraceElement[] stackTrace = new Throwable().getStackTrace();
 		for (StackTraceElement st : stackTrace) {
+			if (cx.lastInterpreterFrame != null && "interpretLoop".equals(st.getMethodName()) && "dev.latvian.mods.rhino.Interpreter".equals(st.getClassName())) {
+				// Innermost script frame is interpreted
+				Evaluator evaluator = createInterpreter();
+				if (evaluator != null) {
+					return evaluator.getSourcePositionFromStack(cx, linep);
+				}
+			}
 			String file = st.getFileName();
 			if (!(file == null || file.endsWith(".java"))) {
 				int line = st.getLineNumber();
@@ -1931,6 +2102,9 @@ public class Context {
 	private Locale locale;
 	boolean useDynamicScope;
 	private int maximumInterpreterStackDepth;
+	private int compileThreshold;
+	private CompiledScriptCache compiledScriptCache;
+	ScriptScheduler scriptScheduler;
 	private WrapFactory wrapFactory;
 	private int enterCount;
 	private Object propertyListeners;
@@ -1944,6 +2118,13 @@ public class Context {
 	// interpreter invocations
 	ObjArray previousInterpreterInvocations;
 
+	// Number of compiled function bodies on the Java stack
+	int compiledCallDepth;
+
+	// Script frames below the innermost compiled body, interpreter frames
+	// started from it count on from here for the maximum stack depth
+	int compiledFrameDepth;
+
 	// For instruction counting (interpreter only)
 	int instructionCount;
 	int instructionThreshold;
@@ -1,13 +1,12 @@
 package dev.latvian.mods.rhino;
 
 import java.io.Serial;
-import java.lang.reflect.Field;
 
 public class FieldAndMethods extends NativeJavaMethod {
 	@Serial
 	private static final long serialVersionUID = -9222428244284796755L;
 
-	FieldAndMethods(Scriptable scope, MemberBox[] methods, Field field) {
+	FieldAndMethods(Scriptable scope, MemberBox[] methods, FieldBox field) {
 		super(methods);
 		this.field = field;
 		setParentScope(scope);
@@ -35,6 +34,6 @@ public class FieldAndMethods extends NativeJavaMethod {
 		return rval;
 	}
 
-	Field field;
+	FieldBox field;
 	Object javaObject;
 }
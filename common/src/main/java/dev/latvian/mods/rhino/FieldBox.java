@@ -0,0 +1,128 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package dev.latvian.mods.rhino;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Wrapper class for Field instances that reads and writes the field through
+ * {@link MethodHandle}s bound on first use, the same way {@link MemberBox}
+ * calls methods. Fields that can't be bound fall back to reflection, which
+ * also reports the access errors.
+ */
+final class FieldBox {
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	final Field field;
+	// (Object)Object and (Object, Object)void, null until first use
+	private MethodHandle getter;
+	private MethodHandle setter;
+	private boolean getterFailed;
+	private boolean setterFailed;
+
+	FieldBox(Field field) {
+		this.field = field;
+	}
+
+	String getName() {
+		return field.getName();
+	}
+
+	Class<?> getType() {
+		return field.getType();
+	}
+
+	Class<?> getDeclaringClass() {
+		return field.getDeclaringClass();
+	}
+
+	boolean isStatic() {
+		return Modifier.isStatic(field.getModifiers());
+	}
+
+	Object get(Object target) throws IllegalAccessException {
+		MethodHandle h = getter;
+
+		if (h == null && !getterFailed) {
+			try {
+				h = MethodHandles.lookup().unreflectGetter(field);
+
+				if (isStatic()) {
+					h = MethodHandles.dropArguments(h, 0, Object.class);
+				}
+
+				getter = h = h.asType(GETTER_TYPE);
+			} catch (IllegalAccessException ex) {
+				getterFailed = true;
+				h = null;
+			}
+		}
+
+		if (h == null) {
+			return field.get(target);
+		}
+
+		try {
+			return (Object) h.invokeExact(target);
+		} catch (RuntimeException | Error ex) {
+			throw ex;
+		} catch (Throwable ex) {
+			throw Context.throwAsScriptRuntimeEx(ex);
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the value doesn't fit the type of the field, like {@link Field#set(Object, Object)}
+	 */
+	void set(Object target, Object value) throws IllegalAccessException {
+		MethodHandle h = setter;
+
+		if (h == null && !setterFailed) {
+			try {
+				h = MethodHandles.lookup().unreflectSetter(field);
+
+				if (isStatic()) {
+					h = MethodHandles.dropArguments(h, 0, Object.class);
+				}
+
+				setter = h = h.asType(SETTER_TYPE);
+			} catch (IllegalAccessException ex) {
+				setterFailed = true;
+				h = null;
+			}
+		}
+
+		if (h == null) {
+			field.set(target, value);
+			return;
+		}
+
+		if (value == null && field.getType().isPrimitive()) {
+			throw new IllegalArgumentException("Can't set primitive field " + field.getName() + " to null");
+		}
+
+		try {
+			h.invokeExact(target, value);
+		} catch (ClassCastException ex) {
+			throw new IllegalArgumentException(ex);
+		} catch (RuntimeException | Error ex) {
+			throw ex;
+		} catch (Throwable ex) {
+			throw Context.throwAsScriptRuntimeEx(ex);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return field.toString();
+	}
+}
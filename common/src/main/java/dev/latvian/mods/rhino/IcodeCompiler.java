@@ -0,0 +1,769 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package dev.latvian.mods.rhino;
+
+import dev.latvian.mods.rhino.classfile.ByteCode;
+import dev.latvian.mods.rhino.classfile.ClassFileWriter;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Second tier for hot interpreted functions. Translates the icode of a single
+ * {@link InterpretedFunction} into a JVM class implementing
+ * {@link CompiledFunctionBody}, one instruction at a time.
+ * <p>
+ * Generated code keeps the interpreter frame layout and delegates every
+ * instruction to {@link OptRuntime}, so it behaves exactly like the
+ * interpreter while getting rid of the dispatch loop and letting the JIT
+ * inline the helpers. Only plain functions are handled: no activation, no
+ * nested functions, no try/catch/finally, no generators and no const
+ * variables. Anything else stays interpreted.
+ *
+ * @see Context#setCompileThreshold(int)
+ */
+final class IcodeCompiler extends Icode {
+	private static final String OPT_RUNTIME = "dev/latvian/mods/rhino/OptRuntime";
+	private static final String BODY_INTERFACE = "dev.latvian.mods.rhino.CompiledFunctionBody";
+
+	private static final String OBJECT_ARRAY = "[Ljava/lang/Object;";
+	private static final String CONTEXT = "Ldev/latvian/mods/rhino/Context;";
+	private static final String SCRIPTABLE = "Ldev/latvian/mods/rhino/Scriptable;";
+	private static final String STRING = "Ljava/lang/String;";
+	private static final String NATIVE_FUNCTION = "Ldev/latvian/mods/rhino/NativeFunction;";
+
+	// stack, sDbl, stack top
+	private static final String FRAME = OBJECT_ARRAY + "[DI";
+	// stack, stack top
+	private static final String STACK = OBJECT_ARRAY + "I";
+
+	private static final String CALL_SIGNATURE = "(" + NATIVE_FUNCTION + CONTEXT + SCRIPTABLE + SCRIPTABLE + OBJECT_ARRAY + ")Ljava/lang/Object;";
+	private static final String BODY_SIGNATURE = "(" + NATIVE_FUNCTION + CONTEXT + SCRIPTABLE + SCRIPTABLE + OBJECT_ARRAY + OBJECT_ARRAY + OBJECT_ARRAY + ")Ljava/lang/Object;";
+
+	// Locals of the generated body method
+	private static final int FN_LOCAL = 0;
+	private static final int CX_LOCAL = 1;
+	private static final int SCOPE_LOCAL = 2;
+	private static final int THIS_LOCAL = 3;
+	private static final int ARGS_LOCAL = 4;
+	private static final int REGEXPS_LOCAL = 5;
+	private static final int LITERALS_LOCAL = 6;
+	private static final int STACK_LOCAL = 7;
+	private static final int SDBL_LOCAL = 8;
+	private static final short MAX_LOCALS = 9;
+
+	/**
+	 * Larger functions are left to the interpreter so generated methods stay
+	 * well below the 64K code and 16-bit jump offset limits of class files.
+	 */
+	private static final int MAX_ICODE_LENGTH = 2048;
+
+	private static final int UNKNOWN = -1;
+
+	private static final AtomicInteger classSerial = new AtomicInteger();
+
+	/**
+	 * Compile the function body.
+	 *
+	 * @return the compiled body or null if the function can't be compiled
+	 */
+	static CompiledFunctionBody compile(Context cx, InterpreterData idata) {
+		if (!isCompilable(idata)) {
+			return null;
+		}
+
+		IcodeCompiler compiler = new IcodeCompiler(idata);
+
+		if (!compiler.analyze()) {
+			return null;
+		}
+
+		String className = "compiled" + classSerial.incrementAndGet();
+
+		try {
+			byte[] bytes = compiler.generateClass(className);
+			GeneratedClassLoader loader = cx.createClassLoader(cx.getApplicationClassLoader());
+			Class<?> c = loader.defineClass(className, bytes);
+			loader.linkClass(c);
+			return (CompiledFunctionBody) c.getConstructor(Object[].class, Object[].class).newInstance(idata.itsRegExpLiterals, idata.literalIds);
+		} catch (ClassFileWriter.ClassFileFormatException | LinkageError ex) {
+			return null;
+		} catch (ReflectiveOperationException ex) {
+			throw Context.throwAsScriptRuntimeEx(ex);
+		}
+	}
+
+	private static boolean isCompilable(InterpreterData idata) {
+		if (idata.itsFunctionType == 0 || idata.itsNeedsActivation || idata.isES6Generator) {
+			return false;
+		} else if (idata.itsNestedFunctions != null || idata.itsExceptionTable != null) {
+			return false;
+		} else if (idata.itsICode.length > MAX_ICODE_LENGTH) {
+			return false;
+		}
+
+		for (boolean isConst : idata.argIsConst) {
+			if (isConst) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static int getShort(byte[] iCode, int pc) {
+		return (iCode[pc] << 8) | (iCode[pc + 1] & 0xFF);
+	}
+
+	private static int getIndex(byte[] iCode, int pc) {
+		return ((iCode[pc] & 0xFF) << 8) | (iCode[pc + 1] & 0xFF);
+	}
+
+	private static int getInt(byte[] iCode, int pc) {
+		return (iCode[pc] << 24) | ((iCode[pc + 1] & 0xFF) << 16) | ((iCode[pc + 2] & 0xFF) << 8) | (iCode[pc + 3] & 0xFF);
+	}
+
+	/**
+	 * @return number of operand bytes following the opcode or -1 if the
+	 * opcode isn't supported
+	 */
+	private static int operandLength(int op) {
+		return switch (op) {
+			case Token.GE, Token.LE, Token.GT, Token.LT, Token.IN, Token.INSTANCEOF, Token.EQ, Token.NE, Token.SHEQ, Token.SHNE, Icode_POP, Icode_DUP, Icode_DUP2, Icode_SWAP, Token.RETURN, Icode_RETUNDEF, Token.BITNOT, Token.BITAND, Token.BITOR, Token.BITXOR, Token.LSH, Token.RSH, Token.URSH, Token.NULLISH_COALESCING, Token.NEG, Token.POS, Token.ADD, Token.SUB, Token.MUL, Token.DIV, Token.MOD, Token.POW, Token.NOT, Token.BINDNAME, Token.SETNAME, Token.STRICT_SETNAME, Token.DELPROP, Icode_DELNAME, Token.GETPROP, Token.GETPROPNOWARN, Token.SETPROP, Token.GETELEM, Token.SETELEM, Token.LOCAL_LOAD, Icode_LOCAL_CLEAR, Icode_NAME_AND_THIS, Icode_PROP_AND_THIS, Icode_ELEM_AND_THIS, Icode_VALUE_AND_THIS, Token.CALL, Icode_TAIL_CALL, Token.NEW, Token.TYPEOF, Icode_TYPEOFNAME, Token.STRING, Token.NUMBER, Token.NAME, Token.SETVAR, Token.GETVAR, Icode_ZERO, Icode_ONE, Token.NULL, Token.THIS, Token.THISFN, Token.FALSE, Token.TRUE, Icode_UNDEF, Token.ENUM_INIT_KEYS, Token.ENUM_INIT_VALUES, Token.ENUM_INIT_ARRAY, Token.ENUM_INIT_VALUES_IN_ORDER, Token.ENUM_NEXT, Token.ENUM_ID, Token.REGEXP, Icode_LITERAL_NEW, Icode_LITERAL_SET, Icode_LITERAL_GETTER, Icode_LITERAL_SETTER, Token.ARRAYLIT, Icode_SPARE_ARRAYLIT, Token.OBJECTLIT, Icode_REG_IND_C0, Icode_REG_IND_C1, Icode_REG_IND_C2, Icode_REG_IND_C3, Icode_REG_IND_C4, Icode_REG_IND_C5, Icode_REG_STR_C0, Icode_REG_STR_C1, Icode_REG_STR_C2, Icode_REG_STR_C3 -> 0;
+			case Icode_PROP_INC_DEC, Icode_ELEM_INC_DEC, Icode_NAME_INC_DEC, Icode_VAR_INC_DEC, Icode_GETVAR1, Icode_SETVAR1, Icode_REG_IND1, Icode_REG_STR1 -> 1;
+			case Token.IFNE, Token.IFEQ, Icode_IFEQ_POP, Token.GOTO, Icode_SHORTNUMBER, Token.THROW, Icode_LINE, Icode_REG_IND2, Icode_REG_STR2 -> 2;
+			case Icode_INTNUMBER, Icode_REG_IND4, Icode_REG_STR4 -> 4;
+			default -> -1;
+		};
+	}
+
+	private static boolean isJump(int op) {
+		return op == Token.IFNE || op == Token.IFEQ || op == Icode_IFEQ_POP || op == Token.GOTO;
+	}
+
+	private static boolean isTerminal(int op) {
+		return op == Token.GOTO || op == Token.RETURN || op == Icode_RETUNDEF || op == Token.THROW;
+	}
+
+	private static boolean needsIndex(int op) {
+		return switch (op) {
+			case Token.LOCAL_LOAD, Icode_LOCAL_CLEAR, Token.CALL, Icode_TAIL_CALL, Token.NEW, Token.NUMBER, Token.SETVAR, Token.GETVAR, Icode_VAR_INC_DEC, Token.ENUM_INIT_KEYS, Token.ENUM_INIT_VALUES, Token.ENUM_INIT_ARRAY, Token.ENUM_INIT_VALUES_IN_ORDER, Token.ENUM_NEXT, Token.ENUM_ID, Token.REGEXP, Icode_LITERAL_NEW, Icode_SPARE_ARRAYLIT, Token.OBJECTLIT -> true;
+			default -> false;
+		};
+	}
+
+	private static boolean needsString(int op) {
+		return switch (op) {
+			case Token.BINDNAME, Token.SETNAME, Token.STRICT_SETNAME, Token.GETPROP, Token.GETPROPNOWARN, Token.SETPROP, Icode_PROP_INC_DEC, Icode_NAME_AND_THIS, Icode_PROP_AND_THIS, Icode_TYPEOFNAME, Token.STRING, Token.NAME, Icode_NAME_INC_DEC -> true;
+			default -> false;
+		};
+	}
+
+	/**
+	 * @return number of values the instruction pops shifted left by 16 bits
+	 * combined with the number of values it pushes
+	 */
+	private static int stackUse(int op, int index) {
+		return switch (op) {
+			case Icode_LOCAL_CLEAR, Token.GOTO, Icode_RETUNDEF, Icode_LINE -> 0;
+			case Token.IFNE, Token.IFEQ, Icode_IFEQ_POP, Icode_POP, Token.RETURN, Token.THROW, Token.ENUM_INIT_KEYS, Token.ENUM_INIT_VALUES, Token.ENUM_INIT_ARRAY, Token.ENUM_INIT_VALUES_IN_ORDER -> use(1, 0);
+			case Icode_DUP -> use(1, 2);
+			case Icode_DUP2 -> use(2, 4);
+			case Icode_SWAP, Icode_ELEM_AND_THIS -> use(2, 2);
+			case Token.BITNOT, Token.NEG, Token.POS, Token.NOT, Token.GETPROP, Token.GETPROPNOWARN, Icode_PROP_INC_DEC, Token.TYPEOF, Token.SETVAR, Icode_SETVAR1 -> use(1, 1);
+			case Icode_PROP_AND_THIS, Icode_VALUE_AND_THIS -> use(1, 2);
+			case Token.SETELEM -> use(3, 1);
+			case Icode_LITERAL_SET, Icode_LITERAL_GETTER, Icode_LITERAL_SETTER -> use(3, 2);
+			case Token.BINDNAME, Token.LOCAL_LOAD, Icode_TYPEOFNAME, Token.STRING, Icode_SHORTNUMBER, Icode_INTNUMBER, Token.NUMBER, Token.NAME, Icode_NAME_INC_DEC, Token.GETVAR, Icode_GETVAR1, Icode_VAR_INC_DEC, Icode_ZERO, Icode_ONE, Token.NULL, Token.THIS, Token.THISFN, Token.FALSE, Token.TRUE, Icode_UNDEF, Token.ENUM_NEXT, Token.ENUM_ID, Token.REGEXP -> use(0, 1);
+			case Icode_NAME_AND_THIS, Icode_LITERAL_NEW -> use(0, 2);
+			case Token.CALL, Icode_TAIL_CALL -> use(2 + index, 1);
+			case Token.NEW -> use(1 + index, 1);
+			default -> op <= Icode_REG_IND_C0 && op >= Icode_REG_STR4 ? 0 : use(2, 1);
+		};
+	}
+
+	private static int use(int pops, int pushes) {
+		return (pops << 16) | pushes;
+	}
+
+	private final InterpreterData idata;
+	private final byte[] iCode;
+	private final int end;
+	private final int localShift;
+	private final int emptyStackTop;
+
+	private boolean[] jumpTargets;
+	private int[] stackDepth;
+	private int[] indexRegs;
+	private int[] stringRegs;
+	private int[] labels;
+	private ClassFileWriter cfw;
+
+	private IcodeCompiler(InterpreterData idata) {
+		this.idata = idata;
+		iCode = idata.itsICode;
+		end = iCode.length;
+		localShift = idata.itsMaxVars;
+		emptyStackTop = idata.itsMaxVars + idata.itsMaxLocals - 1;
+	}
+
+	private int jumpTarget(int pc) {
+		int offset = getShort(iCode, pc + 1);
+		return offset != 0 ? pc + offset : idata.longJumps.getExistingInt(pc + 1);
+	}
+
+	/**
+	 * Decode the icode, compute register contents and stack depth at every
+	 * reachable instruction and check that everything fits the frame.
+	 */
+	private boolean analyze() {
+		boolean[] starts = new boolean[end];
+		jumpTargets = new boolean[end];
+
+		for (int pc = 0; pc < end; ) {
+			starts[pc] = true;
+			int op = iCode[pc];
+			int length = operandLength(op);
+
+			if (length < 0 || pc + 1 + length > end) {
+				return false;
+			}
+
+			if (isJump(op)) {
+				int target = jumpTarget(pc);
+
+				if (target < 0 || target >= end) {
+					return false;
+				}
+
+				jumpTargets[target] = true;
+			}
+
+			pc += 1 + length;
+		}
+
+		for (int pc = 0; pc < end; pc++) {
+			if (jumpTargets[pc] && !starts[pc]) {
+				return false;
+			}
+		}
+
+		// Register prefixes always directly precede the instruction that uses them,
+		// so a linear scan that forgets registers at jump targets is enough
+		indexRegs = new int[end];
+		stringRegs = new int[end];
+		int indexReg = UNKNOWN;
+		int stringReg = UNKNOWN;
+
+		for (int pc = 0; pc < end; ) {
+			int op = iCode[pc];
+
+			if (jumpTargets[pc]) {
+				indexReg = UNKNOWN;
+				stringReg = UNKNOWN;
+			}
+
+			switch (op) {
+				case Icode_GETVAR1, Icode_SETVAR1 -> indexReg = iCode[pc + 1];
+				case Icode_REG_IND_C0, Icode_REG_IND_C1, Icode_REG_IND_C2, Icode_REG_IND_C3, Icode_REG_IND_C4, Icode_REG_IND_C5 -> indexReg = Icode_REG_IND_C0 - op;
+				case Icode_REG_IND1 -> indexReg = 0xFF & iCode[pc + 1];
+				case Icode_REG_IND2 -> indexReg = getIndex(iCode, pc + 1);
+				case Icode_REG_IND4 -> indexReg = getInt(iCode, pc + 1);
+				case Icode_REG_STR_C0, Icode_REG_STR_C1, Icode_REG_STR_C2, Icode_REG_STR_C3 -> stringReg = Icode_REG_STR_C0 - op;
+				case Icode_REG_STR1 -> stringReg = 0xFF & iCode[pc + 1];
+				case Icode_REG_STR2 -> stringReg = getIndex(iCode, pc + 1);
+				case Icode_REG_STR4 -> stringReg = getInt(iCode, pc + 1);
+			}
+
+			indexRegs[pc] = indexReg;
+			stringRegs[pc] = stringReg;
+
+			if (indexReg < 0 && (needsIndex(op) || op == Icode_GETVAR1 || op == Icode_SETVAR1) || stringReg < 0 && needsString(op)) {
+				return false;
+			} else if (stringReg >= 0 && stringReg >= idata.itsStringTable.length || !isValidIndex(op, indexReg)) {
+				return false;
+			}
+
+			pc += 1 + operandLength(op);
+		}
+
+		stackDepth = new int[end];
+		Arrays.fill(stackDepth, -1);
+		stackDepth[0] = 0;
+		int[] worklist = new int[end];
+		int worklistTop = 0;
+		worklist[worklistTop++] = 0;
+
+		while (worklistTop > 0) {
+			int pc = worklist[--worklistTop];
+			int op = iCode[pc];
+			int depth = stackDepth[pc];
+			int use = stackUse(op, indexRegs[pc]);
+			int after = depth - (use >>> 16) + (use & 0xFFFF);
+
+			if (depth < (use >>> 16) || after > idata.itsMaxStack) {
+				return false;
+			}
+
+			if (isJump(op)) {
+				int target = jumpTarget(pc);
+				int targetDepth = op == Icode_IFEQ_POP ? after - 1 : after;
+
+				if (targetDepth < 0) {
+					return false;
+				} else if (stackDepth[target] == -1) {
+					stackDepth[target] = targetDepth;
+					worklist[worklistTop++] = target;
+				} else if (stackDepth[target] != targetDepth) {
+					return false;
+				}
+			}
+
+			if (!isTerminal(op)) {
+				int next = pc + 1 + operandLength(op);
+
+				if (next >= end) {
+					return false;
+				} else if (stackDepth[next] == -1) {
+					stackDepth[next] = after;
+					worklist[worklistTop++] = next;
+				} else if (stackDepth[next] != after) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private boolean isValidIndex(int op, int index) {
+		return switch (op) {
+			case Token.LOCAL_LOAD, Icode_LOCAL_CLEAR, Token.ENUM_INIT_KEYS, Token.ENUM_INIT_VALUES, Token.ENUM_INIT_ARRAY, Token.ENUM_INIT_VALUES_IN_ORDER, Token.ENUM_NEXT, Token.ENUM_ID -> index < idata.itsMaxLocals;
+			case Token.SETVAR, Token.GETVAR, Icode_GETVAR1, Icode_SETVAR1, Icode_VAR_INC_DEC -> index < idata.itsMaxVars;
+			case Token.NUMBER -> idata.itsDoubleTable != null && index < idata.itsDoubleTable.length;
+			case Token.REGEXP -> idata.itsRegExpLiterals != null && index < idata.itsRegExpLiterals.length;
+			case Icode_SPARE_ARRAYLIT, Token.OBJECTLIT -> idata.literalIds != null && index < idata.literalIds.length;
+			default -> true;
+		};
+	}
+
+	private byte[] generateClass(String className) {
+		String sourceFile = idata.itsSourceFile;
+		cfw = new ClassFileWriter(className, "java.lang.Object", sourceFile == null ? "<compiled>" : sourceFile);
+		cfw.addInterface(BODY_INTERFACE);
+		cfw.addField("regExpLiterals", OBJECT_ARRAY, (short) (ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL));
+		cfw.addField("literalIds", OBJECT_ARRAY, (short) (ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL));
+
+		String internalName = className.replace('.', '/');
+		String bodyName = getBodyMethodName();
+
+		cfw.startMethod("<init>", "(" + OBJECT_ARRAY + OBJECT_ARRAY + ")V", ClassFileWriter.ACC_PUBLIC);
+		cfw.addALoad(0);
+		cfw.addInvoke(ByteCode.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+		cfw.addALoad(0);
+		cfw.addALoad(1);
+		cfw.add(ByteCode.PUTFIELD, internalName, "regExpLiterals", OBJECT_ARRAY);
+		cfw.addALoad(0);
+		cfw.addALoad(2);
+		cfw.add(ByteCode.PUTFIELD, internalName, "literalIds", OBJECT_ARRAY);
+		cfw.add(ByteCode.RETURN);
+		cfw.stopMethod((short) 3);
+
+		cfw.startMethod("call", CALL_SIGNATURE, ClassFileWriter.ACC_PUBLIC);
+
+		for (int i = 1; i <= 5; i++) {
+			cfw.addALoad(i);
+		}
+
+		cfw.addALoad(0);
+		cfw.add(ByteCode.GETFIELD, internalName, "regExpLiterals", OBJECT_ARRAY);
+		cfw.addALoad(0);
+		cfw.add(ByteCode.GETFIELD, internalName, "literalIds", OBJECT_ARRAY);
+		cfw.addInvoke(ByteCode.INVOKESTATIC, internalName, bodyName, BODY_SIGNATURE);
+		cfw.add(ByteCode.ARETURN);
+		cfw.stopMethod((short) 6);
+
+		cfw.startMethod(bodyName, BODY_SIGNATURE, (short) (ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC));
+		generateBody();
+		cfw.stopMethod(MAX_LOCALS);
+		return cfw.toByteArray();
+	}
+
+	private String getBodyMethodName() {
+		String name = idata.itsName == null || idata.itsName.isEmpty() ? "anonymous" : idata.itsName;
+		StringBuilder sb = new StringBuilder("_c_");
+
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			sb.append(Character.isJavaIdentifierPart(c) ? c : '_');
+		}
+
+		return sb.append("_0").toString();
+	}
+
+	private void generateBody() {
+		int frameSize = idata.itsMaxFrameArray;
+		cfw.addALoad(ARGS_LOCAL);
+		cfw.addPush(idata.argCount);
+		cfw.addPush(idata.itsMaxVars);
+		cfw.addPush(frameSize);
+		addRuntimeCall("createFrame", "(" + OBJECT_ARRAY + "III)" + OBJECT_ARRAY);
+		cfw.addAStore(STACK_LOCAL);
+		cfw.addPush(frameSize);
+		cfw.add(ByteCode.NEWARRAY, ByteCode.T_DOUBLE);
+		cfw.addAStore(SDBL_LOCAL);
+
+		labels = new int[end];
+
+		for (int pc = 0; pc < end; pc += 1 + operandLength(iCode[pc])) {
+			if (stackDepth[pc] == -1) {
+				continue;
+			}
+
+			if (jumpTargets[pc]) {
+				cfw.markLabel(getLabel(pc));
+			}
+
+			generateInstruction(pc, emptyStackTop + stackDepth[pc]);
+		}
+	}
+
+	private int getLabel(int pc) {
+		if (labels[pc] == 0) {
+			labels[pc] = cfw.acquireLabel();
+		}
+
+		return labels[pc];
+	}
+
+	private void generateInstruction(int pc, int top) {
+		int op = iCode[pc];
+		int index = indexRegs[pc];
+		String string = stringRegs[pc] == UNKNOWN ? null : idata.itsStringTable[stringRegs[pc]];
+
+		switch (op) {
+			case Token.GE, Token.LE, Token.GT, Token.LT -> {
+				addFrame(top);
+				cfw.addPush(op);
+				addRuntimeCall("compare", "(" + FRAME + "I)V");
+			}
+			case Token.IN, Token.INSTANCEOF -> {
+				addFrame(top);
+				cfw.addPush(op);
+				cfw.addALoad(CX_LOCAL);
+				addRuntimeCall("inOrInstanceof", "(" + FRAME + "I" + CONTEXT + ")V");
+			}
+			case Token.EQ, Token.NE -> {
+				addFrame(top);
+				cfw.addPush(op == Token.NE);
+				addRuntimeCall("equals", "(" + FRAME + "Z)V");
+			}
+			case Token.SHEQ, Token.SHNE -> {
+				addFrame(top);
+				cfw.addPush(op == Token.SHNE);
+				addRuntimeCall("shallowEquals", "(" + FRAME + "Z)V");
+			}
+			case Token.IFNE, Token.IFEQ, Icode_IFEQ_POP -> {
+				addFrame(top);
+				addRuntimeCall("toBoolean", "(" + FRAME + ")Z");
+				cfw.add(op == Token.IFNE ? ByteCode.IFEQ : ByteCode.IFNE, getLabel(jumpTarget(pc)));
+			}
+			case Token.GOTO -> cfw.add(ByteCode.GOTO, getLabel(jumpTarget(pc)));
+			case Icode_POP -> {
+				cfw.addALoad(STACK_LOCAL);
+				cfw.addPush(top);
+				cfw.add(ByteCode.ACONST_NULL);
+				cfw.add(ByteCode.AASTORE);
+			}
+			case Icode_DUP -> addCopy(top, top + 1);
+			case Icode_DUP2 -> {
+				addCopy(top - 1, top + 1);
+				addCopy(top, top + 2);
+			}
+			case Icode_SWAP -> {
+				addFrame(top);
+				addRuntimeCall("swap", "(" + FRAME + ")V");
+			}
+			case Token.RETURN -> {
+				addFrame(top);
+				addRuntimeCall("value", "(" + FRAME + ")Ljava/lang/Object;");
+				cfw.add(ByteCode.ARETURN);
+			}
+			case Icode_RETUNDEF -> {
+				cfw.add(ByteCode.GETSTATIC, "dev/latvian/mods/rhino/Undefined", "instance", "Ljava/lang/Object;");
+				cfw.add(ByteCode.ARETURN);
+			}
+			case Token.BITNOT -> {
+				addFrame(top);
+				addRuntimeCall("bitNot", "(" + FRAME + ")V");
+			}
+			case Token.BITAND, Token.BITOR, Token.BITXOR, Token.LSH, Token.RSH -> {
+				addFrame(top);
+				cfw.addPush(op);
+				addRuntimeCall("bitOp", "(" + FRAME + "I)V");
+			}
+			case Token.URSH -> {
+				addFrame(top);
+				addRuntimeCall("unsignedShiftRight", "(" + FRAME + ")V");
+			}
+			case Token.NULLISH_COALESCING -> {
+				addStack(top);
+				addRuntimeCall("nullishCoalescing", "(" + STACK + ")V");
+			}
+			case Token.NEG, Token.POS -> {
+				addFrame(top);
+				cfw.addPush(op == Token.NEG);
+				addRuntimeCall("negate", "(" + FRAME + "Z)V");
+			}
+			case Token.ADD -> {
+				addFrame(top);
+				cfw.addALoad(CX_LOCAL);
+				addRuntimeCall("add", "(" + FRAME + CONTEXT + ")V");
+			}
+			case Token.SUB, Token.MUL, Token.DIV, Token.MOD, Token.POW -> {
+				addFrame(top);
+				cfw.addPush(op);
+				addRuntimeCall("arithmetic", "(" + FRAME + "I)V");
+			}
+			case Token.NOT -> {
+				addFrame(top);
+				addRuntimeCall("not", "(" + FRAME + ")V");
+			}
+			case Token.BINDNAME -> {
+				addStack(top);
+				addContextScope();
+				cfw.addPush(string);
+				addRuntimeCall("bindName", "(" + STACK + CONTEXT + SCRIPTABLE + STRING + ")V");
+			}
+			case Token.SETNAME, Token.STRICT_SETNAME -> {
+				addFrame(top);
+				addContextScope();
+				cfw.addPush(string);
+				cfw.addPush(op == Token.STRICT_SETNAME);
+				addRuntimeCall("setName", "(" + FRAME + CONTEXT + SCRIPTABLE + STRING + "Z)V");
+			}
+			case Token.DELPROP, Icode_DELNAME -> {
+				addFrame(top);
+				addContextScope();
+				cfw.addPush(op == Icode_DELNAME);
+				addRuntimeCall("delete", "(" + FRAME + CONTEXT + SCRIPTABLE + "Z)V");
+			}
+			case Token.GETPROP, Token.GETPROPNOWARN, Token.SETPROP -> {
+				addFrame(top);
+				addContextScope();
+				cfw.addPush(string);
+				cfw.addALoad(FN_LOCAL);
+				cfw.addPush(pc);
+				addRuntimeCall(op == Token.GETPROP ? "getProp" : op == Token.SETPROP ? "setProp" : "getPropNoWarn", "(" + FRAME + CONTEXT + SCRIPTABLE + STRING + NATIVE_FUNCTION + "I)V");
+			}
+			case Icode_PROP_INC_DEC -> {
+				addFrame(top);
+				addContextScope();
+				cfw.addPush(string);
+				cfw.addPush(iCode[pc + 1]);
+				addRuntimeCall("propIncrDecr", "(" + FRAME + CONTEXT + SCRIPTABLE + STRING + "I)V");
+			}
+			case Token.GETELEM, Token.SETELEM, Icode_ELEM_AND_THIS -> {
+				addFrame(top);
+				addContextScope();
+				addRuntimeCall(op == Token.GETELEM ? "getElem" : op == Token.SETELEM ? "setElem" : "elemAndThis", "(" + FRAME + CONTEXT + SCRIPTABLE + ")V");
+			}
+			case Icode_ELEM_INC_DEC -> {
+				addFrame(top);
+				addContextScope();
+				cfw.addPush(iCode[pc + 1]);
+				addRuntimeCall("elemIncrDecr", "(" + FRAME + CONTEXT + SCRIPTABLE + "I)V");
+			}
+			case Token.LOCAL_LOAD -> addCopy(localShift + index, top + 1);
+			case Icode_LOCAL_CLEAR -> {
+				cfw.addALoad(STACK_LOCAL);
+				cfw.addPush(localShift + index);
+				cfw.add(ByteCode.ACONST_NULL);
+				cfw.add(ByteCode.AASTORE);
+			}
+			case Icode_NAME_AND_THIS -> {
+				addStack(top);
+				addContextScope();
+				cfw.addPush(string);
+				addRuntimeCall("nameAndThis", "(" + STACK + CONTEXT + SCRIPTABLE + STRING + ")V");
+			}
+			case Icode_PROP_AND_THIS -> {
+				addFrame(top);
+				addContextScope();
+				cfw.addPush(string);
+				addRuntimeCall("propAndThis", "(" + FRAME + CONTEXT + SCRIPTABLE + STRING + ")V");
+			}
+			case Icode_VALUE_AND_THIS -> {
+				addFrame(top);
+				cfw.addALoad(CX_LOCAL);
+				addRuntimeCall("valueAndThis", "(" + FRAME + CONTEXT + ")V");
+			}
+			case Token.CALL, Icode_TAIL_CALL -> {
+				addFrame(top);
+				cfw.addPush(index);
+				addContextScope();
+				cfw.addALoad(FN_LOCAL);
+				cfw.addPush(pc);
+				addRuntimeCall("call", "(" + FRAME + "I" + CONTEXT + SCRIPTABLE + NATIVE_FUNCTION + "I)V");
+			}
+			case Token.NEW -> {
+				addFrame(top);
+				cfw.addPush(index);
+				addContextScope();
+				addRuntimeCall("construct", "(" + FRAME + "I" + CONTEXT + SCRIPTABLE + ")V");
+			}
+			case Token.TYPEOF -> {
+				addFrame(top);
+				addRuntimeCall("typeof", "(" + FRAME + ")V");
+			}
+			case Icode_TYPEOFNAME -> {
+				addStack(top);
+				cfw.addALoad(SCOPE_LOCAL);
+				cfw.addPush(string);
+				addRuntimeCall("typeofName", "(" + STACK + SCRIPTABLE + STRING + ")V");
+			}
+			case Token.STRING -> {
+				cfw.addALoad(STACK_LOCAL);
+				cfw.addPush(top + 1);
+				cfw.addPush(string);
+				cfw.add(ByteCode.AASTORE);
+			}
+			case Icode_SHORTNUMBER -> addNumber(top + 1, getShort(iCode, pc + 1));
+			case Icode_INTNUMBER -> addNumber(top + 1, getInt(iCode, pc + 1));
+			case Token.NUMBER -> addNumber(top + 1, idata.itsDoubleTable[index]);
+			case Icode_ZERO -> addNumber(top + 1, 0);
+			case Icode_ONE -> addNumber(top + 1, 1);
+			case Token.NAME -> {
+				addStack(top);
+				addContextScope();
+				cfw.addPush(string);
+				addRuntimeCall("name", "(" + STACK + CONTEXT + SCRIPTABLE + STRING + ")V");
+			}
+			case Icode_NAME_INC_DEC -> {
+				addStack(top);
+				addContextScope();
+				cfw.addPush(string);
+				cfw.addPush(iCode[pc + 1]);
+				addRuntimeCall("nameIncrDecr", "(" + STACK + CONTEXT + SCRIPTABLE + STRING + "I)V");
+			}
+			case Token.SETVAR -> addCopy(top, index);
+			case Icode_SETVAR1 -> addCopy(top, iCode[pc + 1]);
+			case Token.GETVAR -> addCopy(index, top + 1);
+			case Icode_GETVAR1 -> addCopy(iCode[pc + 1], top + 1);
+			case Icode_VAR_INC_DEC -> {
+				addFrame(top);
+				cfw.addPush(index);
+				cfw.addPush(iCode[pc + 1]);
+				addRuntimeCall("varIncrDecr", "(" + FRAME + "II)V");
+			}
+			case Token.NULL, Token.THIS, Token.THISFN, Token.FALSE, Token.TRUE, Icode_UNDEF -> {
+				cfw.addALoad(STACK_LOCAL);
+				cfw.addPush(top + 1);
+
+				switch (op) {
+					case Token.NULL -> cfw.add(ByteCode.ACONST_NULL);
+					case Token.THIS -> cfw.addALoad(THIS_LOCAL);
+					case Token.THISFN -> cfw.addALoad(FN_LOCAL);
+					case Token.FALSE -> cfw.add(ByteCode.GETSTATIC, "java/lang/Boolean", "FALSE", "Ljava/lang/Boolean;");
+					case Token.TRUE -> cfw.add(ByteCode.GETSTATIC, "java/lang/Boolean", "TRUE", "Ljava/lang/Boolean;");
+					default -> cfw.add(ByteCode.GETSTATIC, "dev/latvian/mods/rhino/Undefined", "instance", "Ljava/lang/Object;");
+				}
+
+				cfw.add(ByteCode.AASTORE);
+			}
+			case Token.ENUM_INIT_KEYS, Token.ENUM_INIT_VALUES, Token.ENUM_INIT_ARRAY, Token.ENUM_INIT_VALUES_IN_ORDER -> {
+				addFrame(top);
+				cfw.addPush(localShift + index);
+				cfw.addPush(op);
+				addContextScope();
+				addRuntimeCall("enumInit", "(" + FRAME + "II" + CONTEXT + SCRIPTABLE + ")V");
+			}
+			case Token.ENUM_NEXT, Token.ENUM_ID -> {
+				addStack(top);
+				cfw.addPush(localShift + index);
+				cfw.addPush(op == Token.ENUM_ID);
+				cfw.addALoad(CX_LOCAL);
+				addRuntimeCall("enumNext", "(" + STACK + "IZ" + CONTEXT + ")V");
+			}
+			case Token.REGEXP -> {
+				addStack(top);
+				cfw.addALoad(REGEXPS_LOCAL);
+				cfw.addPush(index);
+				addContextScope();
+				addRuntimeCall("regExp", "(" + STACK + OBJECT_ARRAY + "I" + CONTEXT + SCRIPTABLE + ")V");
+			}
+			case Icode_LITERAL_NEW -> {
+				addFrame(top);
+				cfw.addPush(index);
+				addRuntimeCall("literalNew", "(" + FRAME + "I)V");
+			}
+			case Icode_LITERAL_SET, Icode_LITERAL_GETTER, Icode_LITERAL_SETTER -> {
+				addFrame(top);
+				cfw.addPush(op == Icode_LITERAL_SET ? 0 : op == Icode_LITERAL_GETTER ? -1 : 1);
+				addRuntimeCall("literalSet", "(" + FRAME + "I)V");
+			}
+			case Token.ARRAYLIT, Icode_SPARE_ARRAYLIT, Token.OBJECTLIT -> {
+				addStack(top);
+				cfw.addALoad(LITERALS_LOCAL);
+				cfw.addPush(op == Token.ARRAYLIT ? -1 : index);
+				addContextScope();
+				addRuntimeCall(op == Token.OBJECTLIT ? "objectLiteral" : "arrayLiteral", "(" + STACK + OBJECT_ARRAY + "I" + CONTEXT + SCRIPTABLE + ")V");
+			}
+			case Token.THROW -> {
+				addFrame(top);
+
+				if (idata.itsSourceFile == null) {
+					cfw.add(ByteCode.ACONST_NULL);
+				} else {
+					cfw.addPush(idata.itsSourceFile);
+				}
+
+				cfw.addPush(getIndex(iCode, pc + 1));
+				addRuntimeCall("throwValue", "(" + FRAME + STRING + "I)Ldev/latvian/mods/rhino/JavaScriptException;");
+				cfw.add(ByteCode.ATHROW);
+			}
+			case Icode_LINE -> cfw.addLineNumberEntry((short) getIndex(iCode, pc + 1));
+			default -> {
+				// register prefixes, already resolved by analyze()
+			}
+		}
+	}
+
+	private void addFrame(int top) {
+		cfw.addALoad(STACK_LOCAL);
+		cfw.addALoad(SDBL_LOCAL);
+		cfw.addPush(top);
+	}
+
+	private void addStack(int top) {
+		cfw.addALoad(STACK_LOCAL);
+		cfw.addPush(top);
+	}
+
+	private void addContextScope() {
+		cfw.addALoad(CX_LOCAL);
+		cfw.addALoad(SCOPE_LOCAL);
+	}
+
+	private void addCopy(int from, int to) {
+		cfw.addALoad(STACK_LOCAL);
+		cfw.addALoad(SDBL_LOCAL);
+		cfw.addPush(from);
+		cfw.addPush(to);
+		addRuntimeCall("copy", "(" + OBJECT_ARRAY + "[DII)V");
+	}
+
+	private void addNumber(int i, double value) {
+		addFrame(i);
+		cfw.addPush(value);
+		addRuntimeCall("number", "(" + FRAME + "D)V");
+	}
+
+	private void addRuntimeCall(String name, String signature) {
+		cfw.addInvoke(ByteCode.INVOKESTATIC, OPT_RUNTIME, name, signature);
+	}
+}
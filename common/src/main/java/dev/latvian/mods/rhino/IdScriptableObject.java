@@ -769,6 +769,8 @@ public abstract class IdScriptableObject extends ScriptableObject implements IdF
 			}
 			prototypeValues = values;
 		}
+		// Missing slots are not missing properties anymore
+		clearShape();
 	}
 
 	public final IdFunctionObject initPrototypeMethod(Object tag, int id, String name, int arity) {
@@ -8,6 +8,7 @@ package dev.latvian.mods.rhino;
 
 import dev.latvian.mods.rhino.ast.FunctionNode;
 import dev.latvian.mods.rhino.ast.ScriptNode;
+import dev.latvian.mods.rhino.typedarrays.NativeTypedArrayView;
 
 import java.io.Serial;
 import java.io.Serializable;
@@ -29,6 +30,10 @@ public final class Interpreter extends Icode implements Evaluator {
 	//            exception local and scope local
 	static final int EXCEPTION_SLOT_SIZE = 6;
 
+	// Compiled functions call each other on the Java stack, calls nested
+	// deeper than this are interpreted, which keeps its frames on the heap
+	static final int MAX_COMPILED_CALL_DEPTH = 128;
+
 	/**
 	 * Class to hold data corresponding to one interpreted call stack frame.
 	 */
@@ -92,7 +97,7 @@ public final class Interpreter extends Icode implements Evaluator {
 
 			this.parentFrame = parentFrame;
 			frameIndex = (parentFrame == null) ? 0 : parentFrame.frameIndex + 1;
-			if (frameIndex > cx.getMaximumInterpreterStackDepth()) {
+			if (frameIndex + cx.compiledFrameDepth > cx.getMaximumInterpreterStackDepth()) {
 				throw Context.reportRuntimeError("Exceeded maximum stack depth");
 			}
 
@@ -640,6 +645,13 @@ public final class Interpreter extends Icode implements Evaluator {
 			Kit.codeBug();
 		}
 
+		if (!cx.isContinuationsTopCall) {
+			CompiledFunctionBody body = getCompiledBody(cx, ifun);
+			if (body != null) {
+				return callCompiled(cx, body, ifun, thisObj, args, 0);
+			}
+		}
+
 		CallFrame frame = initFrame(cx, scope, thisObj, args, null, 0, args.length, ifun, null);
 		frame.isContinuationsTopFrame = cx.isContinuationsTopCall;
 		cx.isContinuationsTopCall = false;
@@ -647,6 +659,60 @@ public final class Interpreter extends Icode implements Evaluator {
 		return interpretLoop(cx, frame, null);
 	}
 
+	/**
+	 * Returns the bytecode version of the function, compiling it once it has
+	 * been called {@link Context#getCompileThreshold()} times, or null if the
+	 * function should be interpreted.
+	 */
+	static CompiledFunctionBody getCompiledBody(Context cx, InterpretedFunction ifun) {
+		int threshold = cx.getCompileThreshold();
+		if (threshold == 0 || cx.instructionThreshold != 0) {
+			// Compiled code doesn't count instructions
+			return null;
+		} else if (cx.compiledCallDepth >= MAX_COMPILED_CALL_DEPTH) {
+			return null;
+		}
+
+		InterpreterData idata = ifun.idata;
+		CompiledFunctionBody body = idata.compiledBody;
+		if (body != null || idata.compileFailed || ++idata.callCount < threshold) {
+			return body;
+		}
+
+		synchronized (idata) {
+			if (idata.compiledBody == null && !idata.compileFailed) {
+				body = IcodeCompiler.compile(cx, idata);
+				if (body == null) {
+					idata.compileFailed = true;
+				} else {
+					idata.compiledBody = body;
+				}
+			}
+			return idata.compiledBody;
+		}
+	}
+
+	/**
+	 * @param callerFrames number of interpreter frames of the caller, they
+	 *                     count towards the maximum stack depth like the
+	 *                     compiled call itself
+	 */
+	static Object callCompiled(Context cx, CompiledFunctionBody body, InterpretedFunction ifun, Scriptable thisObj, Object[] args, int callerFrames) {
+		int frameDepth = cx.compiledFrameDepth;
+		int frameIndex = frameDepth + callerFrames;
+		if (frameIndex > cx.getMaximumInterpreterStackDepth()) {
+			throw Context.reportRuntimeError("Exceeded maximum stack depth");
+		}
+		cx.compiledCallDepth++;
+		cx.compiledFrameDepth = frameIndex + 1;
+		try {
+			return body.call(ifun, cx, ifun.getParentScope(), thisObj, args);
+		} finally {
+			cx.compiledCallDepth--;
+			cx.compiledFrameDepth = frameDepth;
+		}
+	}
+
 	public static Object resumeGenerator(Context cx, Scriptable scope, int operation, Object savedState, Object value) {
 		CallFrame frame = (CallFrame) savedState;
 		GeneratorState generatorState = new GeneratorState(operation, value);
@@ -1065,7 +1131,7 @@ public final class Interpreter extends Icode implements Evaluator {
 								if (lhs == DBL_MRK) {
 									lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
 								}
-								stack[stackTop] = ScriptRuntime.getObjectPropNoWarn(lhs, stringReg, cx, frame.scope);
+								stack[stackTop] = PropertyCache.getObjectProp(frame.idata, frame.pc - 1, lhs, stringReg, cx, frame.scope, false);
 								continue;
 							}
 							case Token.GETPROP: {
@@ -1073,7 +1139,7 @@ public final class Interpreter extends Icode implements Evaluator {
 								if (lhs == DBL_MRK) {
 									lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
 								}
-								stack[stackTop] = ScriptRuntime.getObjectProp(lhs, stringReg, cx, frame.scope);
+								stack[stackTop] = PropertyCache.getObjectProp(frame.idata, frame.pc - 1, lhs, stringReg, cx, frame.scope, true);
 								continue;
 							}
 							case Token.SETPROP: {
@@ -1086,7 +1152,7 @@ public final class Interpreter extends Icode implements Evaluator {
 								if (lhs == DBL_MRK) {
 									lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
 								}
-								stack[stackTop] = ScriptRuntime.setObjectProp(lhs, stringReg, rhs, cx, frame.scope);
+								stack[stackTop] = PropertyCache.setObjectProp(frame.idata, frame.pc - 1, lhs, stringReg, rhs, cx, frame.scope);
 								continue;
 							}
 							case Icode_PROP_INC_DEC: {
@@ -1218,6 +1284,14 @@ public final class Interpreter extends Icode implements Evaluator {
 									calleeScope = ScriptableObject.getTopLevelScope(frame.scope);
 								}
 								if (fun instanceof InterpretedFunction ifun) {
+									CompiledFunctionBody body = getCompiledBody(cx, ifun);
+									if (body != null) {
+										cx.lastInterpreterFrame = frame;
+										frame.savedCallOp = op;
+										frame.savedStackTop = stackTop;
+										stack[stackTop] = callCompiled(cx, body, ifun, funThisObj, getArgsArray(stack, sDbl, stackTop + 2, indexReg), frame.frameIndex + 1);
+										continue;
+									}
 									CallFrame callParentFrame = frame;
 									if (op == Icode_TAIL_CALL) {
 										// In principle tail call can re-use the current
@@ -1299,7 +1373,11 @@ public final class Interpreter extends Icode implements Evaluator {
 								cx.lastInterpreterFrame = frame;
 								frame.savedCallOp = op;
 								frame.savedStackTop = stackTop;
-								stack[stackTop] = fun.call(cx, calleeScope, funThisObj, getArgsArray(stack, sDbl, stackTop + 2, indexReg));
+								if (fun instanceof NativeJavaMethod method) {
+									stack[stackTop] = method.call(cx, calleeScope, funThisObj, getArgsArray(stack, sDbl, stackTop + 2, indexReg), frame.idata, frame.pc - 1);
+								} else {
+									stack[stackTop] = fun.call(cx, calleeScope, funThisObj, getArgsArray(stack, sDbl, stackTop + 2, indexReg));
+								}
 
 								continue;
 							}
@@ -1727,7 +1805,7 @@ public final class Interpreter extends Icode implements Evaluator {
 				exState = EX_CATCH_STATE;
 			} else if (throwable instanceof EvaluatorException) {
 				exState = EX_CATCH_STATE;
-			} else if (throwable instanceof ContinuationPending) {
+			} else if (throwable instanceof ContinuationPending || throwable instanceof ScriptScheduler.BudgetExceededError) {
 				exState = EX_NO_JS_STATE;
 			} else if (throwable instanceof RuntimeException) {
 				exState = cx.hasFeature(Context.FEATURE_ENHANCED_JAVA_ACCESS) ? EX_CATCH_STATE : EX_FINALLY_STATE;
@@ -1938,6 +2016,22 @@ public final class Interpreter extends Icode implements Evaluator {
 		}
 		Object value;
 		Object id = stack[stackTop + 1];
+		if (id == UniqueTag.DOUBLE_MARK) {
+			// Typed array and packed array elements are numbers, keep them unboxed
+			double d = sDbl[stackTop + 1];
+			int index = (int) d;
+			if (index == d) {
+				if (lhs instanceof NativeArray na && na.hasPackedDouble(index)) {
+					stack[stackTop] = UniqueTag.DOUBLE_MARK;
+					sDbl[stackTop] = na.getPackedDouble(index);
+					return stackTop;
+				} else if (lhs instanceof NativeTypedArrayView<?> view && index >= 0 && index < view.getArrayLength()) {
+					stack[stackTop] = UniqueTag.DOUBLE_MARK;
+					sDbl[stackTop] = view.getDouble(index);
+					return stackTop;
+				}
+			}
+		}
 		if (id != UniqueTag.DOUBLE_MARK) {
 			value = ScriptRuntime.getObjectElem(lhs, id, cx, frame.scope);
 		} else {
@@ -1950,6 +2044,27 @@ public final class Interpreter extends Icode implements Evaluator {
 
 	private static int doSetElem(Context cx, CallFrame frame, Object[] stack, double[] sDbl, int stackTop) {
 		stackTop -= 2;
+		if (stack[stackTop + 2] == UniqueTag.DOUBLE_MARK && stack[stackTop + 1] == UniqueTag.DOUBLE_MARK) {
+			double d = sDbl[stackTop + 1];
+			int index = (int) d;
+			double value = sDbl[stackTop + 2];
+			if (index == d) {
+				Object lhs = stack[stackTop];
+				boolean stored = false;
+				if (lhs instanceof NativeArray na) {
+					stored = na.setPackedDouble(index, value);
+				} else if (lhs instanceof NativeTypedArrayView<?> view && index >= 0 && index < view.getArrayLength()) {
+					view.setDouble(index, value);
+					stored = true;
+				}
+				if (stored) {
+					// The assignment evaluates to the number that was assigned, not the stored one
+					stack[stackTop] = UniqueTag.DOUBLE_MARK;
+					sDbl[stackTop] = value;
+					return stackTop;
+				}
+			}
+		}
 		Object rhs = stack[stackTop + 2];
 		if (rhs == UniqueTag.DOUBLE_MARK) {
 			rhs = ScriptRuntime.wrapNumber(sDbl[stackTop + 2]);
@@ -2144,7 +2259,7 @@ public final class Interpreter extends Icode implements Evaluator {
 		return calleeFrame;
 	}
 
-	private static boolean doEquals(Object[] stack, double[] sDbl, int stackTop) {
+	static boolean doEquals(Object[] stack, double[] sDbl, int stackTop) {
 		Object rhs = stack[stackTop + 1];
 		Object lhs = stack[stackTop];
 		if (rhs == UniqueTag.DOUBLE_MARK) {
@@ -2159,7 +2274,7 @@ public final class Interpreter extends Icode implements Evaluator {
 		return ScriptRuntime.eq(lhs, rhs);
 	}
 
-	private static boolean doShallowEquals(Object[] stack, double[] sDbl, int stackTop) {
+	static boolean doShallowEquals(Object[] stack, double[] sDbl, int stackTop) {
 		Object rhs = stack[stackTop + 1];
 		Object lhs = stack[stackTop];
 		final Object DBL_MRK = UniqueTag.DOUBLE_MARK;
@@ -2517,7 +2632,7 @@ public final class Interpreter extends Icode implements Evaluator {
 		}
 	}
 
-	private static void doAdd(Object[] stack, double[] sDbl, int stackTop, Context cx) {
+	static void doAdd(Object[] stack, double[] sDbl, int stackTop, Context cx) {
 		Object rhs = stack[stackTop + 1];
 		Object lhs = stack[stackTop];
 		double d;
@@ -2598,7 +2713,7 @@ public final class Interpreter extends Icode implements Evaluator {
 		return stackTop;
 	}
 
-	private static Object[] getArgsArray(Object[] stack, double[] sDbl, int shift, int count) {
+	static Object[] getArgsArray(Object[] stack, double[] sDbl, int shift, int count) {
 		if (count == 0) {
 			return ScriptRuntime.emptyArgs;
 		}
@@ -2616,8 +2731,12 @@ public final class Interpreter extends Icode implements Evaluator {
 	private static void addInstructionCount(Context cx, CallFrame frame, int extra) {
 		cx.instructionCount += frame.pc - frame.pcPrevBranch + extra;
 		if (cx.instructionCount > cx.instructionThreshold) {
-			cx.observeInstructionCount(cx.instructionCount);
+			int count = cx.instructionCount;
 			cx.instructionCount = 0;
+			if (cx.scriptScheduler != null) {
+				cx.scriptScheduler.observe(frame.idata.itsSourceFile, count);
+			}
+			cx.observeInstructionCount(count);
 		}
 	}
 }
@@ -89,6 +89,32 @@ final class InterpreterData implements Serializable {
 	 */
 	boolean declaredAsFunctionExpression;
 
+	/**
+	 * Number of calls seen so far, used to decide when the function is hot
+	 * enough to be handed to {@link IcodeCompiler}.
+	 */
+	transient int callCount;
+
+	/**
+	 * Bytecode version of this function, or null while it is interpreted.
+	 */
+	transient volatile CompiledFunctionBody compiledBody;
+
+	/**
+	 * true if the function can't be compiled and should stay interpreted.
+	 */
+	transient boolean compileFailed;
+
+	/**
+	 * Inline caches of property get and set instructions, indexed by pc.
+	 */
+	transient PropertyCache[] propertyCaches;
+
+	/**
+	 * Overloads resolved by calls of Java methods, indexed by pc.
+	 */
+	transient NativeJavaMethod.CallSite[] javaCallSites;
+
 	public String getFunctionName() {
 		return itsName;
 	}
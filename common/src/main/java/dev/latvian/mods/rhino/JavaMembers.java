@@ -18,6 +18,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 import static java.lang.reflect.Modifier.*;
 
@@ -85,7 +86,7 @@ class JavaMembers {
 				rval = bp.getter.invoke(javaObject, Context.emptyArgs);
 				type = bp.getter.method().getReturnType();
 			} else {
-				Field field = (Field) member;
+				FieldBox field = (FieldBox) member;
 				rval = field.get(isStatic ? null : javaObject);
 				type = field.getType();
 			}
@@ -133,11 +134,11 @@ class JavaMembers {
 				bp.setters.call(Context.getContext(), ScriptableObject.getTopLevelScope(scope), scope, args);
 			}
 		} else {
-			if (!(member instanceof Field field)) {
+			if (!(member instanceof FieldBox field)) {
 				String str = (member == null) ? "msg.java.internal.private" : "msg.java.method.assign";
 				throw Context.reportRuntimeError1(str, name);
 			}
-			int fieldModifiers = field.getModifiers();
+			int fieldModifiers = field.field.getModifiers();
 
 			if (Modifier.isFinal(fieldModifiers)) {
 				// treat Java final the same as JavaScript [[READONLY]]
@@ -252,7 +253,10 @@ class JavaMembers {
 				NativeJavaConstructor fun = new NativeJavaConstructor(methodOrCtor);
 				fun.setPrototype(prototype);
 				member = fun;
-				ht.put(name, fun);
+
+				synchronized (ht) {
+					ht.put(name, fun);
+				}
 			} else {
 				String trueName = methodOrCtor.getName();
 				member = ht.get(trueName);
@@ -260,7 +264,11 @@ class JavaMembers {
 				if (member instanceof NativeJavaMethod && ((NativeJavaMethod) member).methods.length > 1) {
 					NativeJavaMethod fun = new NativeJavaMethod(methodOrCtor, name);
 					fun.setPrototype(prototype);
-					ht.put(name, fun);
+
+					synchronized (ht) {
+						ht.put(name, fun);
+					}
+
 					member = fun;
 				}
 			}
@@ -450,9 +458,9 @@ class JavaMembers {
 				Map<String, Object> ht = isStatic ? staticMembers : members;
 				Object member = ht.get(name);
 				if (member == null) {
-					ht.put(name, field);
+					ht.put(name, new FieldBox(field));
 				} else if (member instanceof NativeJavaMethod method) {
-					FieldAndMethods fam = new FieldAndMethods(scope, method.methods, field);
+					FieldAndMethods fam = new FieldAndMethods(scope, method.methods, new FieldBox(field));
 					Map<String, FieldAndMethods> fmht = isStatic ? staticFieldAndMethods : fieldAndMethods;
 					if (fmht == null) {
 						fmht = new HashMap<>();
@@ -464,7 +472,7 @@ class JavaMembers {
 					}
 					fmht.put(name, fam);
 					ht.put(name, fam);
-				} else if (member instanceof Field oldField) {
+				} else if (member instanceof FieldBox oldField) {
 					// If this newly reflected field shadows an inherited field,
 					// then replace it. Otherwise, since access to the field
 					// would be ambiguous from Java, no field should be
@@ -472,7 +480,7 @@ class JavaMembers {
 					// For now, the first field found wins, unless another field
 					// explicitly shadows it.
 					if (oldField.getDeclaringClass().isAssignableFrom(field.getDeclaringClass())) {
-						ht.put(name, field);
+						ht.put(name, new FieldBox(field));
 					}
 				} else {
 					// "unknown member type"
@@ -734,16 +742,15 @@ class JavaMembers {
 
 	public static JavaMembers lookupClass(ClassCache cache, Class<?> dynamicType, Class<?> staticType, boolean includeProtected) {
 		JavaMembers members;
-		Map<Class<?>, JavaMembers> ct = cache.getClassCacheMap();
 
 		Class<?> cl = dynamicType;
 		for (; ; ) {
-			members = ct.get(cl);
+			members = cache.getJavaMembers(cl);
 			if (members != null) {
 				if (cl != dynamicType) {
 					// member lookup for the original class failed because of
 					// missing privileges, cache the result so we don't try again
-					ct.put(dynamicType, members);
+					cache.cacheJavaMembers(dynamicType, members);
 				}
 				return members;
 			}
@@ -773,17 +780,62 @@ class JavaMembers {
 			}
 		}
 
+		cache.countMiss();
+
 		if (cache.isCachingEnabled()) {
-			ct.put(cl, members);
+			cache.cacheJavaMembers(cl, members);
 			if (cl != dynamicType) {
 				// member lookup for the original class failed because of
 				// missing privileges, cache the result so we don't try again
-				ct.put(dynamicType, members);
+				cache.cacheJavaMembers(dynamicType, members);
 			}
 		}
 		return members;
 	}
 
+	Class<?> getReflectedClass() {
+		return cl;
+	}
+
+	/**
+	 * Visit the script name of every reflected method and field. The tables
+	 * are complete once the constructor returns, but scripts keep adding
+	 * explicit overloads to them, so they are copied under the same lock.
+	 */
+	void forEachMappedMember(BiConsumer<String, Member> consumer) {
+		for (int tableCursor = 0; tableCursor != 2; ++tableCursor) {
+			Map<String, Object> ht = tableCursor == 0 ? staticMembers : members;
+			Map<String, Object> copy;
+
+			synchronized (ht) {
+				copy = new HashMap<>(ht);
+			}
+
+			for (Map.Entry<String, Object> entry : copy.entrySet()) {
+				String name = entry.getKey();
+
+				if (name.indexOf('(') >= 0) {
+					// Explicit overload, added on demand
+					continue;
+				}
+
+				if (entry.getValue() instanceof NativeJavaMethod method) {
+					for (MemberBox box : method.methods) {
+						if (box.isMethod()) {
+							consumer.accept(name, box.method());
+						}
+					}
+
+					if (method instanceof FieldAndMethods fam) {
+						consumer.accept(name, fam.field.field);
+					}
+				} else if (entry.getValue() instanceof FieldBox field) {
+					consumer.accept(name, field.field);
+				}
+			}
+		}
+	}
+
 	RuntimeException reportMemberNotFound(String memberName) {
 		return Context.reportRuntimeError2("msg.java.member.not.found", cl.getName(), memberName);
 	}
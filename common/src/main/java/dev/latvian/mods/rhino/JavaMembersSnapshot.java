@@ -0,0 +1,230 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package dev.latvian.mods.rhino;
+
+import dev.latvian.mods.rhino.util.Remapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Script names of the members of every class in a {@link ClassCache}, saved
+ * so that the next boot can reflect the same classes in the background and
+ * skip remapping their members.
+ * <p>
+ * A snapshot is only valid for the exact set of classes and mappings it was
+ * taken with. The caller supplies a stamp describing them, for example the
+ * game version and mod list, and a snapshot with a different stamp is not
+ * loaded.
+ *
+ * @see ClassCache#preload(java.util.Collection, ForkJoinPool)
+ */
+public final class JavaMembersSnapshot {
+	private static final String MAGIC = "rhino-members-snapshot:1";
+
+	/**
+	 * Looks member names up in the snapshot before asking the remapper.
+	 */
+	private record SnapshotRemapper(JavaMembersSnapshot snapshot, Remapper remapper) implements Remapper {
+		@Override
+		public String remapClass(Class<?> from, String className) {
+			return remapper.remapClass(from, className);
+		}
+
+		@Override
+		public String unmapClass(String from) {
+			return remapper.unmapClass(from);
+		}
+
+		@Override
+		public String remapField(Class<?> from, Field field, String fieldName) {
+			return remapper.remapField(from, field, fieldName);
+		}
+
+		@Override
+		public String remapMethod(Class<?> from, Method method, String methodString) {
+			return remapper.remapMethod(from, method, methodString);
+		}
+
+		@Override
+		public String getMappedField(Class<?> from, Field field) {
+			Map<String, String> names = snapshot.classes.get(from.getName());
+			String name = names == null ? null : names.get(getKey(field));
+			return name == null ? remapper.getMappedField(from, field) : name;
+		}
+
+		@Override
+		public String getMappedMethod(Class<?> from, Method method) {
+			Map<String, String> names = snapshot.classes.get(from.getName());
+			String name = names == null ? null : names.get(getKey(method));
+			return name == null ? remapper.getMappedMethod(from, method) : name;
+		}
+	}
+
+	private final String stamp;
+	// class name -> member key -> script name
+	private final Map<String, Map<String, String>> classes;
+
+	private JavaMembersSnapshot(String stamp, Map<String, Map<String, String>> classes) {
+		this.stamp = stamp;
+		this.classes = classes;
+	}
+
+	private static String getKey(Member member) {
+		if (member instanceof Method method) {
+			StringBuilder sb = new StringBuilder("m");
+			sb.append(method.getName()).append('(');
+
+			for (Class<?> param : method.getParameterTypes()) {
+				sb.append(Remapper.getTypeName(param.getTypeName()));
+			}
+
+			return sb.append(')').toString();
+		}
+
+		return "f" + member.getName();
+	}
+
+	/**
+	 * Take a snapshot of the classes currently cached. Classes that are still
+	 * being reflected are left out, so when the cache was filled by
+	 * {@link ClassCache#preload(java.util.Collection, ForkJoinPool)}, capture
+	 * only after the returned future has completed.
+	 *
+	 * @param stamp describes the classes and mappings the snapshot is valid for
+	 */
+	public static JavaMembersSnapshot capture(ClassCache cache, String stamp) {
+		Map<String, Map<String, String>> classes = new HashMap<>();
+
+		for (JavaMembers members : cache.getCachedJavaMembers()) {
+			Map<String, String> names = classes.computeIfAbsent(members.getReflectedClass().getName(), k -> new HashMap<>());
+			members.forEachMappedMember((name, member) -> names.put(getKey(member), name));
+		}
+
+		return new JavaMembersSnapshot(stamp, classes);
+	}
+
+	/**
+	 * @return snapshot stored in the file, or null if there is none or it has a different stamp
+	 */
+	public static JavaMembersSnapshot read(Path file, String stamp) {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (!MAGIC.equals(in.readUTF()) || !stamp.equals(in.readUTF())) {
+				return null;
+			}
+
+			int classCount = in.readInt();
+			Map<String, Map<String, String>> classes = new HashMap<>(classCount * 2);
+
+			for (int i = 0; i < classCount; i++) {
+				String className = in.readUTF();
+				int memberCount = in.readInt();
+				Map<String, String> names = new HashMap<>(memberCount * 2);
+
+				for (int j = 0; j < memberCount; j++) {
+					names.put(in.readUTF(), in.readUTF());
+				}
+
+				classes.put(className, names);
+			}
+
+			return new JavaMembersSnapshot(stamp, classes);
+		} catch (IOException | RuntimeException ex) {
+			// Corrupt snapshot, reflect everything again
+			return null;
+		}
+	}
+
+	public void write(Path file) throws IOException {
+		Path dir = file.toAbsolutePath().getParent();
+		Files.createDirectories(dir);
+		Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeUTF(MAGIC);
+				out.writeUTF(stamp);
+				out.writeInt(classes.size());
+
+				for (Map.Entry<String, Map<String, String>> entry : classes.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeInt(entry.getValue().size());
+
+					for (Map.Entry<String, String> name : entry.getValue().entrySet()) {
+						out.writeUTF(name.getKey());
+						out.writeUTF(name.getValue());
+					}
+				}
+			}
+
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	public String getStamp() {
+		return stamp;
+	}
+
+	public Set<String> getClassNames() {
+		return Collections.unmodifiableSet(classes.keySet());
+	}
+
+	/**
+	 * @return remapper that takes member names from this snapshot and asks
+	 * <code>remapper</code> for everything else
+	 * @see Context#setRemapper(Remapper)
+	 */
+	public Remapper wrap(Remapper remapper) {
+		return new SnapshotRemapper(this, remapper);
+	}
+
+	/**
+	 * Reflect every class of the snapshot into the cache in the background.
+	 * Classes that no longer exist are skipped. Install {@link #wrap(Remapper)}
+	 * first, so that the members don't have to be remapped.
+	 *
+	 * @param loader class loader to load the classes with
+	 */
+	public CompletableFuture<Void> preload(ClassCache cache, ClassLoader loader, ForkJoinPool pool) {
+		return CompletableFuture.supplyAsync(() -> {
+			List<Class<?>> list = new ArrayList<>(classes.size());
+
+			for (String name : classes.keySet()) {
+				try {
+					list.add(Class.forName(name, false, loader));
+				} catch (ClassNotFoundException | LinkageError ex) {
+					// Removed since the snapshot was taken
+				}
+			}
+
+			return list;
+		}, pool).thenCompose(list -> cache.preload(list, pool));
+	}
+}
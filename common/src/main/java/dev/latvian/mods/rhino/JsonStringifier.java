@@ -0,0 +1,161 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: 1; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package dev.latvian.mods.rhino;
+
+import com.google.gson.internal.Streams;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class converts a JSON value into a stream of JSON tokens, written
+ * straight to a {@link JsonWriter} instead of building the whole document
+ * in memory first.
+ * <p>
+ * See ECMA 15.12.
+ */
+final class JsonStringifier {
+	private final Context cx;
+	private final JsonWriter writer;
+	private final Callable replacerFunction;
+	private final List<String> propertyList;
+	private final Scriptable scope;
+	private final Set<Object> stack = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	/**
+	 * @param replacer function called with every key and value, or array of the property names to include
+	 */
+	JsonStringifier(Context cx, JsonWriter writer, Object replacer) {
+		this.cx = cx;
+		this.writer = writer;
+
+		if (replacer instanceof Callable callable) {
+			replacerFunction = callable;
+			propertyList = null;
+		} else if (replacer instanceof NativeArray array) {
+			replacerFunction = null;
+			Set<String> names = new LinkedHashSet<>();
+
+			for (long i = 0, len = array.getLength(); i < len; i++) {
+				Object v = array.get((int) i, array);
+
+				if (v instanceof String || v instanceof Number || v instanceof NativeString || v instanceof NativeNumber) {
+					names.add(ScriptRuntime.toString(v));
+				}
+			}
+
+			propertyList = new ArrayList<>(names);
+		} else {
+			replacerFunction = null;
+			propertyList = null;
+		}
+
+		scope = replacer instanceof Scriptable s ? ScriptableObject.getTopLevelScope(s) : null;
+	}
+
+	void write(Object value) throws IOException {
+		if (replacerFunction != null) {
+			Scriptable holder = null;
+
+			if (scope != null) {
+				holder = cx.newObject(scope);
+				holder.put("", holder, value);
+			}
+
+			value = replacerFunction.call(cx, scope, holder, new Object[]{"", value});
+
+			if (value == Undefined.instance) {
+				value = null;
+			}
+		}
+
+		writeValue(value);
+	}
+
+	/**
+	 * @return value to write for the key, or {@link Undefined#instance} if it should be left out
+	 */
+	private Object replace(Object holder, String key, Object value) {
+		if (replacerFunction == null) {
+			return value;
+		}
+
+		Scriptable thisObj = holder instanceof Scriptable s ? s : scope == null ? null : (Scriptable) Context.javaToJS(holder, scope);
+		return replacerFunction.call(cx, scope, thisObj, new Object[]{key, value});
+	}
+
+	private void writeValue(Object v) throws IOException {
+		if (v == null) {
+			writer.nullValue();
+		} else if (v instanceof Boolean b) {
+			writer.value(b);
+		} else if (v instanceof CharSequence) {
+			writer.value(v.toString());
+		} else if (v instanceof Number n) {
+			writer.value(n);
+		} else if (v instanceof NativeString) {
+			writer.value(ScriptRuntime.toString(v));
+		} else if (v instanceof NativeNumber) {
+			writer.value(ScriptRuntime.toNumber(v));
+		} else if (v instanceof Map<?, ?> map) {
+			enter(v);
+			writer.beginObject();
+
+			if (propertyList != null) {
+				for (String key : propertyList) {
+					if (map.containsKey(key)) {
+						writeProperty(v, key, map.get(key));
+					}
+				}
+			} else {
+				for (Map.Entry<?, ?> entry : map.entrySet()) {
+					writeProperty(v, entry.getKey().toString(), entry.getValue());
+				}
+			}
+
+			writer.endObject();
+			stack.remove(v);
+		} else if (v instanceof Iterable<?> iterable) {
+			enter(v);
+			writer.beginArray();
+			int index = 0;
+
+			for (Object o : iterable) {
+				o = replace(v, String.valueOf(index++), o);
+				writeValue(o == Undefined.instance ? null : o);
+			}
+
+			writer.endArray();
+			stack.remove(v);
+		} else {
+			// Java objects are described by their members, which doesn't depend on the size of the value
+			Streams.write(NativeJSON.stringify0(cx.getRemapper(), v), writer);
+		}
+	}
+
+	private void writeProperty(Object holder, String key, Object value) throws IOException {
+		value = replace(holder, key, value);
+
+		if (value != Undefined.instance || replacerFunction == null) {
+			writer.name(key);
+			writeValue(value);
+		}
+	}
+
+	private void enter(Object v) {
+		if (!stack.add(v)) {
+			throw ScriptRuntime.typeError1("msg.cyclic.value", v.getClass().getName());
+		}
+	}
+}
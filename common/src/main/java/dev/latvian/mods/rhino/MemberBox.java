@@ -11,6 +11,9 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serial;
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Member;
@@ -21,6 +24,11 @@ import java.lang.reflect.Modifier;
  * Wrapper class for Method and Constructor instances to cache
  * getParameterTypes() results, recover from IllegalAccessException
  * in some cases and provide serialization support.
+ * <p>
+ * On first use the member is bound to a {@link MethodHandle} that takes the
+ * target and an argument array, which the JIT can inline into the caller
+ * unlike {@link Method#invoke}. Members that can't be bound, usually because
+ * they aren't accessible from here, keep using reflection.
  *
  * @author Igor Bukanov
  */
@@ -33,7 +41,9 @@ final class MemberBox implements Serializable {
 	transient Class<?>[] argTypes;
 	transient Object delegateTo;
 	transient boolean vararg;
-
+	// (Object, Object[])Object for methods, (Object[])Object for constructors
+	private transient MethodHandle handle;
+	private transient boolean handleFailed;
 
 	MemberBox(Method method) {
 		init(method);
@@ -116,7 +126,52 @@ final class MemberBox implements Serializable {
 		return memberObject.toString();
 	}
 
+	/**
+	 * @return handle of the member or null if it has to be called reflectively
+	 */
+	private MethodHandle getHandle() {
+		MethodHandle h = handle;
+
+		if (h == null && !handleFailed) {
+			try {
+				if (isMethod()) {
+					Method method = method();
+					h = MethodHandles.lookup().unreflect(method).asFixedArity();
+
+					if (Modifier.isStatic(method.getModifiers())) {
+						h = MethodHandles.dropArguments(h, 0, Object.class);
+					}
+
+					h = h.asSpreader(Object[].class, argTypes.length).asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+				} else {
+					h = MethodHandles.lookup().unreflectConstructor(ctor()).asFixedArity();
+					h = h.asSpreader(Object[].class, argTypes.length).asType(MethodType.methodType(Object.class, Object[].class));
+				}
+
+				handle = h;
+			} catch (IllegalAccessException | RuntimeException ex) {
+				handleFailed = true;
+				return null;
+			}
+		}
+
+		return h;
+	}
+
 	Object invoke(Object target, Object[] args) {
+		MethodHandle h = getHandle();
+
+		if (h != null) {
+			try {
+				return (Object) h.invokeExact(target, args);
+			} catch (ContinuationPending ex) {
+				// Must allow ContinuationPending exceptions to propagate unhindered
+				throw ex;
+			} catch (Throwable ex) {
+				throw Context.throwAsScriptRuntimeEx(ex);
+			}
+		}
+
 		Method method = method();
 		try {
 			try {
@@ -131,6 +186,8 @@ final class MemberBox implements Serializable {
 						throw Context.throwAsScriptRuntimeEx(ex);
 					}
 				}
+				// Now that it's accessible it can be bound next time
+				handleFailed = false;
 				// Retry after recovery
 				return method.invoke(target, args);
 			}
@@ -150,6 +207,16 @@ final class MemberBox implements Serializable {
 	}
 
 	Object newInstance(Object[] args) {
+		MethodHandle h = getHandle();
+
+		if (h != null) {
+			try {
+				return (Object) h.invokeExact(args);
+			} catch (Throwable ex) {
+				throw Context.throwAsScriptRuntimeEx(ex);
+			}
+		}
+
 		Constructor<?> ctor = ctor();
 		try {
 			try {
@@ -158,6 +225,7 @@ final class MemberBox implements Serializable {
 				if (!VMBridge.tryToMakeAccessible(null, ctor)) {
 					throw Context.throwAsScriptRuntimeEx(ex);
 				}
+				handleFailed = false;
 			}
 			return ctor.newInstance(args);
 		} catch (Exception ex) {
@@ -61,7 +61,10 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 
 	public NativeArray(long lengthArg) {
 		denseOnly = lengthArg <= maximumInitialCapacity;
-		if (denseOnly) {
+		if (lengthArg == 0) {
+			// Arrays start out packed and become generic once they hold anything but numbers
+			doubles = new double[DEFAULT_INITIAL_CAPACITY];
+		} else if (denseOnly) {
 			int intLength = (int) lengthArg;
 			if (intLength < DEFAULT_INITIAL_CAPACITY) {
 				intLength = DEFAULT_INITIAL_CAPACITY;
@@ -74,8 +77,72 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 
 	public NativeArray(Object[] array) {
 		denseOnly = true;
-		dense = array;
 		length = array.length;
+		if (array.length > 0 && isPackable(array)) {
+			doubles = new double[array.length];
+			for (int i = 0; i < array.length; i++) {
+				doubles[i] = (Double) array[i];
+			}
+		} else {
+			dense = array;
+		}
+	}
+
+	private static boolean isPackable(Object[] array) {
+		for (Object value : array) {
+			if (!(value instanceof Double)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Moves packed numbers into the generic dense array, as the first step of
+	 * everything that packed arrays don't handle themselves.
+	 */
+	private void toGenericElements() {
+		if (doubles != null) {
+			int len = (int) length;
+			Object[] values = new Object[Math.max(doubles.length, DEFAULT_INITIAL_CAPACITY)];
+			for (int i = 0; i < len; i++) {
+				values[i] = ScriptRuntime.wrapNumber(doubles[i]);
+			}
+			Arrays.fill(values, len, values.length, NOT_FOUND);
+			doubles = null;
+			dense = values;
+		}
+	}
+
+	private boolean ensurePackedCapacity(int capacity) {
+		if (capacity > doubles.length) {
+			if (capacity > MAX_PRE_GROW_SIZE) {
+				return false;
+			}
+			doubles = Arrays.copyOf(doubles, Math.max(capacity, (int) (doubles.length * GROW_FACTOR)));
+		}
+		return true;
+	}
+
+	// Unboxed element access for the interpreter
+
+	boolean hasPackedDouble(int index) {
+		return doubles != null && 0 <= index && index < length;
+	}
+
+	double getPackedDouble(int index) {
+		return doubles[index];
+	}
+
+	/**
+	 * @return false if the value has to be stored the generic way
+	 */
+	boolean setPackedDouble(int index, double value) {
+		if (doubles != null && 0 <= index && index < length && !isSealed()) {
+			doubles[index] = value;
+			return true;
+		}
+		return false;
 	}
 
 	@Override
@@ -467,6 +534,12 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 
 	@Override
 	public Object get(int index, Scriptable start) {
+		if (doubles != null) {
+			if (0 <= index && index < length) {
+				return ScriptRuntime.wrapNumber(doubles[index]);
+			}
+			return super.get(index, start);
+		}
 		if (!denseOnly && isGetterOrSetter(null, index, false)) {
 			return super.get(index, start);
 		}
@@ -478,6 +551,9 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 
 	@Override
 	public boolean has(int index, Scriptable start) {
+		if (doubles != null) {
+			return 0 <= index && index < length || super.has(index, start);
+		}
 		if (!denseOnly && isGetterOrSetter(null, index, false)) {
 			return super.has(index, start);
 		}
@@ -530,6 +606,7 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 			// If the object is sealed, super will throw exception
 			long index = toArrayIndex(id);
 			if (index >= length) {
+				toGenericElements();
 				length = index + 1;
 				denseOnly = false;
 			}
@@ -553,6 +630,21 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 
 	@Override
 	public void put(int index, Scriptable start, Object value) {
+		if (doubles != null) {
+			if (start == this && value instanceof Double d && 0 <= index && index <= length && !isSealed()) {
+				if (index < length) {
+					doubles[index] = d;
+					return;
+				} else if (!isExtensible()) {
+					return;
+				} else if (ensurePackedCapacity(index + 1)) {
+					doubles[index] = d;
+					length = (long) index + 1;
+					return;
+				}
+			}
+			toGenericElements();
+		}
 		if (start == this && !isSealed() && dense != null && 0 <= index && (denseOnly || !isGetterOrSetter(null, index, true))) {
 			if (!isExtensible() && this.length <= index) {
 				return;
@@ -582,6 +674,7 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 
 	@Override
 	public void delete(int index) {
+		toGenericElements();
 		if (dense != null && 0 <= index && index < dense.length && !isSealed() && (denseOnly || !isGetterOrSetter(null, index, true))) {
 			dense[index] = NOT_FOUND;
 		} else {
@@ -592,6 +685,15 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 	@Override
 	public Object[] getIds(boolean nonEnumerable, boolean getSymbols) {
 		Object[] superIds = super.getIds(nonEnumerable, getSymbols);
+		if (doubles != null) {
+			int N = (int) length;
+			Object[] ids = new Object[N + superIds.length];
+			for (int i = 0; i != N; ++i) {
+				ids[i] = i;
+			}
+			System.arraycopy(superIds, 0, ids, N, superIds.length);
+			return ids;
+		}
 		if (dense == null) {
 			return superIds;
 		}
@@ -652,6 +754,9 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 
 	@Override
 	public int getAttributes(int index) {
+		if (doubles != null && index >= 0 && index < length) {
+			return EMPTY;
+		}
 		if (dense != null && index >= 0 && index < dense.length && dense[index] != NOT_FOUND) {
 			return EMPTY;
 		}
@@ -660,6 +765,12 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 
 	@Override
 	protected ScriptableObject getOwnPropertyDescriptor(Context cx, Object id) {
+		if (doubles != null) {
+			int index = toDenseIndex(id);
+			if (0 <= index && index < length) {
+				return defaultIndexPropertyDescriptor(ScriptRuntime.wrapNumber(doubles[index]));
+			}
+		}
 		if (dense != null) {
 			int index = toDenseIndex(id);
 			if (0 <= index && index < dense.length && dense[index] != NOT_FOUND) {
@@ -672,6 +783,7 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 
 	@Override
 	protected void defineOwnProperty(Context cx, Object id, ScriptableObject desc, boolean checkValid) {
+		toGenericElements();
 		if (dense != null) {
 			Object[] values = dense;
 			dense = null;
@@ -815,6 +927,9 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 		if (denseOnly && !this.denseOnly) {
 			throw new IllegalArgumentException();
 		}
+		if (!denseOnly) {
+			toGenericElements();
+		}
 		this.denseOnly = denseOnly;
 	}
 
@@ -836,6 +951,14 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 			throw ScriptRuntime.rangeError(msg);
 		}
 
+		if (doubles != null) {
+			if (longVal <= length) {
+				length = longVal;
+				return;
+			}
+			// Growing the length leaves holes
+			toGenericElements();
+		}
 		if (denseOnly) {
 			if (longVal < length) {
 				// downcast okay because denseOnly
@@ -1073,6 +1196,16 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 		// if no args, use "," as separator
 		String separator = (args.length < 1 || args[0] == Undefined.instance) ? "," : ScriptRuntime.toString(args[0]);
 		if (o instanceof NativeArray na) {
+			if (na.doubles != null) {
+				StringBuilder sb = new StringBuilder();
+				for (int i = 0; i < length; i++) {
+					if (i != 0) {
+						sb.append(separator);
+					}
+					sb.append(ScriptRuntime.numberToString(na.doubles[i], 10));
+				}
+				return sb.toString();
+			}
 			if (na.denseOnly) {
 				StringBuilder sb = new StringBuilder();
 				for (int i = 0; i < length; i++) {
@@ -1124,6 +1257,14 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 		Scriptable o = ScriptRuntime.toObject(cx, scope, thisObj);
 
 		if (o instanceof NativeArray na) {
+			if (na.doubles != null) {
+				for (int i = 0, j = ((int) na.length) - 1; i < j; i++, j--) {
+					double temp = na.doubles[i];
+					na.doubles[i] = na.doubles[j];
+					na.doubles[j] = temp;
+				}
+				return o;
+			}
 			if (na.denseOnly) {
 				for (int i = 0, j = ((int) na.length) - 1; i < j; i++, j--) {
 					Object temp = na.dense[i];
@@ -1157,8 +1298,8 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 			final Callable jsCompareFunction = ScriptRuntime.getValueFunctionAndThis(args[0], cx);
 			final Scriptable funThis = ScriptRuntime.lastStoredScriptable(cx);
 			final Object[] cmpBuf = new Object[2]; // Buffer for cmp arguments
-			comparator = new ElementComparator((x, y) -> {
-				// This comparator is invoked only for non-undefined objects
+			comparator = (x, y) -> {
+				// Undefined values and holes have been moved out of the way already
 				cmpBuf[0] = x;
 				cmpBuf[1] = y;
 				Object ret = jsCompareFunction.call(cx, scope, funThis, cmpBuf);
@@ -1170,9 +1311,9 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 					return +1;
 				}
 				return 0;
-			});
+			};
 		} else {
-			comparator = DEFAULT_COMPARATOR;
+			comparator = null;
 		}
 
 		long llength = getLengthProperty(cx, o, false);
@@ -1187,7 +1328,13 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 			working[i] = getRawElem(o, i);
 		}
 
-		Sorting.get().hybridSort(working, comparator);
+		final int defined = moveUndefinedToEnd(working);
+
+		if (comparator != null) {
+			sortDefined(working, defined, comparator);
+		} else if (!sortByStringKeys(working, defined)) {
+			sortDefined(working, defined, STRING_COMPARATOR);
+		}
 
 		// copy the working array back into thisObj
 		for (int i = 0; i < length; ++i) {
@@ -1197,10 +1344,100 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 		return o;
 	}
 
+	/**
+	 * Moves undefined values and then holes behind all other values, keeping the order of the
+	 * other values, as ECMA 22.1.3.25 sorts them there without comparing them.
+	 *
+	 * @return number of values in front that still need to be sorted
+	 */
+	private static int moveUndefinedToEnd(Object[] working) {
+		int defined = 0;
+		int undefined = 0;
+
+		for (Object value : working) {
+			if (value == Undefined.instance) {
+				undefined++;
+			} else if (value != NOT_FOUND) {
+				working[defined++] = value;
+			}
+		}
+
+		Arrays.fill(working, defined, defined + undefined, Undefined.instance);
+		Arrays.fill(working, defined + undefined, working.length, NOT_FOUND);
+		return defined;
+	}
+
+	/**
+	 * Sorts with a stable merge sort, which needs far fewer comparisons than the hybrid sort,
+	 * especially for arrays that are already mostly in order. It accepts comparators that
+	 * aren't consistent, so every comparison is made only once.
+	 */
+	private static void sortDefined(Object[] working, int defined, Comparator<Object> comparator) {
+		Sorting.get().mergeSort(working, defined, comparator);
+	}
+
+	/**
+	 * Default sort order for arrays of only strings and numbers. Converting those to strings has no
+	 * side effects, so each key is computed once instead of twice for every comparison.
+	 *
+	 * @return false if there are other values, which are left for the generic comparator
+	 */
+	private static boolean sortByStringKeys(Object[] working, int defined) {
+		boolean onlyStrings = true;
+
+		for (int i = 0; i < defined; i++) {
+			Object value = working[i];
+
+			if (!(value instanceof String)) {
+				if (value instanceof CharSequence || value instanceof Number) {
+					onlyStrings = false;
+				} else {
+					return false;
+				}
+			}
+		}
+
+		if (onlyStrings) {
+			// Equal strings can't be told apart, so the natural order is all that is needed
+			Arrays.sort(working, 0, defined);
+			return true;
+		}
+
+		final SortKey[] keys = new SortKey[defined];
+
+		for (int i = 0; i < defined; i++) {
+			keys[i] = new SortKey(ScriptRuntime.toString(working[i]), working[i]);
+		}
+
+		Arrays.sort(keys);
+
+		for (int i = 0; i < defined; i++) {
+			working[i] = keys[i].value;
+		}
+
+		return true;
+	}
+
+	private record SortKey(String key, Object value) implements Comparable<SortKey> {
+		@Override
+		public int compareTo(SortKey o) {
+			return key.compareTo(o.key);
+		}
+	}
+
 	private static Object js_push(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
 		Scriptable o = ScriptRuntime.toObject(cx, scope, thisObj);
 
 		if (o instanceof NativeArray na) {
+			if (na.doubles != null) {
+				if (isPackable(args) && na.ensurePackedCapacity((int) na.length + args.length)) {
+					for (Object arg : args) {
+						na.doubles[(int) na.length++] = (Double) arg;
+					}
+					return ScriptRuntime.wrapNumber(na.length);
+				}
+				na.toGenericElements();
+			}
 			if (na.denseOnly && na.ensureCapacity((int) na.length + args.length)) {
 				for (Object arg : args) {
 					na.dense[(int) na.length++] = arg;
@@ -1223,11 +1460,15 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 
 		Object result;
 		if (o instanceof NativeArray na) {
+			if (na.doubles != null && na.length > 0) {
+				na.length--;
+				return ScriptRuntime.wrapNumber(na.doubles[(int) na.length]);
+			}
 			if (na.denseOnly && na.length > 0) {
 				na.length--;
 				result = na.dense[(int) na.length];
 				na.dense[(int) na.length] = NOT_FOUND;
-				return result;
+				return result == NOT_FOUND ? Undefined.instance : result;
 			}
 		}
 		long length = getLengthProperty(cx, o, false);
@@ -1254,6 +1495,12 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 		Scriptable o = ScriptRuntime.toObject(cx, scope, thisObj);
 
 		if (o instanceof NativeArray na) {
+			if (na.doubles != null && na.length > 0) {
+				na.length--;
+				double result = na.doubles[0];
+				System.arraycopy(na.doubles, 1, na.doubles, 0, (int) na.length);
+				return ScriptRuntime.wrapNumber(result);
+			}
 			if (na.denseOnly && na.length > 0) {
 				na.length--;
 				Object result = na.dense[0];
@@ -1295,6 +1542,17 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 		Scriptable o = ScriptRuntime.toObject(cx, scope, thisObj);
 
 		if (o instanceof NativeArray na) {
+			if (na.doubles != null) {
+				if (isPackable(args) && na.ensurePackedCapacity((int) na.length + args.length)) {
+					System.arraycopy(na.doubles, 0, na.doubles, args.length, (int) na.length);
+					for (int i = 0; i < args.length; i++) {
+						na.doubles[i] = (Double) args[i];
+					}
+					na.length += args.length;
+					return ScriptRuntime.wrapNumber(na.length);
+				}
+				na.toGenericElements();
+			}
 			if (na.denseOnly && na.ensureCapacity((int) na.length + args.length)) {
 				System.arraycopy(na.dense, 0, na.dense, args.length, (int) na.length);
 				for (int i = 0; i < args.length; i++) {
@@ -1333,6 +1591,7 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 		boolean denseMode = false;
 		if (o instanceof NativeArray) {
 			na = (NativeArray) o;
+			na.toGenericElements();
 			denseMode = na.denseOnly;
 		}
 
@@ -1456,7 +1715,20 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 
 		// First, optimize for a pair of native, dense arrays
 		if ((newlen <= Integer.MAX_VALUE) && (result instanceof final NativeArray denseResult)) {
-			if (denseResult.denseOnly && (arg instanceof final NativeArray denseArg)) {
+			if (denseResult.doubles != null && offset == denseResult.length && arg instanceof final NativeArray packedArg && packedArg.doubles != null && denseResult.ensurePackedCapacity((int) newlen)) {
+				System.arraycopy(packedArg.doubles, 0, denseResult.doubles, (int) offset, (int) srclen);
+				denseResult.length = newlen;
+				return newlen;
+			}
+			denseResult.toGenericElements();
+			if (arg instanceof final NativeArray packedArg && packedArg.doubles != null) {
+				if (denseResult.denseOnly && denseResult.ensureCapacity((int) newlen)) {
+					for (int i = 0; i < srclen; i++) {
+						denseResult.dense[(int) offset + i] = ScriptRuntime.wrapNumber(packedArg.doubles[i]);
+					}
+					return newlen;
+				}
+			} else if (denseResult.denseOnly && (arg instanceof final NativeArray denseArg)) {
 				if (denseArg.denseOnly) {
 					// Now we can optimize
 					denseResult.ensureCapacity((int) newlen);
@@ -1585,6 +1857,23 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 			}
 		}
 		if (o instanceof NativeArray na) {
+			if (na.doubles != null) {
+				if (compareTo instanceof Number n) {
+					double d = n.doubleValue();
+					for (int i = (int) start; i < length; i++) {
+						if (na.doubles[i] == d) {
+							return (long) i;
+						}
+					}
+				} else {
+					for (int i = (int) start; i < length; i++) {
+						if (ScriptRuntime.shallowEq(ScriptRuntime.wrapNumber(na.doubles[i]), compareTo)) {
+							return (long) i;
+						}
+					}
+				}
+				return NEGATIVE_ONE;
+			}
 			if (na.denseOnly) {
 				Scriptable proto = na.getPrototype();
 				for (int i = (int) start; i < length; i++) {
@@ -1640,6 +1929,23 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 			}
 		}
 		if (o instanceof NativeArray na) {
+			if (na.doubles != null) {
+				if (compareTo instanceof Number n) {
+					double d = n.doubleValue();
+					for (int i = (int) start; i >= 0; i--) {
+						if (na.doubles[i] == d) {
+							return (long) i;
+						}
+					}
+				} else {
+					for (int i = (int) start; i >= 0; i--) {
+						if (ScriptRuntime.shallowEq(ScriptRuntime.wrapNumber(na.doubles[i]), compareTo)) {
+							return (long) i;
+						}
+					}
+				}
+				return NEGATIVE_ONE;
+			}
 			if (na.denseOnly) {
 				Scriptable proto = na.getPrototype();
 				for (int i = (int) start; i >= 0; i--) {
@@ -1691,6 +1997,18 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 			}
 		}
 		if (o instanceof NativeArray na) {
+			if (na.doubles != null) {
+				if (compareTo instanceof Number n) {
+					double d = n.doubleValue();
+					boolean nan = Double.isNaN(d);
+					for (int i = (int) k; i < len; i++) {
+						if (na.doubles[i] == d || nan && Double.isNaN(na.doubles[i])) {
+							return Boolean.TRUE;
+						}
+					}
+				}
+				return Boolean.FALSE;
+			}
 			if (na.denseOnly) {
 				Scriptable proto = na.getPrototype();
 				for (int i = (int) k; i < len; i++) {
@@ -1798,6 +2116,15 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 		// Optimize for a native array. If properties were overridden with setters
 		// and other non-default options then we won't get here.
 		if ((o instanceof NativeArray na) && (count <= Integer.MAX_VALUE)) {
+			if (na.doubles != null) {
+				for (; count > 0; count--) {
+					na.doubles[(int) to] = na.doubles[(int) from];
+					from += direction;
+					to += direction;
+				}
+
+				return thisObj;
+			}
 			if (na.denseOnly) {
 				for (; count > 0; count--) {
 					na.dense[(int) to] = na.dense[(int) from];
@@ -2223,7 +2550,6 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 	// Comparators for the js_sort method. Putting them here lets us unit-test them better.
 
 	private static final Comparator<Object> STRING_COMPARATOR = new StringLikeComparator();
-	private static final Comparator<Object> DEFAULT_COMPARATOR = new ElementComparator();
 
 	public static final class StringLikeComparator implements Comparator<Object>, Serializable {
 
@@ -2396,6 +2722,13 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 	 */
 	private Object[] dense;
 
+	/**
+	 * Packed storage for arrays that have only ever held numbers, without
+	 * holes. While it is used, <code>dense</code> is null and <code>denseOnly</code>
+	 * is true.
+	 */
+	private double[] doubles;
+
 	/**
 	 * True if all numeric properties are stored in <code>dense</code>.
 	 */
@@ -7,10 +7,16 @@
 package dev.latvian.mods.rhino;
 
 import java.io.Serial;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.TimeZone;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.SignStyle;
+import java.time.temporal.ChronoField;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
 
 /**
  * This class implements the Date native object.
@@ -759,11 +765,7 @@ final class NativeDate extends IdScriptableObject {
 			double day = MakeDay(year, MonthFromTime(t), DateFromTime(t));
 			t = MakeDate(day, TimeWithinDay(t));
 		}
-		Date date = new Date((long) t);
-		if (thisTimeZone.inDaylightTime(date)) {
-			return msPerHour;
-		}
-		return 0;
+		return localZone.daylightSaving((long) t);
 	}
 
 	/*
@@ -820,11 +822,12 @@ final class NativeDate extends IdScriptableObject {
 	}
 
 	private static double LocalTime(double t) {
-		return t + LocalTZA + DaylightSavingTA(t);
+		return t + localZone.rawOffset + DaylightSavingTA(t);
 	}
 
 	private static double internalUTC(double t) {
-		return t - LocalTZA - DaylightSavingTA(t - LocalTZA);
+		double localTZA = localZone.rawOffset;
+		return t - localTZA - DaylightSavingTA(t - localTZA);
 	}
 
 	private static int HourFromTime(double t) {
@@ -1342,7 +1345,7 @@ final class NativeDate extends IdScriptableObject {
 
 			// offset from GMT in minutes.  The offset includes daylight
 			// savings, if it applies.
-			int minutes = (int) Math.floor((LocalTZA + DaylightSavingTA(t)) / msPerMinute);
+			int minutes = (int) Math.floor((localZone.rawOffset + DaylightSavingTA(t)) / msPerMinute);
 			// map 510 minutes to 0830 hours
 			int offset = (minutes / 60) * 100 + minutes % 60;
 			if (offset > 0) {
@@ -1353,23 +1356,24 @@ final class NativeDate extends IdScriptableObject {
 			}
 			append0PaddedUint(result, offset, 4);
 
-			// Find an equivalent year before getting the timezone
-			// comment.  See DaylightSavingTA.
-			if (t < 0.0) {
-				int equiv = EquivalentYear(YearFromTime(local));
-				double day = MakeDay(equiv, MonthFromTime(t), DateFromTime(t));
-				t = MakeDate(day, TimeWithinDay(t));
-			}
 			result.append(" (");
-			Date date = new Date((long) t);
-			synchronized (timeZoneFormatter) {
-				result.append(timeZoneFormatter.format(date));
-			}
+			appendTimeZoneName(result, t, local);
 			result.append(')');
 		}
 		return result.toString();
 	}
 
+	private static void appendTimeZoneName(StringBuilder result, double t, double local) {
+		// Find an equivalent year before getting the timezone
+		// comment.  See DaylightSavingTA.
+		if (t < 0.0) {
+			int equiv = EquivalentYear(YearFromTime(local));
+			double day = MakeDay(equiv, MonthFromTime(t), DateFromTime(t));
+			t = MakeDate(day, TimeWithinDay(t));
+		}
+		localZone.timeZoneFormatter.formatTo(Instant.ofEpochMilli((long) t), result);
+	}
+
 	/* the javascript constructor */
 	private static Object jsConstructor(Object[] args) {
 		NativeDate obj = new NativeDate();
@@ -1415,16 +1419,26 @@ final class NativeDate extends IdScriptableObject {
 	}
 
 	private static String toLocale_helper(double t, int methodId) {
-		DateFormat formatter = switch (methodId) {
+		DateTimeFormatter formatter = switch (methodId) {
 			case Id_toLocaleString -> localeDateTimeFormatter;
 			case Id_toLocaleTimeString -> localeTimeFormatter;
 			case Id_toLocaleDateString -> localeDateFormatter;
 			default -> throw new AssertionError(); // unreachable
 		};
 
-		synchronized (formatter) {
-			return formatter.format(new Date((long) t));
+		// Format the same local fields the getters return, java.time would
+		// otherwise apply historical offsets such as local mean time
+		double local = LocalTime(t);
+		long localMillis = (long) local;
+		LocalDateTime dateTime = LocalDateTime.ofEpochSecond(Math.floorDiv(localMillis, 1000L), (int) Math.floorMod(localMillis, 1000L) * 1000000, ZoneOffset.UTC);
+		StringBuilder result = new StringBuilder(40);
+		formatter.formatTo(dateTime, result);
+
+		if (methodId != Id_toLocaleDateString) {
+			result.append(' ');
+			appendTimeZoneName(result, t, local);
 		}
+		return result.toString();
 	}
 
 	private static String js_toUTCString(double date) {
@@ -1854,15 +1868,57 @@ final class NativeDate extends IdScriptableObject {
 	private static final int Id_toGMTString = Id_toUTCString; // Alias, see Ecma B.2.6
 	// #/string_id_map#
 
-	/* cached values */
-	private static final TimeZone thisTimeZone = TimeZone.getDefault();
-	private static final double LocalTZA = thisTimeZone.getRawOffset();
+	// java.time formatters are immutable, so they can be shared between threads
+	private static final DateTimeFormatter localeDateFormatter = new DateTimeFormatterBuilder().appendPattern("MMMM d, ").appendValue(ChronoField.YEAR_OF_ERA, 4, 10, SignStyle.NORMAL).toFormatter();
+	private static final DateTimeFormatter localeTimeFormatter = DateTimeFormatter.ofPattern("h:mm:ss a");
+	private static final DateTimeFormatter localeDateTimeFormatter = new DateTimeFormatterBuilder().append(localeDateFormatter).appendLiteral(' ').append(localeTimeFormatter).toFormatter();
+
+	/* the default time zone at class load, looking it up again on every access would clone it */
+	private static final LocalZone localZone = new LocalZone(ZoneId.systemDefault());
 
-	//not thread safe
-	private static final DateFormat timeZoneFormatter = new SimpleDateFormat("zzz");
-	private static final DateFormat localeDateTimeFormatter = new SimpleDateFormat("MMMM d, yyyy h:mm:ss a z");
-	private static final DateFormat localeDateFormatter = new SimpleDateFormat("MMMM d, yyyy");
-	private static final DateFormat localeTimeFormatter = new SimpleDateFormat("h:mm:ss a z");
+	/**
+	 * Everything derived from one time zone. Immutable apart from the last looked up
+	 * offset period, which is itself immutable and safe to race on, so dates can be
+	 * formatted from many threads without locking.
+	 */
+	private static final class LocalZone {
+		private final ZoneId zone;
+		private final ZoneRules rules;
+		private final double rawOffset;
+		private final DateTimeFormatter timeZoneFormatter;
+		private OffsetPeriod period;
+
+		private LocalZone(ZoneId zone) {
+			this.zone = zone;
+			this.rules = zone.getRules();
+			this.rawOffset = rules.getStandardOffset(Instant.now()).getTotalSeconds() * msPerSecond;
+			this.timeZoneFormatter = DateTimeFormatter.ofPattern("zzz").withZone(zone);
+		}
+
+		private double daylightSaving(long t) {
+			OffsetPeriod p = period;
+			if (p == null || t < p.start || t >= p.end) {
+				p = lookup(t);
+				period = p;
+			}
+			return p.daylightSaving;
+		}
+
+		private OffsetPeriod lookup(long t) {
+			// Transitions fall on whole seconds, this finds the last one at or before t
+			ZoneOffsetTransition prev = rules.previousTransition(Instant.ofEpochSecond(Math.floorDiv(t, 1000L) + 1L));
+			ZoneOffsetTransition next = rules.nextTransition(Instant.ofEpochMilli(t));
+			long start = prev == null ? Long.MIN_VALUE : prev.toEpochSecond() * 1000L;
+			long end = next == null ? Long.MAX_VALUE : next.toEpochSecond() * 1000L;
+			return new OffsetPeriod(start, end, rules.getDaylightSavings(Instant.ofEpochMilli(t)).toMillis());
+		}
+	}
+
+	/**
+	 * A stretch of time between two offset transitions of a zone.
+	 */
+	private record OffsetPeriod(long start, long end, double daylightSaving) {
+	}
 
 	private double date;
 }
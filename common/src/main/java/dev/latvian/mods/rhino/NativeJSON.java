@@ -17,8 +17,10 @@ import dev.latvian.mods.rhino.json.JsonParser;
 import dev.latvian.mods.rhino.util.HideFromJS;
 import dev.latvian.mods.rhino.util.Remapper;
 
+import java.io.IOException;
 import java.io.Serial;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -223,10 +225,24 @@ public final class NativeJSON extends IdScriptableObject {
 	}
 
 	public static String stringify(Context cx, Object value, Object replacer, Object space) {
-		JsonElement e = stringify0(cx.getRemapper(), value);
-
 		StringWriter stringWriter = new StringWriter();
-		JsonWriter writer = new JsonWriter(stringWriter);
+
+		try {
+			stringify(cx, value, replacer, space, stringWriter);
+			return stringWriter.toString();
+		} catch (IOException ex) {
+			ex.printStackTrace();
+			return "error";
+		}
+	}
+
+	/**
+	 * Write the value as JSON to the output as it is walked, without building
+	 * the document in memory. Unbuffered outputs should be wrapped in a
+	 * {@link java.io.BufferedWriter}.
+	 */
+	public static void stringify(Context cx, Object value, Object replacer, Object space, Appendable out) throws IOException {
+		JsonWriter writer = new JsonWriter(out instanceof Writer w ? w : Streams.writerForAppendable(out));
 
 		String indent = null;
 
@@ -255,13 +271,8 @@ public final class NativeJSON extends IdScriptableObject {
 		writer.setHtmlSafe(false);
 		writer.setLenient(true);
 
-		try {
-			Streams.write(e, writer);
-			return stringWriter.toString();
-		} catch (Exception ex) {
-			ex.printStackTrace();
-			return "error";
-		}
+		new JsonStringifier(cx, writer, replacer).write(value);
+		writer.flush();
 	}
 
 	private static void type(Remapper remapper, StringBuilder builder, Class<?> type) {
@@ -314,9 +325,9 @@ public final class NativeJSON extends IdScriptableObject {
 
 			for (Object o : (Iterable<?>) v) {
 				json.add(stringify0(remapper, o));
-
-				return json;
 			}
+
+			return json;
 		}
 
 		if (v instanceof Wrapper) {
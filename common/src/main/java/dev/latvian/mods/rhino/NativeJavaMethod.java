@@ -6,10 +6,11 @@
 
 package dev.latvian.mods.rhino;
 
+import dev.latvian.mods.rhino.util.wrap.TypeWrappers;
+
 import java.io.Serial;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This class reflects Java methods into the JavaScript environment and
@@ -115,7 +116,44 @@ public class NativeJavaMethod extends BaseFunction {
 			throw new RuntimeException("No methods defined for call");
 		}
 
-		int index = findCachedFunction(cx, args);
+		return call(cx, scope, thisObj, args, findCachedFunction(cx, args));
+	}
+
+	/**
+	 * Call with a per call site cache of the resolved overload, so that a site
+	 * that keeps passing arguments of the same classes skips overload
+	 * resolution completely.
+	 *
+	 * @param pc offset of the call instruction in the icode of the function
+	 */
+	Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args, InterpreterData idata, int pc) {
+		CallSite[] sites = idata.javaCallSites;
+
+		if (sites != null) {
+			CallSite site = sites[pc];
+
+			if (site != null && site.method == this && site.overload.matches(args)) {
+				return call(cx, scope, thisObj, args, site.overload.index);
+			}
+		}
+
+		ResolvedOverload ovl = lookupOverload(args, ResolvedOverload.hash(args));
+
+		if (ovl == null) {
+			// Resolve and cache it for the whole method first, the site picks it up next time
+			return call(cx, scope, thisObj, args);
+		}
+
+		if (sites == null) {
+			sites = new CallSite[idata.itsICode.length];
+			idata.javaCallSites = sites;
+		}
+
+		sites[pc] = new CallSite(this, ovl);
+		return call(cx, scope, thisObj, args, ovl.index);
+	}
+
+	private Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args, int index) {
 		if (index < 0) {
 			Class<?> c = methods[0].method().getDeclaringClass();
 			String sig = c.getName() + '.' + getFunctionName() + '(' + scriptSignature(args) + ')';
@@ -224,22 +262,103 @@ public class NativeJavaMethod extends BaseFunction {
 	}
 
 	int findCachedFunction(Context cx, Object[] args) {
-		if (methods.length > 1) {
-			for (ResolvedOverload ovl : overloadCache) {
-				if (ovl.matches(args)) {
-					return ovl.index;
+		int hash = ResolvedOverload.hash(args);
+		ResolvedOverload ovl = lookupOverload(args, hash);
+
+		if (ovl != null) {
+			return ovl.index;
+		}
+
+		int index = findFunction(cx, methods, args);
+
+		if (isClassDependent(cx)) {
+			addOverload(new ResolvedOverload(args, index, hash));
+		}
+
+		return index;
+	}
+
+	/**
+	 * @return cached overload for the classes of the arguments or null
+	 */
+	private ResolvedOverload lookupOverload(Object[] args, int hash) {
+		ResolvedOverload[] table = overloadCache;
+
+		if (table != null) {
+			int mask = table.length - 1;
+
+			for (int i = hash & mask; table[i] != null; i = (i + 1) & mask) {
+				ResolvedOverload ovl = table[i];
+
+				if (ovl.hash == hash && ovl.matches(args)) {
+					return ovl;
 				}
 			}
-			int index = findFunction(cx, methods, args);
-			// As a sanity measure, don't let the lookup cache grow longer
-			// than twice the number of overloaded methods
-			if (overloadCache.size() < methods.length * 2) {
-				ResolvedOverload ovl = new ResolvedOverload(args, index);
-				overloadCache.addIfAbsent(ovl);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Add overload to the open addressing table. The table is copied on every
+	 * insert, so lookups never lock and never see a partially filled table.
+	 */
+	private synchronized void addOverload(ResolvedOverload ovl) {
+		// As a sanity measure, don't let the lookup cache grow longer
+		// than twice the number of overloaded methods
+		int limit = Math.min(Math.max(methods.length, 2) * 2, MAX_CACHED_OVERLOADS);
+
+		if (overloadCount >= limit) {
+			return;
+		}
+
+		ResolvedOverload[] table = overloadCache;
+		ResolvedOverload[] newTable;
+
+		if (table == null) {
+			// Keep the table at most half full, so that probe sequences stay short
+			newTable = new ResolvedOverload[Integer.highestOneBit(limit * 2 - 1) << 1];
+		} else {
+			newTable = table.clone();
+		}
+
+		int mask = newTable.length - 1;
+		int i = ovl.hash & mask;
+
+		while (newTable[i] != null) {
+			if (newTable[i].equals(ovl)) {
+				return;
+			}
+
+			i = (i + 1) & mask;
+		}
+
+		newTable[i] = ovl;
+		overloadCount++;
+		overloadCache = newTable;
+	}
+
+	/**
+	 * Type wrappers with a validator accept or reject arguments by value, so
+	 * the chosen overload may differ between arguments of the same class and
+	 * must not be cached.
+	 */
+	private boolean isClassDependent(Context cx) {
+		if (!cx.hasTypeWrappers()) {
+			return true;
+		}
+
+		TypeWrappers typeWrappers = cx.getTypeWrappers();
+
+		for (MemberBox method : methods) {
+			for (Class<?> type : method.argTypes) {
+				if (typeWrappers.hasValidator(type) || type.isArray() && typeWrappers.hasValidator(type.getComponentType())) {
+					return false;
+				}
 			}
-			return index;
 		}
-		return findFunction(cx, methods, args);
+
+		return true;
 	}
 
 	/**
@@ -495,6 +614,8 @@ public class NativeJavaMethod extends BaseFunction {
 
 	private static final boolean debug = false;
 
+	private static final int MAX_CACHED_OVERLOADS = 32;
+
 	private static void printDebug(String msg, MemberBox member, Object[] args) {
 		if (debug) {
 			StringBuilder sb = new StringBuilder();
@@ -515,6 +636,13 @@ public class NativeJavaMethod extends BaseFunction {
 
 	MemberBox[] methods;
 	private final String functionName;
-	private transient final CopyOnWriteArrayList<ResolvedOverload> overloadCache = new CopyOnWriteArrayList<>();
+	private transient volatile ResolvedOverload[] overloadCache;
+	private transient int overloadCount;
+
+	/**
+	 * Overload resolved at a single call instruction.
+	 */
+	record CallSite(NativeJavaMethod method, ResolvedOverload overload) {
+	}
 }
 
@@ -0,0 +1,371 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package dev.latvian.mods.rhino;
+
+/**
+ * Runtime support for classes generated by {@link IcodeCompiler}.
+ * <p>
+ * Generated code keeps the same frame layout as {@link Interpreter}: one
+ * <code>Object[]</code> holding variables, locals and the operand stack and a
+ * parallel <code>double[]</code> for unboxed numbers marked with
+ * {@link UniqueTag#DOUBLE_MARK}. Every helper works on that layout in place
+ * and mirrors the matching case of the interpreter loop.
+ * <p>
+ * The class is public only because generated classes are defined by their own
+ * class loader; it is not part of the API.
+ */
+public final class OptRuntime {
+	private OptRuntime() {
+	}
+
+	public static Object[] createFrame(Object[] args, int paramCount, int varCount, int frameSize) {
+		Object[] stack = new Object[frameSize];
+		int definedArgs = Math.min(paramCount, args.length);
+		System.arraycopy(args, 0, stack, 0, definedArgs);
+		for (int i = definedArgs; i < varCount; i++) {
+			stack[i] = Undefined.instance;
+		}
+		return stack;
+	}
+
+	public static Object value(Object[] stack, double[] sDbl, int i) {
+		Object x = stack[i];
+		return x == UniqueTag.DOUBLE_MARK ? ScriptRuntime.wrapNumber(sDbl[i]) : x;
+	}
+
+	public static double toNumber(Object[] stack, double[] sDbl, int i) {
+		Object x = stack[i];
+		return x == UniqueTag.DOUBLE_MARK ? sDbl[i] : ScriptRuntime.toNumber(x);
+	}
+
+	public static int toInt32(Object[] stack, double[] sDbl, int i) {
+		Object x = stack[i];
+		return x == UniqueTag.DOUBLE_MARK ? ScriptRuntime.toInt32(sDbl[i]) : ScriptRuntime.toInt32(x);
+	}
+
+	public static boolean toBoolean(Object[] stack, double[] sDbl, int i) {
+		Object x = Wrapper.unwrapped(stack[i]);
+
+		if (Boolean.TRUE.equals(x)) {
+			return true;
+		} else if (Boolean.FALSE.equals(x)) {
+			return false;
+		} else if (x == UniqueTag.DOUBLE_MARK) {
+			double d = sDbl[i];
+			return !Double.isNaN(d) && d != 0.0;
+		} else if (x == null || x == Undefined.instance) {
+			return false;
+		} else if (x instanceof Number) {
+			double d = ((Number) x).doubleValue();
+			return !Double.isNaN(d) && d != 0.0;
+		}
+
+		return ScriptRuntime.toBoolean(x);
+	}
+
+	public static void number(Object[] stack, double[] sDbl, int i, double value) {
+		stack[i] = UniqueTag.DOUBLE_MARK;
+		sDbl[i] = value;
+	}
+
+	public static void copy(Object[] stack, double[] sDbl, int from, int to) {
+		stack[to] = stack[from];
+		sDbl[to] = sDbl[from];
+	}
+
+	public static void swap(Object[] stack, double[] sDbl, int top) {
+		Object o = stack[top];
+		stack[top] = stack[top - 1];
+		stack[top - 1] = o;
+		double d = sDbl[top];
+		sDbl[top] = sDbl[top - 1];
+		sDbl[top - 1] = d;
+	}
+
+	public static void compare(Object[] stack, double[] sDbl, int top, int op) {
+		Object rhs = stack[top];
+		Object lhs = stack[top - 1];
+		boolean valBln;
+
+		if (rhs == UniqueTag.DOUBLE_MARK || lhs == UniqueTag.DOUBLE_MARK) {
+			double rDbl = toNumber(stack, sDbl, top);
+			double lDbl = toNumber(stack, sDbl, top - 1);
+			valBln = switch (op) {
+				case Token.GE -> lDbl >= rDbl;
+				case Token.LE -> lDbl <= rDbl;
+				case Token.GT -> lDbl > rDbl;
+				case Token.LT -> lDbl < rDbl;
+				default -> throw Kit.codeBug();
+			};
+		} else {
+			valBln = switch (op) {
+				case Token.GE -> ScriptRuntime.cmp_LE(rhs, lhs);
+				case Token.LE -> ScriptRuntime.cmp_LE(lhs, rhs);
+				case Token.GT -> ScriptRuntime.cmp_LT(rhs, lhs);
+				case Token.LT -> ScriptRuntime.cmp_LT(lhs, rhs);
+				default -> throw Kit.codeBug();
+			};
+		}
+
+		stack[top - 1] = ScriptRuntime.wrapBoolean(valBln);
+	}
+
+	public static void inOrInstanceof(Object[] stack, double[] sDbl, int top, int op, Context cx) {
+		Object rhs = value(stack, sDbl, top);
+		Object lhs = value(stack, sDbl, top - 1);
+		boolean valBln = op == Token.IN ? ScriptRuntime.in(lhs, rhs, cx) : ScriptRuntime.instanceOf(lhs, rhs, cx);
+		stack[top - 1] = ScriptRuntime.wrapBoolean(valBln);
+	}
+
+	public static void equals(Object[] stack, double[] sDbl, int top, boolean not) {
+		stack[top - 1] = ScriptRuntime.wrapBoolean(Interpreter.doEquals(stack, sDbl, top - 1) ^ not);
+	}
+
+	public static void shallowEquals(Object[] stack, double[] sDbl, int top, boolean not) {
+		stack[top - 1] = ScriptRuntime.wrapBoolean(Interpreter.doShallowEquals(stack, sDbl, top - 1) ^ not);
+	}
+
+	public static void not(Object[] stack, double[] sDbl, int top) {
+		stack[top] = ScriptRuntime.wrapBoolean(!toBoolean(stack, sDbl, top));
+	}
+
+	public static void bitNot(Object[] stack, double[] sDbl, int top) {
+		number(stack, sDbl, top, ~toInt32(stack, sDbl, top));
+	}
+
+	public static void bitOp(Object[] stack, double[] sDbl, int top, int op) {
+		int lIntValue = toInt32(stack, sDbl, top - 1);
+		int rIntValue = toInt32(stack, sDbl, top);
+		number(stack, sDbl, top - 1, switch (op) {
+			case Token.BITAND -> lIntValue & rIntValue;
+			case Token.BITOR -> lIntValue | rIntValue;
+			case Token.BITXOR -> lIntValue ^ rIntValue;
+			case Token.LSH -> lIntValue << rIntValue;
+			case Token.RSH -> lIntValue >> rIntValue;
+			default -> lIntValue;
+		});
+	}
+
+	public static void unsignedShiftRight(Object[] stack, double[] sDbl, int top) {
+		double lDbl = toNumber(stack, sDbl, top - 1);
+		int rIntValue = toInt32(stack, sDbl, top) & 0x1F;
+		number(stack, sDbl, top - 1, ScriptRuntime.toUint32(lDbl) >>> rIntValue);
+	}
+
+	public static void nullishCoalescing(Object[] stack, int top) {
+		Object a = stack[top - 1];
+		stack[top - 1] = a == null || Undefined.isUndefined(a) ? stack[top] : a;
+	}
+
+	public static void negate(Object[] stack, double[] sDbl, int top, boolean negative) {
+		double rDbl = toNumber(stack, sDbl, top);
+		number(stack, sDbl, top, negative ? -rDbl : rDbl);
+	}
+
+	public static void add(Object[] stack, double[] sDbl, int top, Context cx) {
+		Interpreter.doAdd(stack, sDbl, top - 1, cx);
+	}
+
+	public static void arithmetic(Object[] stack, double[] sDbl, int top, int op) {
+		double rDbl = toNumber(stack, sDbl, top);
+		double lDbl = toNumber(stack, sDbl, top - 1);
+		number(stack, sDbl, top - 1, switch (op) {
+			case Token.SUB -> lDbl - rDbl;
+			case Token.MUL -> lDbl * rDbl;
+			case Token.DIV -> lDbl / rDbl;
+			case Token.MOD -> lDbl % rDbl;
+			case Token.POW -> Math.pow(lDbl, rDbl);
+			default -> lDbl;
+		});
+	}
+
+	public static void typeof(Object[] stack, double[] sDbl, int top) {
+		stack[top] = ScriptRuntime.typeof(value(stack, sDbl, top));
+	}
+
+	public static void bindName(Object[] stack, int top, Context cx, Scriptable scope, String name) {
+		stack[top + 1] = ScriptRuntime.bind(cx, scope, name);
+	}
+
+	public static void setName(Object[] stack, double[] sDbl, int top, Context cx, Scriptable scope, String name, boolean strict) {
+		Object rhs = value(stack, sDbl, top);
+		Scriptable lhs = (Scriptable) stack[top - 1];
+		stack[top - 1] = strict ? ScriptRuntime.strictSetName(lhs, rhs, cx, scope, name) : ScriptRuntime.setName(lhs, rhs, cx, scope, name);
+	}
+
+	public static void name(Object[] stack, int top, Context cx, Scriptable scope, String name) {
+		stack[top + 1] = ScriptRuntime.name(cx, scope, name);
+	}
+
+	public static void typeofName(Object[] stack, int top, Scriptable scope, String name) {
+		stack[top + 1] = ScriptRuntime.typeofName(scope, name);
+	}
+
+	public static void nameIncrDecr(Object[] stack, int top, Context cx, Scriptable scope, String name, int incrDecrMask) {
+		stack[top + 1] = ScriptRuntime.nameIncrDecr(scope, name, cx, incrDecrMask);
+	}
+
+	public static void delete(Object[] stack, double[] sDbl, int top, Context cx, Scriptable scope, boolean isName) {
+		Object rhs = value(stack, sDbl, top);
+		Object lhs = value(stack, sDbl, top - 1);
+		stack[top - 1] = ScriptRuntime.delete(lhs, rhs, cx, scope, isName);
+	}
+
+	public static void getProp(Object[] stack, double[] sDbl, int top, Context cx, Scriptable scope, String name, NativeFunction fn, int pc) {
+		stack[top] = PropertyCache.getObjectProp(((InterpretedFunction) fn).idata, pc, value(stack, sDbl, top), name, cx, scope, true);
+	}
+
+	public static void getPropNoWarn(Object[] stack, double[] sDbl, int top, Context cx, Scriptable scope, String name, NativeFunction fn, int pc) {
+		stack[top] = PropertyCache.getObjectProp(((InterpretedFunction) fn).idata, pc, value(stack, sDbl, top), name, cx, scope, false);
+	}
+
+	public static void setProp(Object[] stack, double[] sDbl, int top, Context cx, Scriptable scope, String name, NativeFunction fn, int pc) {
+		Object rhs = value(stack, sDbl, top);
+		Object lhs = value(stack, sDbl, top - 1);
+		stack[top - 1] = PropertyCache.setObjectProp(((InterpretedFunction) fn).idata, pc, lhs, name, rhs, cx, scope);
+	}
+
+	public static void propIncrDecr(Object[] stack, double[] sDbl, int top, Context cx, Scriptable scope, String name, int incrDecrMask) {
+		stack[top] = ScriptRuntime.propIncrDecr(value(stack, sDbl, top), name, cx, scope, incrDecrMask);
+	}
+
+	public static void getElem(Object[] stack, double[] sDbl, int top, Context cx, Scriptable scope) {
+		Object lhs = value(stack, sDbl, top - 1);
+		Object id = stack[top];
+
+		if (id != UniqueTag.DOUBLE_MARK) {
+			stack[top - 1] = ScriptRuntime.getObjectElem(lhs, id, cx, scope);
+		} else {
+			stack[top - 1] = ScriptRuntime.getObjectIndex(lhs, sDbl[top], cx, scope);
+		}
+	}
+
+	public static void setElem(Object[] stack, double[] sDbl, int top, Context cx, Scriptable scope) {
+		Object rhs = value(stack, sDbl, top);
+		Object lhs = value(stack, sDbl, top - 2);
+		Object id = stack[top - 1];
+
+		if (id != UniqueTag.DOUBLE_MARK) {
+			stack[top - 2] = ScriptRuntime.setObjectElem(lhs, id, rhs, cx, scope);
+		} else {
+			stack[top - 2] = ScriptRuntime.setObjectIndex(lhs, sDbl[top - 1], rhs, cx, scope);
+		}
+	}
+
+	public static void elemIncrDecr(Object[] stack, double[] sDbl, int top, Context cx, Scriptable scope, int incrDecrMask) {
+		Object rhs = value(stack, sDbl, top);
+		Object lhs = value(stack, sDbl, top - 1);
+		stack[top - 1] = ScriptRuntime.elemIncrDecr(lhs, rhs, cx, scope, incrDecrMask);
+	}
+
+	public static void varIncrDecr(Object[] stack, double[] sDbl, int top, int index, int incrDecrMask) {
+		Object varValue = stack[index];
+		double d = varValue == UniqueTag.DOUBLE_MARK ? sDbl[index] : ScriptRuntime.toNumber(varValue);
+		double d2 = (incrDecrMask & Node.DECR_FLAG) == 0 ? d + 1.0 : d - 1.0;
+		number(stack, sDbl, index, d2);
+		number(stack, sDbl, top + 1, (incrDecrMask & Node.POST_FLAG) != 0 ? d : d2);
+	}
+
+	public static void nameAndThis(Object[] stack, int top, Context cx, Scriptable scope, String name) {
+		stack[top + 1] = ScriptRuntime.getNameFunctionAndThis(name, cx, scope);
+		stack[top + 2] = ScriptRuntime.lastStoredScriptable(cx);
+	}
+
+	public static void propAndThis(Object[] stack, double[] sDbl, int top, Context cx, Scriptable scope, String name) {
+		stack[top] = ScriptRuntime.getPropFunctionAndThis(value(stack, sDbl, top), name, cx, scope);
+		stack[top + 1] = ScriptRuntime.lastStoredScriptable(cx);
+	}
+
+	public static void elemAndThis(Object[] stack, double[] sDbl, int top, Context cx, Scriptable scope) {
+		Object obj = value(stack, sDbl, top - 1);
+		Object id = value(stack, sDbl, top);
+		stack[top - 1] = ScriptRuntime.getElemFunctionAndThis(obj, id, cx, scope);
+		stack[top] = ScriptRuntime.lastStoredScriptable(cx);
+	}
+
+	public static void valueAndThis(Object[] stack, double[] sDbl, int top, Context cx) {
+		stack[top] = ScriptRuntime.getValueFunctionAndThis(value(stack, sDbl, top), cx);
+		stack[top + 1] = ScriptRuntime.lastStoredScriptable(cx);
+	}
+
+	public static void call(Object[] stack, double[] sDbl, int top, int argCount, Context cx, Scriptable scope, NativeFunction fn, int pc) {
+		int base = top - argCount - 1;
+		Callable fun = (Callable) stack[base];
+		Scriptable funThisObj = (Scriptable) stack[base + 1];
+		Object[] args = Interpreter.getArgsArray(stack, sDbl, base + 2, argCount);
+		if (fun instanceof NativeJavaMethod method) {
+			stack[base] = method.call(cx, scope, funThisObj, args, ((InterpretedFunction) fn).idata, pc);
+		} else {
+			stack[base] = fun.call(cx, scope, funThisObj, args);
+		}
+	}
+
+	public static void construct(Object[] stack, double[] sDbl, int top, int argCount, Context cx, Scriptable scope) {
+		int base = top - argCount;
+		Object lhs = stack[base];
+
+		if (!(lhs instanceof Function fun)) {
+			throw ScriptRuntime.notFunctionError(value(stack, sDbl, base));
+		}
+
+		stack[base] = fun.construct(cx, scope, Interpreter.getArgsArray(stack, sDbl, base + 1, argCount));
+	}
+
+	public static void enumInit(Object[] stack, double[] sDbl, int top, int local, int op, Context cx, Scriptable scope) {
+		Object lhs = value(stack, sDbl, top);
+		int enumType = switch (op) {
+			case Token.ENUM_INIT_KEYS -> ScriptRuntime.ENUMERATE_KEYS;
+			case Token.ENUM_INIT_VALUES -> ScriptRuntime.ENUMERATE_VALUES;
+			case Token.ENUM_INIT_VALUES_IN_ORDER -> ScriptRuntime.ENUMERATE_VALUES_IN_ORDER;
+			default -> ScriptRuntime.ENUMERATE_ARRAY;
+		};
+		stack[local] = ScriptRuntime.enumInit(lhs, cx, scope, enumType);
+	}
+
+	public static void enumNext(Object[] stack, int top, int local, boolean id, Context cx) {
+		IdEnumeration val = (IdEnumeration) stack[local];
+		stack[top + 1] = id ? val.getId(cx) : val.next(cx);
+	}
+
+	public static void regExp(Object[] stack, int top, Object[] regExpLiterals, int index, Context cx, Scriptable scope) {
+		stack[top + 1] = ScriptRuntime.wrapRegExp(cx, scope, regExpLiterals[index]);
+	}
+
+	public static void literalNew(Object[] stack, double[] sDbl, int top, int count) {
+		stack[top + 1] = new int[count];
+		stack[top + 2] = new Object[count];
+		sDbl[top + 2] = 0;
+	}
+
+	public static void literalSet(Object[] stack, double[] sDbl, int top, int getterSetter) {
+		Object value = getterSetter == 0 ? value(stack, sDbl, top) : stack[top];
+		int i = (int) sDbl[top - 1];
+		((Object[]) stack[top - 1])[i] = value;
+
+		if (getterSetter != 0) {
+			((int[]) stack[top - 2])[i] = getterSetter;
+		}
+
+		sDbl[top - 1] = i + 1;
+	}
+
+	public static void arrayLiteral(Object[] stack, int top, Object[] literalIds, int index, Context cx, Scriptable scope) {
+		Object[] data = (Object[]) stack[top];
+		int[] skipIndices = index < 0 ? null : (int[]) literalIds[index];
+		stack[top - 1] = ScriptRuntime.newArrayLiteral(data, skipIndices, cx, scope);
+	}
+
+	public static void objectLiteral(Object[] stack, int top, Object[] literalIds, int index, Context cx, Scriptable scope) {
+		Object[] data = (Object[]) stack[top];
+		int[] getterSetters = (int[]) stack[top - 1];
+		stack[top - 1] = ScriptRuntime.newObjectLiteral((Object[]) literalIds[index], data, getterSetters, cx, scope);
+	}
+
+	public static JavaScriptException throwValue(Object[] stack, double[] sDbl, int top, String sourceFile, int line) {
+		return new JavaScriptException(value(stack, sDbl, top), sourceFile, line);
+	}
+}
@@ -0,0 +1,220 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package dev.latvian.mods.rhino;
+
+/**
+ * Inline cache of a single property get or set instruction.
+ * <p>
+ * Each entry remembers the class and {@link Shape} of an object the
+ * instruction has seen and the index of the property's value, either on the
+ * object itself or on its direct prototype. As long as the next object has
+ * the same class and shape, the value is read from the array without hashing
+ * or walking the prototype chain. Shaped objects only have writable data
+ * properties, so a hit never needs to check attributes or accessors. A site
+ * starts out monomorphic and chains up to {@link #MAX_ENTRIES} entries before
+ * it gives up and always takes the slow path.
+ * <p>
+ * Entries are immutable and the per-function array in {@link InterpreterData}
+ * is only ever written with complete entries, so sites can be shared between
+ * threads without locking. Losing a racing update only costs another miss.
+ */
+final class PropertyCache {
+	private static final int MAX_ENTRIES = 4;
+
+	private static final Object MISS = new Object();
+
+	/**
+	 * Site that has seen too many different shapes.
+	 */
+	private static final PropertyCache MEGAMORPHIC = new PropertyCache(null, null, 0, null, null, null, MAX_ENTRIES);
+
+	/**
+	 * Classes that look properties up in their slots only, so that the shape
+	 * describes every own property they have.
+	 */
+	private static final ClassValue<Boolean> CACHEABLE = new ClassValue<>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return isInherited(type, "get", String.class, Scriptable.class) && isInherited(type, "put", String.class, Scriptable.class, Object.class) && isInherited(type, "has", String.class, Scriptable.class) && isInherited(type, "getPrototype") && isInherited(type, "findInstanceIdInfo", String.class);
+		}
+	};
+
+	private static boolean isInherited(Class<?> type, String name, Class<?>... parameterTypes) {
+		for (Class<?> c = type; c != ScriptableObject.class && c != IdScriptableObject.class; c = c.getSuperclass()) {
+			try {
+				c.getDeclaredMethod(name, parameterTypes);
+				return false;
+			} catch (NoSuchMethodException ex) {
+				// Not overridden here, check superclass
+			}
+		}
+
+		return true;
+	}
+
+	private final Class<?> type;
+	private final Shape shape;
+	private final int index;
+	// prototype that has the property, null for own properties
+	private final ScriptableObject holder;
+	private final Shape holderShape;
+	private final PropertyCache next;
+	private final int entries;
+
+	private PropertyCache(Class<?> type, Shape shape, int index, ScriptableObject holder, Shape holderShape, PropertyCache next, int entries) {
+		this.type = type;
+		this.shape = shape;
+		this.index = index;
+		this.holder = holder;
+		this.holderShape = holderShape;
+		this.next = next;
+		this.entries = entries;
+	}
+
+	/**
+	 * @return cached value or MISS if the entry doesn't apply to the object
+	 */
+	private Object get(ScriptableObject obj) {
+		if (obj.getClass() != type || obj.getShape() != shape) {
+			return MISS;
+		} else if (holder == null) {
+			return obj.getShapeValue(index);
+		} else if (obj.getPrototype() == holder && holder.getShape() == holderShape) {
+			return holder.getShapeValue(index);
+		}
+
+		return MISS;
+	}
+
+	/**
+	 * @return true if the entry applied to the object and the value was stored
+	 */
+	private boolean set(ScriptableObject obj, Object value) {
+		if (obj.getClass() != type || obj.getShape() != shape) {
+			return false;
+		}
+
+		obj.setShapeValue(index, value);
+		return true;
+	}
+
+	private static PropertyCache[] getSites(InterpreterData idata) {
+		PropertyCache[] sites = idata.propertyCaches;
+
+		if (sites == null) {
+			sites = new PropertyCache[idata.itsICode.length];
+			idata.propertyCaches = sites;
+		}
+
+		return sites;
+	}
+
+	/**
+	 * Find the property in the shapes of the object and its prototype and add an entry for it to the site.
+	 *
+	 * @return new entry or null if the property can't be cached
+	 */
+	private static PropertyCache update(InterpreterData idata, int pc, ScriptableObject obj, String name, boolean ownOnly) {
+		PropertyCache[] sites = getSites(idata);
+		PropertyCache first = sites[pc];
+
+		if (first == MEGAMORPHIC || !CACHEABLE.get(obj.getClass())) {
+			return null;
+		}
+
+		Shape shape = obj.getShape();
+
+		if (shape == null) {
+			return null;
+		}
+
+		int index = shape.indexOf(name);
+		ScriptableObject holder = null;
+		Shape holderShape = null;
+
+		if (index == -1) {
+			if (ownOnly || !(obj.getPrototype() instanceof ScriptableObject proto) || !CACHEABLE.get(proto.getClass())) {
+				return null;
+			}
+
+			holderShape = proto.getShape();
+
+			if (holderShape == null || (index = holderShape.indexOf(name)) == -1) {
+				return null;
+			}
+
+			holder = proto;
+		}
+
+		if (first != null && first.entries >= MAX_ENTRIES) {
+			sites[pc] = MEGAMORPHIC;
+			return null;
+		}
+
+		PropertyCache cache = new PropertyCache(obj.getClass(), shape, index, holder, holderShape, first, first == null ? 1 : first.entries + 1);
+		sites[pc] = cache;
+		return cache;
+	}
+
+	/**
+	 * Cached version of {@link ScriptRuntime#getObjectProp(Object, String, Context, Scriptable)}
+	 * and {@link ScriptRuntime#getObjectPropNoWarn(Object, String, Context, Scriptable)}.
+	 *
+	 * @param pc offset of the instruction in the icode of the function
+	 */
+	static Object getObjectProp(InterpreterData idata, int pc, Object obj, String name, Context cx, Scriptable scope, boolean warn) {
+		if (obj instanceof ScriptableObject so) {
+			PropertyCache[] sites = idata.propertyCaches;
+
+			if (sites != null) {
+				for (PropertyCache cache = sites[pc]; cache != null; cache = cache.next) {
+					Object value = cache.get(so);
+
+					if (value != MISS) {
+						return value;
+					}
+				}
+			}
+
+			PropertyCache cache = update(idata, pc, so, name, false);
+
+			if (cache != null) {
+				return cache.get(so);
+			}
+		}
+
+		return warn ? ScriptRuntime.getObjectProp(obj, name, cx, scope) : ScriptRuntime.getObjectPropNoWarn(obj, name, cx, scope);
+	}
+
+	/**
+	 * Cached version of {@link ScriptRuntime#setObjectProp(Object, String, Object, Context, Scriptable)}.
+	 * Only assignments to existing own properties are cached.
+	 *
+	 * @param pc offset of the instruction in the icode of the function
+	 */
+	static Object setObjectProp(InterpreterData idata, int pc, Object obj, String name, Object value, Context cx, Scriptable scope) {
+		if (obj instanceof ScriptableObject so && !so.isSealed()) {
+			PropertyCache[] sites = idata.propertyCaches;
+
+			if (sites != null) {
+				for (PropertyCache cache = sites[pc]; cache != null; cache = cache.next) {
+					if (cache.set(so, value)) {
+						return value;
+					}
+				}
+			}
+
+			PropertyCache cache = update(idata, pc, so, name, true);
+
+			if (cache != null && cache.set(so, value)) {
+				return value;
+			}
+		}
+
+		return ScriptRuntime.setObjectProp(obj, name, value, cx, scope);
+	}
+}
@@ -3,11 +3,31 @@ package dev.latvian.mods.rhino;
 import java.util.Arrays;
 
 public class ResolvedOverload {
+	/**
+	 * Hash of the classes of the arguments, computed without allocating.
+	 */
+	static int hash(Object[] args) {
+		int hash = args.length;
+		for (Object arg : args) {
+			if (arg instanceof Wrapper) {
+				arg = ((Wrapper) arg).unwrap();
+			}
+			hash = 31 * hash + (arg == null ? 0 : arg.getClass().hashCode());
+		}
+		return hash ^ (hash >>> 16);
+	}
+
 	final Class<?>[] types;
 	final int index;
+	final int hash;
 
 	ResolvedOverload(Object[] args, int index) {
+		this(args, index, hash(args));
+	}
+
+	ResolvedOverload(Object[] args, int index, int hash) {
 		this.index = index;
+		this.hash = hash;
 		types = new Class<?>[args.length];
 		for (int i = 0, l = args.length; i < l; i++) {
 			Object arg = args[i];
@@ -48,6 +68,6 @@ public class ResolvedOverload {
 
 	@Override
 	public int hashCode() {
-		return Arrays.hashCode(types);
+		return hash;
 	}
 }
@@ -0,0 +1,155 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package dev.latvian.mods.rhino;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Compiles many scripts in parallel.
+ * <p>
+ * Parsing and code generation don't need a scope, so every source is compiled
+ * on its own {@link ForkJoinPool} task with its own {@link CompilerEnvirons}
+ * and {@link ErrorReporter}. Results are returned in the order the sources
+ * were given, regardless of which one finished first.
+ *
+ * @see Context#compileScripts(Collection, ForkJoinPool)
+ */
+public final class ScriptBatch {
+	private ScriptBatch() {
+	}
+
+	/**
+	 * A single script to compile.
+	 *
+	 * @param sourceName a string describing the source, such as a filename
+	 * @param source     the source string
+	 * @param lineno     the starting line number for reporting errors
+	 */
+	public record Source(String sourceName, String source, int lineno) {
+		public Source(String sourceName, String source) {
+			this(sourceName, source, 1);
+		}
+	}
+
+	/**
+	 * Outcome of compiling one {@link Source}.
+	 */
+	public static final class Result {
+		private final Source source;
+		private final Script script;
+		private final List<EvaluatorException> errors;
+		private final List<EvaluatorException> warnings;
+
+		private Result(Source source, Script script, List<EvaluatorException> errors, List<EvaluatorException> warnings) {
+			this.source = source;
+			this.script = script;
+			this.errors = errors;
+			this.warnings = warnings;
+		}
+
+		public Source getSource() {
+			return source;
+		}
+
+		/**
+		 * @return compiled script, or null if there were errors
+		 */
+		public Script getScript() {
+			return script;
+		}
+
+		public List<EvaluatorException> getErrors() {
+			return errors;
+		}
+
+		public List<EvaluatorException> getWarnings() {
+			return warnings;
+		}
+
+		public boolean isSuccess() {
+			return script != null;
+		}
+	}
+
+	/**
+	 * Collects errors and warnings of one source instead of throwing on the
+	 * first error, so that every file reports everything the parser found.
+	 */
+	private static class CollectingErrorReporter implements ErrorReporter {
+		private final List<EvaluatorException> errors = new ArrayList<>();
+		private final List<EvaluatorException> warnings = new ArrayList<>();
+
+		@Override
+		public void warning(String message, String sourceName, int line, String lineSource, int lineOffset) {
+			warnings.add(new EvaluatorException(message, sourceName, line, lineSource, lineOffset));
+		}
+
+		@Override
+		public void error(String message, String sourceName, int line, String lineSource, int lineOffset) {
+			errors.add(new EvaluatorException(message, sourceName, line, lineSource, lineOffset));
+		}
+
+		@Override
+		public EvaluatorException runtimeError(String message, String sourceName, int line, String lineSource, int lineOffset) {
+			return new EvaluatorException(message, sourceName, line, lineSource, lineOffset);
+		}
+	}
+
+	static List<Result> compile(Context cx, Collection<Source> sources, ForkJoinPool pool) {
+		// Settings are read here, workers never use the caller's context
+		ContextFactory factory = cx.getFactory();
+		CompiledScriptCache cache = cx.getCompiledScriptCache();
+		boolean strict = cx.isStrictMode();
+		List<ForkJoinTask<Result>> tasks = new ArrayList<>(sources.size());
+
+		for (Source source : sources) {
+			CollectingErrorReporter reporter = new CollectingErrorReporter();
+			CompilerEnvirons compilerEnv = new CompilerEnvirons();
+			compilerEnv.initFromContext(cx);
+			compilerEnv.setErrorReporter(reporter);
+			tasks.add(pool.submit(() -> compile(factory, compilerEnv, cache, strict, reporter, source)));
+		}
+
+		List<Result> results = new ArrayList<>(tasks.size());
+
+		for (ForkJoinTask<Result> task : tasks) {
+			results.add(task.join());
+		}
+
+		return results;
+	}
+
+	private static Result compile(ContextFactory factory, CompilerEnvirons compilerEnv, CompiledScriptCache cache, boolean strict, CollectingErrorReporter reporter, Source source) {
+		Script script = null;
+
+		// Parser and code generator look up the current Context for
+		// regular expressions and warnings, so the worker thread needs one
+		Context cx = factory.enterContext();
+
+		try {
+			script = cx.compileString(source.source, compilerEnv, cache, strict, source.sourceName, Math.max(source.lineno, 0));
+		} catch (EvaluatorException ex) {
+			// Syntax errors were already collected, the exception only sums them up
+			if (reporter.errors.isEmpty()) {
+				reporter.errors.add(ex);
+			}
+		} finally {
+			Context.exit();
+		}
+
+		if (!reporter.errors.isEmpty()) {
+			script = null;
+		}
+
+		return new Result(source, script, Collections.unmodifiableList(reporter.errors), Collections.unmodifiableList(reporter.warnings));
+	}
+}
@@ -0,0 +1,361 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package dev.latvian.mods.rhino;
+
+import java.io.Serial;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shares script execution time fairly between sources, a tick at a time.
+ * <p>
+ * Work is submitted under a source name and run by {@link #runTick(Context)}
+ * round-robin between the sources, as long as each one stays within its
+ * budget of instructions and nanoseconds per tick. Work of a source that has
+ * used up its budget is deferred to the next tick, and a source that went over
+ * its budget carries the overrun into the next tick, so that it gets less time
+ * there. Work that runs past the task limit is cancelled at the next safe
+ * point by throwing {@link BudgetExceededError}, which scripts can't catch.
+ * <p>
+ * While a scheduler is installed on a Context, the interpreter also records
+ * the instructions executed, whether or not they were run as scheduled work.
+ * Instructions of scheduled work are charged to the source name it was
+ * submitted under, other instructions to the source name of the script.
+ * Instructions are counted in batches of {@link #getCheckInterval()} and
+ * charged to the work or script that is running when a batch completes.
+ * Only interpreted code is counted, so code of a Context with a scheduler is
+ * not compiled to classes.
+ *
+ * @see Context#setScriptScheduler(ScriptScheduler)
+ */
+public class ScriptScheduler {
+	public static final int DEFAULT_CHECK_INTERVAL = 10000;
+
+	/**
+	 * Thrown at a safe point to cancel work that has gone over its task limit.
+	 */
+	public static final class BudgetExceededError extends Error {
+		@Serial
+		private static final long serialVersionUID = 1637465826185739312L;
+
+		private final String sourceName;
+
+		BudgetExceededError(String sourceName) {
+			super("Script " + sourceName + " exceeded its execution budget");
+			this.sourceName = sourceName;
+		}
+
+		public String getSourceName() {
+			return sourceName;
+		}
+	}
+
+	/**
+	 * Cumulative usage of one source.
+	 */
+	public static final class Usage {
+		private final String sourceName;
+		private long instructions;
+		private long nanos;
+		private long tasks;
+		private long cancelled;
+		private long deferred;
+
+		private Usage(String sourceName) {
+			this.sourceName = sourceName;
+		}
+
+		private Usage(Usage usage) {
+			sourceName = usage.sourceName;
+			instructions = usage.instructions;
+			nanos = usage.nanos;
+			tasks = usage.tasks;
+			cancelled = usage.cancelled;
+			deferred = usage.deferred;
+		}
+
+		public String getSourceName() {
+			return sourceName;
+		}
+
+		public long getInstructions() {
+			return instructions;
+		}
+
+		/**
+		 * @return time spent in scheduled work of this source
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		public long getTasks() {
+			return tasks;
+		}
+
+		public long getCancelled() {
+			return cancelled;
+		}
+
+		/**
+		 * @return how many times work of this source was left for a later tick
+		 */
+		public long getDeferred() {
+			return deferred;
+		}
+
+		@Override
+		public String toString() {
+			return sourceName + ": " + instructions + " instructions, " + (nanos / 1000L) + " us, " + tasks + " tasks, " + cancelled + " cancelled, " + deferred + " deferred";
+		}
+	}
+
+	private static final class Source {
+		private final String name;
+		private final ArrayDeque<ContextAction<?>> queue = new ArrayDeque<>();
+		private long tickInstructions;
+		private long tickNanos;
+
+		private Source(String name) {
+			this.name = name;
+		}
+	}
+
+	private final long instructionBudget;
+	private final long nanoBudget;
+	private long taskInstructionLimit;
+	private long taskNanoLimit;
+	private int checkInterval = DEFAULT_CHECK_INTERVAL;
+
+	private final Map<String, Source> sources = new LinkedHashMap<>();
+	private final Map<String, Usage> usage = new HashMap<>();
+
+	// Work that is running right now
+	private Source current;
+	private long currentInstructions;
+	private long currentStart;
+
+	/**
+	 * @param instructionBudget instructions each source can use per tick, 0 for no limit
+	 * @param nanoBudget        nanoseconds each source can use per tick, 0 for no limit
+	 */
+	public ScriptScheduler(long instructionBudget, long nanoBudget) {
+		if (instructionBudget < 0L || nanoBudget < 0L) {
+			throw new IllegalArgumentException();
+		}
+
+		this.instructionBudget = instructionBudget;
+		this.nanoBudget = nanoBudget;
+	}
+
+	public long getInstructionBudget() {
+		return instructionBudget;
+	}
+
+	public long getNanoBudget() {
+		return nanoBudget;
+	}
+
+	/**
+	 * Set after how many instructions or nanoseconds a single piece of work is
+	 * cancelled. 0 disables the limit, which is the default.
+	 */
+	public void setTaskLimit(long instructions, long nanos) {
+		if (instructions < 0L || nanos < 0L) {
+			throw new IllegalArgumentException();
+		}
+
+		taskInstructionLimit = instructions;
+		taskNanoLimit = nanos;
+	}
+
+	public int getCheckInterval() {
+		return checkInterval;
+	}
+
+	/**
+	 * Set how many instructions are executed between budget checks. Smaller
+	 * values make budgets and accounting more precise but cost more.
+	 */
+	public void setCheckInterval(int interval) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException();
+		}
+
+		checkInterval = interval;
+	}
+
+	/**
+	 * Queue work to be run by {@link #runTick(Context)} under the source name.
+	 */
+	public void submit(String sourceName, ContextAction<?> task) {
+		sources.computeIfAbsent(sourceName, Source::new).queue.add(task);
+	}
+
+	/**
+	 * @return number of queued pieces of work
+	 */
+	public int getPending() {
+		int pending = 0;
+
+		for (Source source : sources.values()) {
+			pending += source.queue.size();
+		}
+
+		return pending;
+	}
+
+	/**
+	 * Run queued work, one piece per source at a time, until every source has
+	 * either run out of work or used up its budget for this tick.
+	 *
+	 * @return number of pieces of work that were run
+	 */
+	public int runTick(Context cx) {
+		for (Source source : new ArrayList<>(sources.values())) {
+			source.tickInstructions = instructionBudget == 0L ? 0L : Math.max(0L, source.tickInstructions - instructionBudget);
+			source.tickNanos = nanoBudget == 0L ? 0L : Math.max(0L, source.tickNanos - nanoBudget);
+		}
+
+		ScriptScheduler previousScheduler = cx.scriptScheduler;
+		int previousThreshold = cx.instructionThreshold;
+		cx.scriptScheduler = this;
+		cx.instructionThreshold = checkInterval;
+		int run = 0;
+
+		try {
+			boolean progress = true;
+
+			while (progress) {
+				progress = false;
+
+				// Work can submit more work, new sources join in the next pass
+				for (Source source : new ArrayList<>(sources.values())) {
+					if (!source.queue.isEmpty() && !isOverBudget(source)) {
+						runTask(cx, source, source.queue.poll());
+						run++;
+						progress = true;
+					}
+				}
+			}
+		} finally {
+			cx.scriptScheduler = previousScheduler;
+			cx.instructionThreshold = previousThreshold;
+		}
+
+		synchronized (usage) {
+			for (Source source : new ArrayList<>(sources.values())) {
+				if (!source.queue.isEmpty()) {
+					getOrCreateUsage(source.name).deferred++;
+				}
+			}
+		}
+
+		sources.values().removeIf(source -> source.queue.isEmpty() && source.tickInstructions == 0L && source.tickNanos == 0L);
+		return run;
+	}
+
+	private boolean isOverBudget(Source source) {
+		return instructionBudget != 0L && source.tickInstructions >= instructionBudget || nanoBudget != 0L && source.tickNanos >= nanoBudget;
+	}
+
+	private void runTask(Context cx, Source source, ContextAction<?> task) {
+		Source previous = current;
+		long previousInstructions = currentInstructions;
+		long previousStart = currentStart;
+		// Instructions of the script that submitted this work are counted after it
+		int previousCount = cx.instructionCount;
+		current = source;
+		currentInstructions = 0L;
+		currentStart = System.nanoTime();
+		cx.instructionCount = 0;
+		boolean cancelled = false;
+
+		try {
+			task.run(cx);
+		} catch (BudgetExceededError ex) {
+			cancelled = true;
+		} finally {
+			// Instructions since the last check belong to this piece of work
+			int uncounted = cx.instructionCount;
+			long nanos = System.nanoTime() - currentStart;
+			cx.instructionCount = previousCount;
+			source.tickInstructions += currentInstructions + uncounted;
+			source.tickNanos += nanos;
+
+			synchronized (usage) {
+				Usage u = getOrCreateUsage(source.name);
+				u.instructions += uncounted;
+				u.nanos += nanos;
+				u.tasks++;
+
+				if (cancelled) {
+					u.cancelled++;
+				}
+			}
+
+			current = previous;
+			currentInstructions = previousInstructions;
+			currentStart = previousStart;
+		}
+	}
+
+	/**
+	 * Called by the interpreter every {@link #getCheckInterval()} instructions.
+	 */
+	void observe(String sourceName, int instructionCount) {
+		synchronized (usage) {
+			getOrCreateUsage(current == null ? sourceName : current.name).instructions += instructionCount;
+		}
+
+		if (current != null) {
+			currentInstructions += instructionCount;
+
+			if (taskInstructionLimit != 0L && currentInstructions > taskInstructionLimit || taskNanoLimit != 0L && System.nanoTime() - currentStart > taskNanoLimit) {
+				throw new BudgetExceededError(current.name);
+			}
+		}
+	}
+
+	private Usage getOrCreateUsage(String sourceName) {
+		return usage.computeIfAbsent(sourceName, Usage::new);
+	}
+
+	/**
+	 * @return copy of the usage of the source, or null if nothing of it has run yet
+	 */
+	public Usage getUsage(String sourceName) {
+		synchronized (usage) {
+			Usage u = usage.get(sourceName);
+			return u == null ? null : new Usage(u);
+		}
+	}
+
+	/**
+	 * @return copy of the usage of every source
+	 */
+	public Map<String, Usage> getUsage() {
+		synchronized (usage) {
+			Map<String, Usage> map = new LinkedHashMap<>(usage.size());
+
+			for (Usage u : usage.values()) {
+				map.put(u.sourceName, new Usage(u));
+			}
+
+			return map;
+		}
+	}
+
+	public void resetUsage() {
+		synchronized (usage) {
+			usage.clear();
+		}
+	}
+}
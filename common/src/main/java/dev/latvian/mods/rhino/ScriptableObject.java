@@ -364,6 +364,13 @@ public abstract class ScriptableObject implements Scriptable, SymbolScriptable,
 		slotMap = createSlotMap(0);
 	}
 
+	/**
+	 * Hint that this many properties are about to be added to the object.
+	 */
+	void ensurePropertyCapacity(int count) {
+		slotMap.ensureValuesCapacity(count);
+	}
+
 	/**
 	 * Gets the value that will be returned by calling the typeof operator on this object.
 	 *
@@ -393,7 +400,7 @@ public abstract class ScriptableObject implements Scriptable, SymbolScriptable,
 	 */
 	@Override
 	public boolean has(String name, Scriptable start) {
-		return null != slotMap.query(name, 0);
+		return slotMap.has(name, 0);
 	}
 
 	/**
@@ -416,7 +423,7 @@ public abstract class ScriptableObject implements Scriptable, SymbolScriptable,
 	 */
 	@Override
 	public boolean has(Symbol key, Scriptable start) {
-		return null != slotMap.query(key, 0);
+		return slotMap.has(key, 0);
 	}
 
 	/**
@@ -431,11 +438,7 @@ public abstract class ScriptableObject implements Scriptable, SymbolScriptable,
 	 */
 	@Override
 	public Object get(String name, Scriptable start) {
-		Slot slot = slotMap.query(name, 0);
-		if (slot == null) {
-			return NOT_FOUND;
-		}
-		return slot.getValue(start);
+		return slotMap.getValue(name, 0, start);
 	}
 
 	/**
@@ -466,11 +469,7 @@ public abstract class ScriptableObject implements Scriptable, SymbolScriptable,
 	 */
 	@Override
 	public Object get(Symbol key, Scriptable start) {
-		Slot slot = slotMap.query(key, 0);
-		if (slot == null) {
-			return NOT_FOUND;
-		}
-		return slot.getValue(start);
+		return slotMap.getValue(key, 0, start);
 	}
 
 	/**
@@ -876,6 +875,34 @@ public abstract class ScriptableObject implements Scriptable, SymbolScriptable,
 		return externalData == null ? 0 : externalData.getArrayLength();
 	}
 
+	/**
+	 * Returns the hidden class of the object, or null if lookups on it
+	 * can't be cached.
+	 */
+	final Shape getShape() {
+		return slotMap.getShape();
+	}
+
+	/**
+	 * Returns the value at the given index of {@link #getShape()}.
+	 */
+	final Object getShapeValue(int index) {
+		return slotMap.getShapeValue(index);
+	}
+
+	final void setShapeValue(int index, Object value) {
+		slotMap.setShapeValue(index, value);
+	}
+
+	/**
+	 * Moves the properties of this object into slots and stops tracking its
+	 * shape. Subclasses must call this if they start answering property
+	 * lookups from somewhere else than slots.
+	 */
+	final void clearShape() {
+		slotMap.clearShape();
+	}
+
 	/**
 	 * Returns the prototype of the object.
 	 */
@@ -1800,6 +1827,9 @@ public abstract class ScriptableObject implements Scriptable, SymbolScriptable,
 		} else {
 			if (slot instanceof GetterSlot && isDataDescriptor(desc)) {
 				slot = getSlot(cx, id, SlotAccess.CONVERT_ACCESSOR_TO_DATA);
+			} else if (!isNew && slotMap.getShape() != null) {
+				// Queried slot is only a copy of the shaped property
+				slot = getSlot(cx, id, SlotAccess.MODIFY);
 			}
 
 			Object value = getProperty(desc, "value");
@@ -2649,6 +2679,40 @@ public abstract class ScriptableObject implements Scriptable, SymbolScriptable,
 	private boolean putImpl(Object key, int index, Scriptable start, Object value) {
 		// This method is very hot (basically called on each assignment)
 		// so we inline the extensible/sealed checks below.
+		Shape shape = slotMap.getShape();
+		if (key != null && shape != null) {
+			// Same checks as below for properties that are known to be
+			// writable data properties
+			int i = shape.indexOf(key);
+
+			if (this != start) {
+				if (!isExtensible && i == -1 && Context.getContext().isStrictMode()) {
+					throw ScriptRuntime.typeError0("msg.not.extensible");
+				}
+				return false;
+			} else if (!isExtensible) {
+				if (i == -1) {
+					if (Context.getContext().isStrictMode()) {
+						throw ScriptRuntime.typeError0("msg.not.extensible");
+					}
+				} else {
+					slotMap.setShapeValue(i, value);
+				}
+				return true;
+			}
+
+			if (isSealed) {
+				checkNotSealed(key, index);
+			}
+
+			if (i != -1) {
+				slotMap.setShapeValue(i, value);
+				return true;
+			} else if (slotMap.addValue(key, value)) {
+				return true;
+			}
+		}
+
 		Slot slot;
 		if (this != start) {
 			slot = slotMap.query(key, index);
@@ -2705,6 +2769,10 @@ public abstract class ScriptableObject implements Scriptable, SymbolScriptable,
 			if (slot == null) {
 				return true;
 			}
+			if (slotMap.getShape() != null) {
+				// Queried slot is only a copy of the shaped property
+				slot = slotMap.get(name, index, SlotAccess.MODIFY);
+			}
 		} else {
 			checkNotSealed(name, index);
 			// either const hoisted declaration or initialization
@@ -2759,23 +2827,36 @@ public abstract class ScriptableObject implements Scriptable, SymbolScriptable,
 		}
 
 		int c = externalLen;
-		final long stamp = slotMap.readLock();
-		try {
-			for (Slot slot : slotMap) {
-				if ((getNonEnumerable || (slot.getAttributes() & DONTENUM) == 0) && (getSymbols || !(slot.name instanceof Symbol))) {
-					if (c == externalLen) {
-						// Special handling to combine external array with additional properties
-						Object[] oldA = a;
-						a = new Object[slotMap.dirtySize() + externalLen];
-						if (oldA != null) {
-							System.arraycopy(oldA, 0, a, 0, externalLen);
+		Shape shape = slotMap.getShape();
+		if (shape != null) {
+			// Shaped properties are enumerable and named, no need to create slots for them
+			Object[] oldA = a;
+			a = new Object[shape.size() + externalLen];
+			System.arraycopy(oldA, 0, a, 0, externalLen);
+			for (Object key : shape.getKeys()) {
+				if (getSymbols || !(key instanceof Symbol)) {
+					a[c++] = key;
+				}
+			}
+		} else {
+			final long stamp = slotMap.readLock();
+			try {
+				for (Slot slot : slotMap) {
+					if ((getNonEnumerable || (slot.getAttributes() & DONTENUM) == 0) && (getSymbols || !(slot.name instanceof Symbol))) {
+						if (c == externalLen) {
+							// Special handling to combine external array with additional properties
+							Object[] oldA = a;
+							a = new Object[slotMap.dirtySize() + externalLen];
+							if (oldA != null) {
+								System.arraycopy(oldA, 0, a, 0, externalLen);
+							}
 						}
+						a[c++] = slot.name != null ? slot.name : Integer.valueOf(slot.indexOrHash);
 					}
-					a[c++] = slot.name != null ? slot.name : Integer.valueOf(slot.indexOrHash);
 				}
+			} finally {
+				slotMap.unlockRead(stamp);
 			}
-		} finally {
-			slotMap.unlockRead(stamp);
 		}
 
 		Object[] result;
@@ -0,0 +1,195 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package dev.latvian.mods.rhino;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hidden class of a {@link ScriptableObject}.
+ * <p>
+ * A shape is an immutable node in a tree of property keys. Objects that get
+ * the same properties added in the same order end up with the same shape and
+ * keep their values in a plain array at the indices the shape assigns, see
+ * {@link SlotMapContainer}. A single identity comparison therefore tells
+ * whether a property is still stored at the index that was seen last time.
+ * Shapes are shared between all objects and threads, only the transition
+ * table and the lookup table of a node are ever modified. A node only holds
+ * its children weakly, so shapes that no object uses anymore are collected.
+ *
+ * @see PropertyCache
+ */
+final class Shape {
+	/**
+	 * Shape of an object without properties.
+	 */
+	static final Shape EMPTY = new Shape(null, null, 0);
+
+	/**
+	 * Objects with more properties than this are more likely used as hash
+	 * maps than as records, so they don't get a shape.
+	 */
+	static final int MAX_PROPERTIES = 128;
+
+	/**
+	 * Keeps objects with computed keys from growing a node without limit.
+	 * The root has no limit, as every new object starts there.
+	 */
+	private static final int MAX_TRANSITIONS = 64;
+
+	/**
+	 * Larger shapes build a hash table instead of searching their ancestors.
+	 */
+	private static final int LINEAR_SEARCH_SIZE = 8;
+
+	/**
+	 * Transitions whose shape has been collected, to be removed from their parent.
+	 */
+	private static final ReferenceQueue<Shape> EXPIRED = new ReferenceQueue<>();
+
+	private final Shape parent;
+	private final Object key;
+	private final int size;
+	private volatile ConcurrentHashMap<Object, Transition> transitions;
+	private volatile Map<Object, Integer> indexTable;
+
+	private Shape(Shape parent, Object key, int size) {
+		this.parent = parent;
+		this.key = key;
+		this.size = size;
+	}
+
+	/**
+	 * @return number of properties, which is also the index of the next added property
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return shape without the last added key or null if this is {@link #EMPTY}
+	 */
+	Shape getParent() {
+		return parent;
+	}
+
+	/**
+	 * @return shape with the key added after all existing ones or null if
+	 * the object should stop tracking its shape
+	 */
+	Shape addProperty(Object key) {
+		if (size >= MAX_PROPERTIES) {
+			return null;
+		}
+
+		removeExpired();
+		ConcurrentHashMap<Object, Transition> map = transitions;
+
+		if (map == null) {
+			synchronized (this) {
+				map = transitions;
+
+				if (map == null) {
+					transitions = map = new ConcurrentHashMap<>(4);
+				}
+			}
+		}
+
+		Transition transition = map.get(key);
+		Shape shape = transition == null ? null : transition.get();
+
+		if (shape != null) {
+			return shape;
+		} else if (transition == null && parent != null && map.size() >= MAX_TRANSITIONS) {
+			return null;
+		}
+
+		shape = new Shape(this, key, size + 1);
+		Transition next = new Transition(this, key, shape);
+
+		while (true) {
+			transition = map.putIfAbsent(key, next);
+
+			if (transition == null) {
+				return shape;
+			}
+
+			Shape existing = transition.get();
+
+			if (existing != null) {
+				return existing;
+			} else if (map.replace(key, transition, next)) {
+				return shape;
+			}
+		}
+	}
+
+	private static void removeExpired() {
+		for (Reference<? extends Shape> ref = EXPIRED.poll(); ref != null; ref = EXPIRED.poll()) {
+			Transition transition = (Transition) ref;
+			transition.parent.transitions.remove(transition.key, transition);
+		}
+	}
+
+	/**
+	 * @return index of the property or -1 if this shape doesn't have it
+	 */
+	int indexOf(Object key) {
+		if (size > LINEAR_SEARCH_SIZE) {
+			Map<Object, Integer> table = indexTable;
+
+			if (table == null) {
+				table = new HashMap<>(size * 2);
+
+				for (Shape s = this; s.parent != null; s = s.parent) {
+					table.put(s.key, s.size - 1);
+				}
+
+				indexTable = table;
+			}
+
+			Integer index = table.get(key);
+			return index == null ? -1 : index;
+		}
+
+		for (Shape s = this; s.parent != null; s = s.parent) {
+			if (s.key == key || s.key.equals(key)) {
+				return s.size - 1;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @return all keys in insertion order
+	 */
+	Object[] getKeys() {
+		Object[] keys = new Object[size];
+
+		for (Shape s = this; s.parent != null; s = s.parent) {
+			keys[s.size - 1] = s.key;
+		}
+
+		return keys;
+	}
+
+	private static final class Transition extends WeakReference<Shape> {
+		private final Shape parent;
+		private final Object key;
+
+		private Transition(Shape parent, Object key, Shape shape) {
+			super(shape, EXPIRED);
+			this.parent = parent;
+			this.key = key;
+		}
+	}
+}
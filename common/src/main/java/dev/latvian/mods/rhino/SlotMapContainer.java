@@ -9,11 +9,18 @@ package dev.latvian.mods.rhino;
 import dev.latvian.mods.rhino.ScriptableObject.Slot;
 import dev.latvian.mods.rhino.ScriptableObject.SlotAccess;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 /**
  * This class holds the various SlotMaps of various types, and knows how to atomically
  * switch between them when we need to so that we use the right data structure at the right time.
+ * <p>
+ * New objects start out without a SlotMap. As long as they only have named data properties
+ * with default attributes, the keys are described by a shared {@link Shape} and the values
+ * sit in a plain array. Queries and iteration only see copies of the slots. The first
+ * operation that needs to modify a real {@link Slot} (accessors, attributes, index keys,
+ * deletes of any but the last added property) moves the properties into an EmbeddedSlotMap.
  */
 class SlotMapContainer implements SlotMap {
 
@@ -24,11 +31,23 @@ class SlotMapContainer implements SlotMap {
 	 */
 	private static final int LARGE_HASH_SIZE = 2000;
 
+	private static final int INITIAL_VALUES_SIZE = 4;
+
 	protected SlotMap map;
 
+	// Layout of the properties while map is null
+	private Shape shape;
+	private Object[] values;
+
 	SlotMapContainer(int initialSize) {
+		this(initialSize, true);
+	}
+
+	protected SlotMapContainer(int initialSize, boolean useShape) {
 		if (initialSize > LARGE_HASH_SIZE) {
 			map = new HashSlotMap();
+		} else if (useShape && initialSize == 0) {
+			shape = Shape.EMPTY;
 		} else {
 			map = new EmbeddedSlotMap();
 		}
@@ -36,44 +55,99 @@ class SlotMapContainer implements SlotMap {
 
 	@Override
 	public int size() {
-		return map.size();
+		return map == null ? shape.size() : map.size();
 	}
 
 	public int dirtySize() {
-		return map.size();
+		return size();
 	}
 
 	@Override
 	public boolean isEmpty() {
-		return map.isEmpty();
+		return map == null ? shape.size() == 0 : map.isEmpty();
 	}
 
 	@Override
 	public Slot get(Object key, int index, SlotAccess accessType) {
+		if (map == null) {
+			if (accessType == SlotAccess.QUERY) {
+				return query(key, index);
+			}
+
+			// Caller is going to modify the slot itself
+			clearShape();
+		}
+
 		if (accessType != SlotAccess.QUERY) {
 			checkMapSize();
 		}
 		return map.get(key, index, accessType);
 	}
 
+	/**
+	 * While the object has a shape, the returned slot is a copy of the property.
+	 * Callers that modify the slot have to use {@link #get(Object, int, SlotAccess)} instead.
+	 */
 	@Override
 	public Slot query(Object key, int index) {
+		if (map == null) {
+			int i = key == null ? -1 : shape.indexOf(key);
+			return i == -1 ? null : createSlot(key, values[i]);
+		}
+
 		return map.query(key, index);
 	}
 
 	@Override
 	public void addSlot(Slot newSlot) {
+		if (map == null) {
+			if (newSlot.getClass() == Slot.class && newSlot.name != null && newSlot.getAttributes() == 0 && addValue(newSlot.name, newSlot.value)) {
+				return;
+			}
+
+			clearShape();
+		}
+
 		checkMapSize();
 		map.addSlot(newSlot);
 	}
 
 	@Override
 	public void remove(Object key, int index) {
+		if (map == null) {
+			int i = key == null ? -1 : shape.indexOf(key);
+
+			if (i == -1) {
+				return;
+			} else if (i == shape.size() - 1) {
+				// Removing the last added property just goes back to the previous shape
+				values[i] = null;
+				shape = shape.getParent();
+				return;
+			}
+
+			clearShape();
+		}
+
 		map.remove(key, index);
 	}
 
+	/**
+	 * While the object has a shape, the iterator returns copies of the properties.
+	 */
 	@Override
 	public Iterator<Slot> iterator() {
+		if (map == null) {
+			Object[] keys = shape.getKeys();
+			Slot[] slots = new Slot[keys.length];
+
+			for (int i = 0; i < keys.length; i++) {
+				slots[i] = createSlot(keys[i], values[i]);
+			}
+
+			return Arrays.asList(slots).iterator();
+		}
+
 		return map.iterator();
 	}
 
@@ -86,6 +160,120 @@ class SlotMapContainer implements SlotMap {
 		// No locking in the default implementationock.unlockRead(stamp);
 	}
 
+	/**
+	 * @return true if the object has the property, without switching to a SlotMap
+	 */
+	public boolean has(Object key, int index) {
+		if (map == null) {
+			return key != null && shape.indexOf(key) != -1;
+		}
+
+		return query(key, index) != null;
+	}
+
+	/**
+	 * @return value of the property or NOT_FOUND, without switching to a SlotMap
+	 */
+	public Object getValue(Object key, int index, Scriptable start) {
+		if (map == null) {
+			int i = key == null ? -1 : shape.indexOf(key);
+			return i == -1 ? Scriptable.NOT_FOUND : values[i];
+		}
+
+		Slot slot = query(key, index);
+
+		if (slot == null) {
+			return Scriptable.NOT_FOUND;
+		}
+
+		return slot.getValue(start);
+	}
+
+	/**
+	 * @return shape of the properties or null if they are stored in a SlotMap
+	 */
+	public Shape getShape() {
+		return shape;
+	}
+
+	/**
+	 * @return value at the given index of {@link #getShape()}
+	 */
+	public Object getShapeValue(int index) {
+		return values[index];
+	}
+
+	public void setShapeValue(int index, Object value) {
+		values[index] = value;
+	}
+
+	/**
+	 * Add a data property with default attributes while the object has a shape.
+	 *
+	 * @return false if the shape can't grow any further and the property wasn't added
+	 */
+	public boolean addValue(Object key, Object value) {
+		Shape next = shape.addProperty(key);
+
+		if (next == null) {
+			return false;
+		}
+
+		int i = shape.size();
+
+		if (values == null) {
+			values = new Object[INITIAL_VALUES_SIZE];
+		} else if (i == values.length) {
+			values = Arrays.copyOf(values, i * 2);
+		}
+
+		values[i] = value;
+		shape = next;
+		return true;
+	}
+
+	/**
+	 * Make room for the given number of values while the object has a shape, so that
+	 * adding that many properties doesn't have to grow the array.
+	 */
+	public void ensureValuesCapacity(int capacity) {
+		if (map != null || capacity > Shape.MAX_PROPERTIES) {
+			return;
+		}
+
+		if (values == null) {
+			values = new Object[Math.max(capacity, INITIAL_VALUES_SIZE)];
+		} else if (values.length < capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+	}
+
+	/**
+	 * Move the properties into a SlotMap and stop tracking the shape of the object.
+	 */
+	public void clearShape() {
+		if (map != null) {
+			return;
+		}
+
+		EmbeddedSlotMap newMap = new EmbeddedSlotMap();
+		Object[] keys = shape.getKeys();
+
+		for (int i = 0; i < keys.length; i++) {
+			newMap.addSlot(createSlot(keys[i], values[i]));
+		}
+
+		map = newMap;
+		shape = null;
+		values = null;
+	}
+
+	private static Slot createSlot(Object key, Object value) {
+		Slot slot = new Slot(key, key.hashCode(), 0);
+		slot.value = value;
+		return slot;
+	}
+
 	/**
 	 * Before inserting a new item in the map, check and see if we need to expand from the embedded
 	 * map to a HashMap that is more robust against large numbers of hash collisions.
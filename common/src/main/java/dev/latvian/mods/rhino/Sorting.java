@@ -4,6 +4,7 @@
 
 package dev.latvian.mods.rhino;
 
+import java.util.Arrays;
 import java.util.Comparator;
 
 public final class Sorting {
@@ -58,6 +59,45 @@ public final class Sorting {
 		}
 	}
 
+	/*
+	Stable merge sort of the first length elements. Unlike Arrays.sort it doesn't check
+	that the comparator is consistent, so a bad comparator gives some order instead of an
+	exception. Merging is skipped when both halves are already in order, so input that is
+	mostly sorted needs few comparisons.
+	*/
+	public void mergeSort(Object[] a, int length, Comparator<Object> cmp) {
+		if (length > 1) {
+			mergeSort(Arrays.copyOf(a, length), a, 0, length, cmp);
+		}
+	}
+
+	/*
+	Sorts the range into dest, using src, which holds the same elements, as scratch space.
+	*/
+	private static void mergeSort(Object[] src, Object[] dest, int low, int high, Comparator<Object> cmp) {
+		if (high - low <= SMALLSORT) {
+			insertionSort(dest, low, high - 1, cmp);
+			return;
+		}
+
+		int mid = (low + high) >>> 1;
+		mergeSort(dest, src, low, mid, cmp);
+		mergeSort(dest, src, mid, high, cmp);
+
+		if (cmp.compare(src[mid - 1], src[mid]) <= 0) {
+			System.arraycopy(src, low, dest, low, high - low);
+			return;
+		}
+
+		for (int i = low, p = low, q = mid; i < high; i++) {
+			if (q >= high || p < mid && cmp.compare(src[p], src[q]) <= 0) {
+				dest[i] = src[p++];
+			} else {
+				dest[i] = src[q++];
+			}
+		}
+	}
+
 	/*
 	Quicksort-style partitioning, using the Hoare partition scheme as coded by
 	Sedgewick at https://algs4.cs.princeton.edu/23quicksort/Quick.java.html.
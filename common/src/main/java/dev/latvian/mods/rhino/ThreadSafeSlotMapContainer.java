@@ -22,7 +22,7 @@ class ThreadSafeSlotMapContainer extends SlotMapContainer {
 
 
 	ThreadSafeSlotMapContainer(int initialSize) {
-		super(initialSize);
+		super(initialSize, false);
 	}
 
 	@Override
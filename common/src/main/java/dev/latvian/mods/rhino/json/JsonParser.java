@@ -11,8 +11,7 @@ import dev.latvian.mods.rhino.ScriptRuntime;
 import dev.latvian.mods.rhino.Scriptable;
 
 import java.io.Serial;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * This class converts a stream of JSON tokens into a JSON value.
@@ -23,6 +22,17 @@ import java.util.List;
  * @author Hannes Wallnoefer
  */
 public class JsonParser {
+	/**
+	 * Exact powers of ten, for converting numbers that fit into the double
+	 * mantissa with a single correctly rounded operation.
+	 */
+	private static final double[] POW10 = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private static final int MAX_EXACT_DIGITS = 15;
+	private static final int KEY_TABLE_SIZE = 512;
 
 	private final Context cx;
 	private final Scriptable scope;
@@ -31,6 +41,17 @@ public class JsonParser {
 	private int length;
 	private String src;
 
+	// Keys seen during the current parse, so repeated keys share one string
+	private final String[] keys = new String[KEY_TABLE_SIZE];
+
+	// Members of all objects and arrays that are still open, the innermost on top
+	private Object[] stack = new Object[32];
+	private int stackTop;
+
+	// Digits of the number being read
+	private long mantissa;
+	private int significantDigits;
+
 	public JsonParser(Context cx, Scriptable scope) {
 		this.cx = cx;
 		this.scope = scope;
@@ -43,12 +64,20 @@ public class JsonParser {
 		pos = 0;
 		length = json.length();
 		src = json;
-		Object value = readValue();
-		consumeWhitespace();
-		if (pos < length) {
-			throw new ParseException("Expected end of stream at char " + pos);
+		stackTop = 0;
+		try {
+			Object value = readValue();
+			consumeWhitespace();
+			if (pos < length) {
+				throw new ParseException("Expected end of stream at char " + pos);
+			}
+			return value;
+		} finally {
+			src = null;
+			Arrays.fill(keys, null);
+			Arrays.fill(stack, 0, stackTop, null);
+			stackTop = 0;
 		}
-		return value;
 	}
 
 	private Object readValue() throws ParseException {
@@ -71,14 +100,13 @@ public class JsonParser {
 
 	private Object readObject() throws ParseException {
 		consumeWhitespace();
-		Scriptable object = cx.newObject(scope);
 		// handle empty object literal case early
 		if (pos < length && src.charAt(pos) == '}') {
 			pos += 1;
-			return object;
+			return cx.newObject(scope);
 		}
-		String id;
-		Object value;
+		// collect the members first, so the object can be created with room for all of them
+		final int membersStart = stackTop;
 		boolean needsComma = false;
 		while (pos < length) {
 			char c = src.charAt(pos++);
@@ -87,7 +115,7 @@ public class JsonParser {
 					if (!needsComma) {
 						throw new ParseException("Unexpected comma in object literal");
 					}
-					return object;
+					return createObject(membersStart);
 				}
 				case ',' -> {
 					if (!needsComma) {
@@ -99,15 +127,10 @@ public class JsonParser {
 					if (needsComma) {
 						throw new ParseException("Missing comma in object literal");
 					}
-					id = readString();
+					String id = readKey();
 					consume(':');
-					value = readValue();
-					long index = ScriptRuntime.indexFromString(id);
-					if (index < 0) {
-						object.put(id, object, value);
-					} else {
-						object.put((int) index, object, value);
-					}
+					push(id);
+					push(readValue());
 					needsComma = true;
 				}
 				default -> throw new ParseException("Unexpected token in object literal");
@@ -117,6 +140,22 @@ public class JsonParser {
 		throw new ParseException("Unterminated object literal");
 	}
 
+	private Scriptable createObject(int membersStart) {
+		Scriptable object = cx.newObject(scope, (stackTop - membersStart) / 2);
+		for (int i = membersStart; i < stackTop; i += 2) {
+			String id = (String) stack[i];
+			Object value = stack[i + 1];
+			long index = ScriptRuntime.indexFromString(id);
+			if (index < 0) {
+				object.put(id, object, value);
+			} else {
+				object.put((int) index, object, value);
+			}
+		}
+		pop(membersStart);
+		return object;
+	}
+
 	private Object readArray() throws ParseException {
 		consumeWhitespace();
 		// handle empty array literal case early
@@ -124,7 +163,7 @@ public class JsonParser {
 			pos += 1;
 			return cx.newArray(scope, 0);
 		}
-		List<Object> list = new ArrayList<>();
+		final int elementsStart = stackTop;
 		boolean needsComma = false;
 		while (pos < length) {
 			char c = src.charAt(pos);
@@ -134,7 +173,9 @@ public class JsonParser {
 						throw new ParseException("Unexpected comma in array literal");
 					}
 					pos += 1;
-					return cx.newArray(scope, list.toArray());
+					Object[] elements = Arrays.copyOfRange(stack, elementsStart, stackTop);
+					pop(elementsStart);
+					return cx.newArray(scope, elements);
 				}
 				case ',' -> {
 					if (!needsComma) {
@@ -147,7 +188,7 @@ public class JsonParser {
 					if (needsComma) {
 						throw new ParseException("Missing comma in array literal");
 					}
-					list.add(readValue());
+					push(readValue());
 					needsComma = true;
 				}
 			}
@@ -156,6 +197,46 @@ public class JsonParser {
 		throw new ParseException("Unterminated array literal");
 	}
 
+	private void push(Object value) {
+		if (stackTop == stack.length) {
+			stack = Arrays.copyOf(stack, stackTop * 2);
+		}
+		stack[stackTop++] = value;
+	}
+
+	private void pop(int newTop) {
+		Arrays.fill(stack, newTop, stackTop, null);
+		stackTop = newTop;
+	}
+
+	/**
+	 * Read an object key. Keys without escapes are looked up in the key table
+	 * straight from the source text, so a key that repeats across the objects
+	 * of a document is only copied out of it once.
+	 */
+	private String readKey() throws ParseException {
+		int keyStart = pos;
+		int hash = 0;
+		while (pos < length) {
+			char c = src.charAt(pos++);
+			if (c == '"') {
+				int len = pos - 1 - keyStart;
+				int slot = (hash ^ (hash >>> 16)) & (KEY_TABLE_SIZE - 1);
+				String key = keys[slot];
+				if (key == null || key.length() != len || !src.regionMatches(keyStart, key, 0, len)) {
+					key = src.substring(keyStart, pos - 1);
+					keys[slot] = key;
+				}
+				return key;
+			} else if (c == '\\' || c <= '\u001F') {
+				break;
+			}
+			hash = 31 * hash + c;
+		}
+		pos = keyStart;
+		return readString();
+	}
+
 	private String readString() throws ParseException {
 		/*
 		 * Optimization: if the source contains no escaped characters, create the
@@ -231,15 +312,20 @@ public class JsonParser {
 	private Number readNumber(char c) throws ParseException {
 		assert c == '-' || (c >= '0' && c <= '9');
 		final int numberStart = pos - 1;
-		if (c == '-') {
+		final boolean negative = c == '-';
+		mantissa = 0L;
+		significantDigits = 0;
+		if (negative) {
 			c = nextOrNumberError(numberStart);
 			if (!(c >= '0' && c <= '9')) {
 				throw numberError(numberStart, pos);
 			}
 		}
 		if (c != '0') {
+			addDigit(c);
 			readDigits();
 		}
+		int scale = 0;
 		// read optional fraction part
 		if (pos < length) {
 			c = src.charAt(pos);
@@ -249,28 +335,56 @@ public class JsonParser {
 				if (!(c >= '0' && c <= '9')) {
 					throw numberError(numberStart, pos);
 				}
-				readDigits();
+				addDigit(c);
+				scale = 1 + readDigits();
 			}
 		}
 		// read optional exponent part
+		int exponent = 0;
+		boolean exactExponent = true;
 		if (pos < length) {
 			c = src.charAt(pos);
 			if (c == 'e' || c == 'E') {
 				pos += 1;
 				c = nextOrNumberError(numberStart);
+				boolean negativeExponent = c == '-';
 				if (c == '-' || c == '+') {
 					c = nextOrNumberError(numberStart);
 				}
 				if (!(c >= '0' && c <= '9')) {
 					throw numberError(numberStart, pos);
 				}
-				readDigits();
+				int exponentStart = pos - 1;
+				skipDigits();
+				if (pos - exponentStart > 4) {
+					exactExponent = false;
+				} else {
+					for (int i = exponentStart; i < pos; i++) {
+						exponent = exponent * 10 + (src.charAt(i) - '0');
+					}
+					if (negativeExponent) {
+						exponent = -exponent;
+					}
+				}
+			}
+		}
+		// value is mantissa * 10^(exponent - scale), which is exact in a single
+		// operation if both the mantissa and the power of ten fit in a double
+		int exp10 = exponent - scale;
+		if (exactExponent && significantDigits <= MAX_EXACT_DIGITS && exp10 >= -22 && exp10 <= 22) {
+			double dval = exp10 < 0 ? mantissa / POW10[-exp10] : mantissa * POW10[exp10];
+			return negative ? -dval : dval;
+		}
+		return Double.parseDouble(src.substring(numberStart, pos));
+	}
+
+	private void addDigit(char c) {
+		// leading zeros of a fraction don't count towards the precision
+		if (mantissa != 0L || c != '0') {
+			if (++significantDigits <= MAX_EXACT_DIGITS) {
+				mantissa = mantissa * 10L + (c - '0');
 			}
 		}
-		String num = src.substring(numberStart, pos);
-		final double dval = Double.parseDouble(num);
-		final int ival = (int) dval;
-		return dval;
 	}
 
 	private ParseException numberError(int start, int end) {
@@ -284,7 +398,22 @@ public class JsonParser {
 		return src.charAt(pos++);
 	}
 
-	private void readDigits() {
+	/**
+	 * @return number of digits read
+	 */
+	private int readDigits() {
+		int digitsStart = pos;
+		for (; pos < length; ++pos) {
+			char c = src.charAt(pos);
+			if (!(c >= '0' && c <= '9')) {
+				break;
+			}
+			addDigit(c);
+		}
+		return pos - digitsStart;
+	}
+
+	private void skipDigits() {
 		for (; pos < length; ++pos) {
 			char c = src.charAt(pos);
 			if (!(c >= '0' && c <= '9')) {
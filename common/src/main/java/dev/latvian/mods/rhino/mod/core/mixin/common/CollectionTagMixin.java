@@ -1,5 +1,8 @@
 package dev.latvian.mods.rhino.mod.core.mixin.common;
 
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.Scriptable;
+import dev.latvian.mods.rhino.util.CollectionTagView;
 import dev.latvian.mods.rhino.util.CollectionTagWrapper;
 import dev.latvian.mods.rhino.util.CustomJavaObjectWrapper;
 import net.minecraft.nbt.CollectionTag;
@@ -14,4 +17,9 @@ public abstract class CollectionTagMixin<T extends Tag> implements CustomJavaObj
 	public List<?> wrapAsJavaList() {
 		return new CollectionTagWrapper((CollectionTag<Tag>) (Object) this);
 	}
+
+	@Override
+	public Scriptable wrapAsJavaObject(Context cx, Scriptable scope, Class<?> staticType) {
+		return new CollectionTagView(scope, (CollectionTag<Tag>) (Object) this);
+	}
 }
@@ -1,5 +1,8 @@
 package dev.latvian.mods.rhino.mod.core.mixin.common;
 
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.Scriptable;
+import dev.latvian.mods.rhino.util.CompoundTagView;
 import dev.latvian.mods.rhino.util.CompoundTagWrapper;
 import dev.latvian.mods.rhino.util.CustomJavaObjectWrapper;
 import dev.latvian.mods.rhino.util.RemapForJS;
@@ -22,6 +25,11 @@ public abstract class CompoundTagMixin implements CustomJavaObjectWrapper.AsMap
 		return new CompoundTagWrapper((CompoundTag) (Object) this, tags);
 	}
 
+	@Override
+	public Scriptable wrapAsJavaObject(Context cx, Scriptable scope, Class<?> staticType) {
+		return new CompoundTagView(scope, (CompoundTag) (Object) this);
+	}
+
 	@Shadow
 	@RemapForJS("merge")
 	public abstract CompoundTag merge(CompoundTag tag);
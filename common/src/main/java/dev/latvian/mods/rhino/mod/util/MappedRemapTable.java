@@ -0,0 +1,329 @@
+package dev.latvian.mods.rhino.mod.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only remap table in a compact binary file that is memory-mapped
+ * instead of parsed, so that booting doesn't have to build a map of every
+ * class and member.
+ * <p>
+ * Layout, all integers big endian:
+ * <pre>
+ * header        magic, version, string count, class count, child count
+ * strings       offset of every string in the string data
+ * classes       original name, mapped name, first child, child count; sorted by original name
+ * mapped index  class indices sorted by mapped name
+ * children      key, value; sorted by key within each class
+ * string data   length and UTF-8 bytes of every distinct string
+ * </pre>
+ * Names are referenced by their index in the string table, and all sorting
+ * compares the UTF-8 bytes unsigned, so lookups binary search the mapped
+ * file directly and only decode the string they return.
+ */
+public final class MappedRemapTable {
+	private static final int MAGIC = 0x52484D54; // RHMT
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 20;
+	private static final int CLASS_SIZE = 16;
+	private static final int CHILD_SIZE = 8;
+	private static final Comparator<byte[]> UTF8_ORDER = Arrays::compareUnsigned;
+
+	private final ByteBuffer buf;
+	private final int stringCount;
+	private final int classCount;
+	private final int stringsPos;
+	private final int classesPos;
+	private final int mappedIndexPos;
+	private final int childrenPos;
+
+	private MappedRemapTable(ByteBuffer buf) throws IOException {
+		this.buf = buf;
+
+		if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC || buf.getInt(4) != FORMAT_VERSION) {
+			throw new IOException("Not a remap table");
+		}
+
+		stringCount = buf.getInt(8);
+		classCount = buf.getInt(12);
+		int childCount = buf.getInt(16);
+		stringsPos = HEADER_SIZE;
+		classesPos = stringsPos + stringCount * 4;
+		mappedIndexPos = classesPos + classCount * CLASS_SIZE;
+		childrenPos = mappedIndexPos + classCount * 4;
+
+		if (stringCount < 0 || classCount < 0 || childCount < 0 || (long) childrenPos + (long) childCount * CHILD_SIZE > buf.capacity()) {
+			throw new IOException("Truncated remap table");
+		}
+	}
+
+	/**
+	 * Map the table in the file into memory.
+	 *
+	 * @throws IOException if the file can't be read or isn't a remap table of this version
+	 */
+	public static MappedRemapTable open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// The mapping stays valid after the channel is closed
+			return new MappedRemapTable(channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size()));
+		}
+	}
+
+	/**
+	 * Write the classes and their children to the file, replacing it atomically.
+	 */
+	public static void write(Path path, Map<String, MinecraftRemapper.RemappedClass> classMap) throws IOException {
+		Map<String, Integer> stringIds = new HashMap<>();
+		List<byte[]> strings = new ArrayList<>();
+		List<MinecraftRemapper.RemappedClass> classes = new ArrayList<>(classMap.values());
+		List<byte[]> originalNames = new ArrayList<>(classes.size());
+
+		for (MinecraftRemapper.RemappedClass c : classes) {
+			originalNames.add(c.originalName.getBytes(StandardCharsets.UTF_8));
+		}
+
+		Integer[] order = sortedIndices(originalNames);
+		int[] classData = new int[classes.size() * 4];
+		List<int[]> childData = new ArrayList<>();
+		int childCount = 0;
+
+		for (int i = 0; i < order.length; i++) {
+			MinecraftRemapper.RemappedClass c = classes.get(order[i]);
+			classData[i * 4] = intern(c.originalName, stringIds, strings);
+			classData[i * 4 + 1] = intern(c.mappedName, stringIds, strings);
+			classData[i * 4 + 2] = childCount;
+
+			if (c.children != null && !c.children.isEmpty()) {
+				List<Map.Entry<String, String>> entries = new ArrayList<>(c.children.entrySet());
+				List<byte[]> keys = new ArrayList<>(entries.size());
+
+				for (Map.Entry<String, String> entry : entries) {
+					keys.add(entry.getKey().getBytes(StandardCharsets.UTF_8));
+				}
+
+				for (int j : sortedIndices(keys)) {
+					Map.Entry<String, String> entry = entries.get(j);
+					childData.add(new int[]{intern(entry.getKey(), stringIds, strings), intern(entry.getValue(), stringIds, strings)});
+				}
+
+				childCount += entries.size();
+			}
+
+			classData[i * 4 + 3] = childCount - classData[i * 4 + 2];
+		}
+
+		List<byte[]> mappedNames = new ArrayList<>(order.length);
+
+		for (int i = 0; i < order.length; i++) {
+			mappedNames.add(strings.get(classData[i * 4 + 1]));
+		}
+
+		Integer[] mappedIndex = sortedIndices(mappedNames);
+
+		int stringDataPos = HEADER_SIZE + strings.size() * 4 + order.length * (CLASS_SIZE + 4) + childCount * CHILD_SIZE;
+		int size = stringDataPos;
+
+		for (byte[] s : strings) {
+			size += 4 + s.length;
+		}
+
+		ByteBuffer out = ByteBuffer.allocate(size);
+		out.putInt(MAGIC);
+		out.putInt(FORMAT_VERSION);
+		out.putInt(strings.size());
+		out.putInt(order.length);
+		out.putInt(childCount);
+
+		int offset = stringDataPos;
+
+		for (byte[] s : strings) {
+			out.putInt(offset);
+			offset += 4 + s.length;
+		}
+
+		for (int value : classData) {
+			out.putInt(value);
+		}
+
+		for (int index : mappedIndex) {
+			out.putInt(index);
+		}
+
+		for (int[] child : childData) {
+			out.putInt(child[0]);
+			out.putInt(child[1]);
+		}
+
+		for (byte[] s : strings) {
+			out.putInt(s.length);
+			out.put(s);
+		}
+
+		Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+
+		try {
+			try (OutputStream stream = Files.newOutputStream(temp)) {
+				stream.write(out.array());
+			}
+
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static int intern(String s, Map<String, Integer> stringIds, List<byte[]> strings) {
+		return stringIds.computeIfAbsent(s, k -> {
+			strings.add(k.getBytes(StandardCharsets.UTF_8));
+			return strings.size() - 1;
+		});
+	}
+
+	private static Integer[] sortedIndices(List<byte[]> keys) {
+		Integer[] indices = new Integer[keys.size()];
+
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = i;
+		}
+
+		Arrays.sort(indices, (a, b) -> UTF8_ORDER.compare(keys.get(a), keys.get(b)));
+		return indices;
+	}
+
+	public int size() {
+		return classCount;
+	}
+
+	/**
+	 * @return mapped name of the class or empty string if it isn't remapped
+	 */
+	public String getMappedClass(String originalName) {
+		int c = findClass(originalName.getBytes(StandardCharsets.UTF_8));
+		return c == -1 ? "" : getString(buf.getInt(classesPos + c * CLASS_SIZE + 4));
+	}
+
+	/**
+	 * @return original name of the class or empty string if it isn't remapped
+	 */
+	public String getUnmappedClass(String mappedName) {
+		byte[] key = mappedName.getBytes(StandardCharsets.UTF_8);
+		int lo = 0;
+		int hi = classCount - 1;
+
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int c = buf.getInt(mappedIndexPos + mid * 4);
+			int cmp = compare(buf.getInt(classesPos + c * CLASS_SIZE + 4), key);
+
+			if (cmp < 0) {
+				lo = mid + 1;
+			} else if (cmp > 0) {
+				hi = mid - 1;
+			} else {
+				return getString(buf.getInt(classesPos + c * CLASS_SIZE));
+			}
+		}
+
+		return "";
+	}
+
+	/**
+	 * @param key field name or method name with descriptor of its parameters
+	 * @return mapped name of the member or empty string if it isn't remapped
+	 */
+	public String getChild(String className, String key) {
+		int c = findClass(className.getBytes(StandardCharsets.UTF_8));
+
+		if (c == -1) {
+			return "";
+		}
+
+		int count = buf.getInt(classesPos + c * CLASS_SIZE + 12);
+
+		if (count == 0) {
+			return "";
+		}
+
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		int first = buf.getInt(classesPos + c * CLASS_SIZE + 8);
+		int lo = first;
+		int hi = first + count - 1;
+
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int cmp = compare(buf.getInt(childrenPos + mid * CHILD_SIZE), keyBytes);
+
+			if (cmp < 0) {
+				lo = mid + 1;
+			} else if (cmp > 0) {
+				hi = mid - 1;
+			} else {
+				return getString(buf.getInt(childrenPos + mid * CHILD_SIZE + 4));
+			}
+		}
+
+		return "";
+	}
+
+	/**
+	 * @return index of the class record or -1
+	 */
+	private int findClass(byte[] originalName) {
+		int lo = 0;
+		int hi = classCount - 1;
+
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int cmp = compare(buf.getInt(classesPos + mid * CLASS_SIZE), originalName);
+
+			if (cmp < 0) {
+				lo = mid + 1;
+			} else if (cmp > 0) {
+				hi = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Compare string in the table with the key, byte by byte without decoding it.
+	 */
+	private int compare(int id, byte[] key) {
+		int offset = buf.getInt(stringsPos + id * 4);
+		int length = buf.getInt(offset);
+		int n = Math.min(length, key.length);
+
+		for (int i = 0; i < n; i++) {
+			int cmp = Integer.compare(buf.get(offset + 4 + i) & 0xFF, key[i] & 0xFF);
+
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+
+		return Integer.compare(length, key.length);
+	}
+
+	private String getString(int id) {
+		int offset = buf.getInt(stringsPos + id * 4);
+		byte[] bytes = new byte[buf.getInt(offset)];
+		buf.get(offset + 4, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -22,7 +22,7 @@ import java.util.regex.Pattern;
 
 public abstract class MinecraftRemapper implements Remapper {
 	public static final int MM_VERSION = 1;
-	public static final int VERSION = 1;
+	public static final int VERSION = 2;
 
 	public static class RemappedClass {
 		public final String originalName;
@@ -62,6 +62,8 @@ public abstract class MinecraftRemapper implements Remapper {
 
 	public final Map<String, RemappedClass> classMap;
 	private Map<String, String> inverseClassMap;
+	// Cached remap table, classMap is only filled when the table had to be generated
+	private MappedRemapTable table;
 	private boolean empty;
 
 	public MinecraftRemapper() {
@@ -73,46 +75,21 @@ public abstract class MinecraftRemapper implements Remapper {
 		}
 
 		try {
-			Path remappedPath = Paths.get(System.getProperty("java.io.tmpdir")).resolve("rhino_" + getModLoader() + "_" + getRuntimeMappings() + "_remapped_" + getMcVersion() + "_v" + VERSION + (isServer() ? "_server.txt" : "_client.txt"));
+			Path remappedPath = Paths.get(System.getProperty("java.io.tmpdir")).resolve("rhino_" + getModLoader() + "_" + getRuntimeMappings() + "_remapped_" + getMcVersion() + "_v" + VERSION + (isServer() ? "_server.bin" : "_client.bin"));
 
 			if (Files.exists(remappedPath)) {
-				RemappedClass current = null;
-
-				for (String line : Files.readAllLines(remappedPath, StandardCharsets.UTF_8)) {
-					String[] l = line.split(" ");
-
-					if (l[0].equals("*")) {
-						current = new RemappedClass(l[1], l[2]);
-						classMap.put(current.originalName, current);
-
-						int cc = Integer.parseInt(l[3]);
-
-						if (cc > 0) {
-							current.children = new HashMap<>(cc);
-						}
-					} else if (current != null && !l[0].startsWith("#")) {
-						current.children.put(l[0], l[1]);
-					}
+				try {
+					table = MappedRemapTable.open(remappedPath);
+				} catch (Exception ex) {
+					// Corrupt or outdated, generate it again
+					table = null;
 				}
-			} else {
+			}
+
+			if (table == null) {
 				MinecraftClasses minecraftClasses = loadMojMapClasses();
 				init(minecraftClasses);
-
-				List<String> list = new ArrayList<>();
-				list.add("#version " + VERSION);
-
-				for (var entry : classMap.entrySet()) {
-					RemappedClass rc = entry.getValue();
-					list.add("* " + rc.originalName + " " + rc.mappedName + " " + (rc.children == null ? 0 : rc.children.size()));
-
-					if (rc.children != null) {
-						for (var entry1 : rc.children.entrySet()) {
-							list.add(entry1.getKey() + " " + entry1.getValue());
-						}
-					}
-				}
-
-				Files.write(remappedPath, list);
+				MappedRemapTable.write(remappedPath, classMap);
 			}
 
 			empty = false;
@@ -266,6 +243,10 @@ public abstract class MinecraftRemapper implements Remapper {
 
 	@Override
 	public String remapClass(Class<?> from, String className) {
+		if (table != null) {
+			return table.getMappedClass(className);
+		}
+
 		RemappedClass c = empty ? null : classMap.get(className);
 		return c == null ? "" : c.mappedName;
 	}
@@ -274,6 +255,8 @@ public abstract class MinecraftRemapper implements Remapper {
 	public String unmapClass(String from) {
 		if (empty) {
 			return "";
+		} else if (table != null) {
+			return table.getUnmappedClass(from);
 		} else if (inverseClassMap == null) {
 			inverseClassMap = new HashMap<>(classMap.size());
 
@@ -287,12 +270,20 @@ public abstract class MinecraftRemapper implements Remapper {
 
 	@Override
 	public String remapField(Class<?> from, Field field, String fieldName) {
+		if (table != null) {
+			return table.getChild(from.getName(), fieldName);
+		}
+
 		RemappedClass c = empty ? null : classMap.get(from.getName());
 		return c == null ? "" : c.getChild(fieldName);
 	}
 
 	@Override
 	public String remapMethod(Class<?> from, Method method, String methodString) {
+		if (table != null) {
+			return table.getChild(from.getName(), methodString);
+		}
+
 		RemappedClass c = empty ? null : classMap.get(from.getName());
 		return c == null ? "" : c.getChild(methodString);
 	}
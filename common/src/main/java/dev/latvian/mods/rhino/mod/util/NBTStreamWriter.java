@@ -0,0 +1,209 @@
+package dev.latvian.mods.rhino.mod.util;
+
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.handler.codec.EncoderException;
+import net.minecraft.nbt.Tag;
+import net.minecraft.network.FriendlyByteBuf;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes NBT in the binary format straight to an output, without building a tag tree first.
+ * <p>
+ * Compounds and lists are opened with {@link #beginCompound(String)} and {@link #beginList(String, int, int)}
+ * and closed with {@link #end()}. Values inside a compound need a name, values inside a list don't,
+ * and the root value is written with an empty name like {@link FriendlyByteBuf#writeNbt(net.minecraft.nbt.CompoundTag)} does.
+ */
+public class NBTStreamWriter {
+	@FunctionalInterface
+	private interface Payload {
+		void write(DataOutput output) throws IOException;
+	}
+
+	private final DataOutput output;
+	private byte[] containerTypes = new byte[8];
+	private byte[] elementTypes = new byte[8];
+	private int[] remaining = new int[8];
+	private int depth;
+	private boolean finished;
+
+	public NBTStreamWriter(DataOutput output) {
+		this.output = output;
+	}
+
+	public static NBTStreamWriter of(FriendlyByteBuf buf) {
+		return new NBTStreamWriter(new ByteBufOutputStream(buf));
+	}
+
+	/**
+	 * @return true once the root value has been written completely
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	public NBTStreamWriter beginCompound(@Nullable String name) {
+		value(NbtType.COMPOUND, name, null);
+		push(NbtType.COMPOUND, NbtType.END, 0);
+		return this;
+	}
+
+	public NBTStreamWriter beginList(@Nullable String name, int elementType, int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Negative list size " + size);
+		}
+
+		value(NbtType.LIST, name, null);
+		write(out -> {
+			out.writeByte(size == 0 ? NbtType.END : elementType);
+			out.writeInt(size);
+		});
+
+		push(NbtType.LIST, elementType, size);
+		return this;
+	}
+
+	/**
+	 * Close the innermost compound or list.
+	 */
+	public NBTStreamWriter end() {
+		if (depth == 0) {
+			throw new IllegalStateException("No compound or list to end");
+		}
+
+		int top = depth - 1;
+
+		if (containerTypes[top] == NbtType.COMPOUND) {
+			write(out -> out.writeByte(NbtType.END));
+		} else if (remaining[top] != 0) {
+			throw new IllegalStateException("List is missing " + remaining[top] + " elements");
+		}
+
+		depth--;
+		finished = depth == 0;
+		return this;
+	}
+
+	public NBTStreamWriter tag(@Nullable String name, Tag tag) {
+		return value(tag.getId(), name, tag::write);
+	}
+
+	public NBTStreamWriter putBoolean(@Nullable String name, boolean value) {
+		return putByte(name, value ? (byte) 1 : (byte) 0);
+	}
+
+	public NBTStreamWriter putByte(@Nullable String name, byte value) {
+		return value(NbtType.BYTE, name, out -> out.writeByte(value));
+	}
+
+	public NBTStreamWriter putShort(@Nullable String name, short value) {
+		return value(NbtType.SHORT, name, out -> out.writeShort(value));
+	}
+
+	public NBTStreamWriter putInt(@Nullable String name, int value) {
+		return value(NbtType.INT, name, out -> out.writeInt(value));
+	}
+
+	public NBTStreamWriter putLong(@Nullable String name, long value) {
+		return value(NbtType.LONG, name, out -> out.writeLong(value));
+	}
+
+	public NBTStreamWriter putFloat(@Nullable String name, float value) {
+		return value(NbtType.FLOAT, name, out -> out.writeFloat(value));
+	}
+
+	public NBTStreamWriter putDouble(@Nullable String name, double value) {
+		return value(NbtType.DOUBLE, name, out -> out.writeDouble(value));
+	}
+
+	public NBTStreamWriter putString(@Nullable String name, String value) {
+		return value(NbtType.STRING, name, out -> out.writeUTF(value));
+	}
+
+	public NBTStreamWriter putByteArray(@Nullable String name, byte[] value) {
+		return value(NbtType.BYTE_ARRAY, name, out -> {
+			out.writeInt(value.length);
+			out.write(value);
+		});
+	}
+
+	public NBTStreamWriter putIntArray(@Nullable String name, int[] value) {
+		return value(NbtType.INT_ARRAY, name, out -> {
+			out.writeInt(value.length);
+
+			for (int v : value) {
+				out.writeInt(v);
+			}
+		});
+	}
+
+	public NBTStreamWriter putLongArray(@Nullable String name, long[] value) {
+		return value(NbtType.LONG_ARRAY, name, out -> {
+			out.writeInt(value.length);
+
+			for (long v : value) {
+				out.writeLong(v);
+			}
+		});
+	}
+
+	private NBTStreamWriter value(int type, @Nullable String name, @Nullable Payload payload) {
+		if (finished) {
+			throw new IllegalStateException("Root tag has already been written");
+		}
+
+		if (depth == 0) {
+			write(out -> {
+				out.writeByte(type);
+				out.writeUTF("");
+			});
+		} else if (containerTypes[depth - 1] == NbtType.COMPOUND) {
+			if (name == null) {
+				throw new IllegalArgumentException("Values in a compound need a name");
+			}
+
+			write(out -> {
+				out.writeByte(type);
+				out.writeUTF(name);
+			});
+		} else if (type != elementTypes[depth - 1]) {
+			throw new IllegalArgumentException("Can't add tag of type " + type + " to list of type " + elementTypes[depth - 1]);
+		} else if (remaining[depth - 1] == 0) {
+			throw new IllegalStateException("List is already full");
+		} else {
+			remaining[depth - 1]--;
+		}
+
+		// Containers are finished by end() instead
+		if (payload != null) {
+			write(payload);
+			finished = depth == 0;
+		}
+
+		return this;
+	}
+
+	private void push(int containerType, int elementType, int size) {
+		if (depth == containerTypes.length) {
+			containerTypes = Arrays.copyOf(containerTypes, depth * 2);
+			elementTypes = Arrays.copyOf(elementTypes, depth * 2);
+			remaining = Arrays.copyOf(remaining, depth * 2);
+		}
+
+		containerTypes[depth] = (byte) containerType;
+		elementTypes[depth] = (byte) elementType;
+		remaining[depth] = size;
+		depth++;
+	}
+
+	private void write(Payload payload) {
+		try {
+			payload.write(output);
+		} catch (IOException ex) {
+			throw new EncoderException(ex);
+		}
+	}
+}
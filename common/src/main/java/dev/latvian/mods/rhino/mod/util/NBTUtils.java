@@ -1,5 +1,6 @@
 package dev.latvian.mods.rhino.mod.util;
 
+import dev.latvian.mods.rhino.Wrapper;
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.handler.codec.EncoderException;
 import net.minecraft.nbt.ByteArrayTag;
@@ -7,6 +8,7 @@ import net.minecraft.nbt.ByteTag;
 import net.minecraft.nbt.CollectionTag;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.DoubleTag;
+import net.minecraft.nbt.EndTag;
 import net.minecraft.nbt.FloatTag;
 import net.minecraft.nbt.IntArrayTag;
 import net.minecraft.nbt.IntTag;
@@ -28,6 +30,7 @@ import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -37,6 +40,11 @@ import java.util.Map;
 public class NBTUtils {
 	@Nullable
 	public static Tag toNBT(@Nullable Object o) {
+		// Views over tags hand back the tag itself instead of a copy
+		if (o instanceof Wrapper w) {
+			o = w.unwrap();
+		}
+
 		if (o instanceof Tag) {
 			return (Tag) o;
 		} else if (o instanceof NBTSerializable s) {
@@ -388,4 +396,130 @@ public class NBTUtils {
 			}
 		}
 	}
+
+	/**
+	 * Stream the tag in the buffer through the visitor without building it.
+	 * If the visitor halts, the rest of the tag is left unread.
+	 */
+	public static void parse(FriendlyByteBuf buf, StreamTagVisitor visitor) {
+		try {
+			DataInputStream stream = new DataInputStream(new ByteBufInputStream(buf));
+			TagType<?> tagType = convertType(TagTypes.getType(stream.readByte()));
+
+			if (tagType == EndTag.TYPE) {
+				if (visitor.visitRootEntry(EndTag.TYPE) == StreamTagVisitor.ValueResult.CONTINUE) {
+					visitor.visitEnd();
+				}
+
+				return;
+			}
+
+			switch (visitor.visitRootEntry(tagType)) {
+				case HALT -> {
+				}
+				case BREAK -> {
+					StringTag.skipString(stream);
+					tagType.skip(stream);
+				}
+				default -> {
+					StringTag.skipString(stream);
+					tagType.parse(stream, visitor);
+				}
+			}
+		} catch (IOException ex) {
+			throw new EncoderException(ex);
+		}
+	}
+
+	/**
+	 * Read only the given fields of the compound tag in the buffer. Everything else is
+	 * skipped over without being built.
+	 *
+	 * @param paths field names, nested compounds separated by dots, e.g. <code>tag.display.Name</code>
+	 * @return compound with the fields that were found, or null if the buffer doesn't hold a compound tag
+	 */
+	@Nullable
+	public static OrderedCompoundTag readFields(FriendlyByteBuf buf, String... paths) {
+		FieldSelector selector = new FieldSelector();
+
+		for (String path : paths) {
+			selector.add(path.split("\\."));
+		}
+
+		try {
+			DataInputStream stream = new DataInputStream(new ByteBufInputStream(buf));
+			byte typeId = stream.readByte();
+
+			if (typeId == 0) {
+				return null;
+			}
+
+			StringTag.skipString(stream);
+			TagType<?> tagType = convertType(TagTypes.getType(typeId));
+
+			if (tagType != COMPOUND_TYPE) {
+				tagType.skip(stream);
+				return null;
+			}
+
+			return readFields(stream, selector, 0);
+		} catch (IOException ex) {
+			throw new EncoderException(ex);
+		}
+	}
+
+	private static OrderedCompoundTag readFields(DataInput dataInput, FieldSelector selector, int depth) throws IOException {
+		if (depth > 512) {
+			throw new RuntimeException("Tried to read NBT tag with too high complexity, depth > 512");
+		}
+
+		Map<String, Tag> map = new LinkedHashMap<>();
+
+		byte typeId;
+		while ((typeId = dataInput.readByte()) != 0) {
+			TagType<?> valueType = convertType(TagTypes.getType(typeId));
+			String key = dataInput.readUTF();
+			FieldSelector field = selector.children.get(key);
+
+			if (field == null || !field.all && valueType != COMPOUND_TYPE) {
+				valueType.skip(dataInput);
+			} else if (field.all) {
+				map.put(key, valueType.load(dataInput, depth + 1, NbtAccounter.UNLIMITED));
+			} else {
+				map.put(key, readFields(dataInput, field, depth + 1));
+			}
+		}
+
+		return new OrderedCompoundTag(map);
+	}
+
+	/**
+	 * Tree of the fields selected by {@link #readFields(FriendlyByteBuf, String...)}.
+	 */
+	private static final class FieldSelector {
+		private final Map<String, FieldSelector> children = new HashMap<>();
+		private boolean all;
+
+		private void add(String[] path) {
+			FieldSelector selector = this;
+
+			for (String name : path) {
+				if (selector.all) {
+					return;
+				}
+
+				FieldSelector child = selector.children.get(name);
+
+				if (child == null) {
+					child = new FieldSelector();
+					selector.children.put(name, child);
+				}
+
+				selector = child;
+			}
+
+			selector.all = true;
+			selector.children.clear();
+		}
+	}
 }
\ No newline at end of file
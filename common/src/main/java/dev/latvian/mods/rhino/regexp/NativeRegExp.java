@@ -11,6 +11,7 @@ import dev.latvian.mods.rhino.Function;
 import dev.latvian.mods.rhino.IdFunctionObject;
 import dev.latvian.mods.rhino.IdScriptableObject;
 import dev.latvian.mods.rhino.Kit;
+import dev.latvian.mods.rhino.RhinoException;
 import dev.latvian.mods.rhino.ScriptRuntime;
 import dev.latvian.mods.rhino.Scriptable;
 import dev.latvian.mods.rhino.ScriptableObject;
@@ -20,7 +21,6 @@ import dev.latvian.mods.rhino.TopLevel;
 import dev.latvian.mods.rhino.Undefined;
 
 import java.io.Serial;
-import java.io.Serializable;
 
 /**
  * This class implements the RegExp native object.
@@ -275,6 +275,20 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 	}
 
 	static RECompiled compileRE(Context cx, String str, String global, boolean flat) {
+		RECompiled regexp = RegExpCache.get(str, global, flat);
+
+		if (regexp == null) {
+			regexp = compileREUncached(cx, str, global, flat);
+
+			if (regexp != null) {
+				RegExpCache.put(str, global, flat, regexp);
+			}
+		}
+
+		return regexp;
+	}
+
+	private static RECompiled compileREUncached(Context cx, String str, String global, boolean flat) {
 		RECompiled regexp = new RECompiled(str);
 		int length = str.length();
 		int flags = 0;
@@ -362,14 +376,131 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 			}
 		}
 
+		if ((flags & JSREG_FOLD) == 0) {
+			findStartChars(regexp, state.result);
+		}
+
 		if (debug) {
 			if (regexp.anchorCh >= 0) {
 				System.out.println("Anchor ch = '" + (char) regexp.anchorCh + "'");
 			}
+			if (regexp.literalPrefix != null) {
+				System.out.println("Literal prefix = \"" + regexp.literalPrefix + "\"" + (regexp.literalOnly ? " (whole pattern)" : ""));
+			}
 		}
 		return regexp;
 	}
 
+	/*
+	 * Work out what a match has to start with, so that the matcher can skip
+	 * over start positions where it can't possibly succeed: either a literal
+	 * string, or a set of characters one of which has to come first.
+	 */
+	private static void findStartChars(RECompiled regexp, RENode result) {
+		byte[] program = regexp.program;
+		int next;
+
+		switch (program[0]) {
+			case REOP_FLAT -> {
+				regexp.literalPrefix = new String(regexp.source, getIndex(program, 1), getIndex(program, 1 + INDEX_LEN));
+				next = 1 + 2 * INDEX_LEN;
+			}
+			case REOP_FLAT1 -> {
+				regexp.literalPrefix = String.valueOf((char) (program[1] & 0xFF));
+				next = 2;
+			}
+			case REOP_UCFLAT1 -> {
+				regexp.literalPrefix = String.valueOf((char) getIndex(program, 1));
+				next = 1 + INDEX_LEN;
+			}
+			default -> {
+				if (regexp.anchorCh == -1) {
+					long[] bits = new long[4];
+
+					if (addStartChars(regexp, result, bits)) {
+						regexp.startChars = bits;
+					}
+				}
+
+				return;
+			}
+		}
+
+		regexp.literalOnly = program[next] == REOP_END;
+	}
+
+	/*
+	 * Add every character that a match of the sequence starting with the node
+	 * can begin with. Returns false if that isn't known, the sequence can match
+	 * the empty string or can start with a character above 255.
+	 */
+	private static boolean addStartChars(RECompiled regexp, RENode node, long[] bits) {
+		switch (node.op) {
+			case REOP_FLAT -> {
+				if (node.chr >= 256) {
+					return false;
+				}
+
+				bits[node.chr >> 6] |= 1L << node.chr;
+				return true;
+			}
+			case REOP_DIGIT -> {
+				for (char c = '0'; c <= '9'; c++) {
+					bits[c >> 6] |= 1L << c;
+				}
+
+				return true;
+			}
+			case REOP_ALNUM -> {
+				for (char c = 0; c < 256; c++) {
+					if (isWord(c)) {
+						bits[c >> 6] |= 1L << c;
+					}
+				}
+
+				return true;
+			}
+			case REOP_CLASS -> {
+				RECharSet charSet = regexp.classList[node.index];
+
+				if (!charSet.sense || charSet.length > 256) {
+					return false;
+				}
+
+				if (!charSet.converted) {
+					REGlobalData gData = new REGlobalData();
+					gData.regexp = regexp;
+					try {
+						processCharSet(gData, charSet);
+					} catch (RhinoException ex) {
+						// Invalid class, leave reporting it to the matcher
+						return false;
+					}
+				}
+
+				for (int c = 0; c < charSet.length; c++) {
+					if ((charSet.bits[c >> 3] & (1 << (c & 0x7))) != 0) {
+						bits[c >> 6] |= 1L << c;
+					}
+				}
+
+				return true;
+			}
+			case REOP_ALT, REOP_ALTPREREQ, REOP_ALTPREREQ2 -> {
+				return addStartChars(regexp, node.kid, bits) && addStartChars(regexp, node.kid2, bits);
+			}
+			case REOP_LPAREN -> {
+				return addStartChars(regexp, node.kid, bits);
+			}
+			case REOP_QUANT -> {
+				return node.min > 0 && addStartChars(regexp, node.kid, bits);
+			}
+			default -> {
+				return false;
+			}
+		}
+	}
+
 	static boolean isDigit(char c) {
 		return '0' <= c && c <= '9';
 	}
@@ -2302,6 +2433,8 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 		gData.regexp = re;
 
 		int anchorCh = gData.regexp.anchorCh;
+		String literalPrefix = re.literalPrefix;
+		long[] startChars = re.startChars;
 		//
 		// have to include the position beyond the last character
 		//  in order to detect end-of-input/line condition
@@ -2312,7 +2445,29 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 			// the string until that match is made, or fail if it can't be
 			// found at all.
 			//
-			if (anchorCh >= 0) {
+			if (literalPrefix != null) {
+				i = input.indexOf(literalPrefix, i);
+				if (i == -1 || i + literalPrefix.length() > end) {
+					return false;
+				}
+				if (re.literalOnly) {
+					// Nothing else to match, no need to run the program
+					gData.cp = i + literalPrefix.length();
+					gData.skipped = i - start;
+					return true;
+				}
+			} else if (startChars != null) {
+				for (; ; ) {
+					if (i == end) {
+						return false;
+					}
+					char matchCh = input.charAt(i);
+					if (matchCh < 256 && (startChars[matchCh >> 6] & (1L << matchCh)) != 0) {
+						break;
+					}
+					++i;
+				}
+			} else if (anchorCh >= 0) {
 				for (; ; ) {
 					if (i == end) {
 						return false;
@@ -2689,23 +2844,6 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 
 }       // class NativeRegExp
 
-class RECompiled implements Serializable {
-	@Serial
-	private static final long serialVersionUID = -6144956577595844213L;
-
-	final char[] source;    /* locked source string, sans // */
-	int parenCount;         /* number of parenthesized submatches */
-	int flags;              /* flags  */
-	byte[] program;         /* regular expression bytecode */
-	int classCount;         /* count [...] bitmaps */
-	RECharSet[] classList;  /* list of [...] bitmaps */
-	int anchorCh = -1;      /* if >= 0, then re starts with this literal char */
-
-	RECompiled(String str) {
-		this.source = str.toCharArray();
-	}
-}
-
 class RENode {
 
 	RENode(byte op) {
@@ -2846,33 +2984,3 @@ class REGlobalData {
 	}
 
 }
-
-/*
- * This struct holds a bitmap representation of a class from a regexp.
- * There's a list of these referenced by the classList field in the NativeRegExp
- * struct below. The initial state has startIndex set to the offset in the
- * original regexp source of the beginning of the class contents. The first
- * use of the class converts the source representation into a bitmap.
- *
- */
-final class RECharSet implements Serializable {
-	@Serial
-	private static final long serialVersionUID = 7931787979395898394L;
-
-	RECharSet(int length, int startIndex, int strlength, boolean sense) {
-		this.length = length;
-		this.startIndex = startIndex;
-		this.strlength = strlength;
-		this.sense = sense;
-	}
-
-	final int length;
-	final int startIndex;
-	final int strlength;
-	final boolean sense;
-
-	volatile transient boolean converted;
-	volatile transient byte[] bits;
-}
-
-
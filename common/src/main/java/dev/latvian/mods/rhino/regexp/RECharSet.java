@@ -0,0 +1,38 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package dev.latvian.mods.rhino.regexp;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/*
+ * This struct holds a bitmap representation of a class from a regexp.
+ * There's a list of these referenced by the classList field in the RECompiled
+ * struct. The initial state has startIndex set to the offset in the
+ * original regexp source of the beginning of the class contents. The first
+ * use of the class converts the source representation into a bitmap.
+ *
+ */
+final class RECharSet implements Serializable {
+	@Serial
+	private static final long serialVersionUID = 7931787979395898394L;
+
+	RECharSet(int length, int startIndex, int strlength, boolean sense) {
+		this.length = length;
+		this.startIndex = startIndex;
+		this.strlength = strlength;
+		this.sense = sense;
+	}
+
+	final int length;
+	final int startIndex;
+	final int strlength;
+	final boolean sense;
+
+	volatile transient boolean converted;
+	volatile transient byte[] bits;
+}
@@ -0,0 +1,30 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package dev.latvian.mods.rhino.regexp;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+class RECompiled implements Serializable {
+	@Serial
+	private static final long serialVersionUID = -6144956577595844213L;
+
+	final char[] source;    /* locked source string, sans // */
+	int parenCount;         /* number of parenthesized submatches */
+	int flags;              /* flags  */
+	byte[] program;         /* regular expression bytecode */
+	int classCount;         /* count [...] bitmaps */
+	RECharSet[] classList;  /* list of [...] bitmaps */
+	int anchorCh = -1;      /* if >= 0, then re starts with this literal char */
+	String literalPrefix;   /* if not null, then re starts with this string, case sensitive */
+	boolean literalOnly;    /* re is nothing but literalPrefix */
+	long[] startChars;      /* if not null, then re starts with one of these chars, all below 256 */
+
+	RECompiled(String str) {
+		this.source = str.toCharArray();
+	}
+}
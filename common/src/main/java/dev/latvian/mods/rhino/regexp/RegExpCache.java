@@ -0,0 +1,153 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package dev.latvian.mods.rhino.regexp;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Global cache of compiled regular expressions, shared by RegExp literals,
+ * the RegExp constructor and the String methods that take a pattern.
+ * <p>
+ * Compiled expressions hold no match state, so one instance can be used by
+ * any number of RegExp objects and threads at once. The cache keeps the most
+ * recently used expressions, up to {@link #getMaxSize()} of them.
+ * <p>
+ * Warnings are only reported when an expression is actually compiled, not
+ * when it is taken from the cache.
+ */
+public final class RegExpCache {
+	public static final int DEFAULT_MAX_SIZE = 512;
+
+	/**
+	 * Longer patterns are compiled every time instead of being kept around.
+	 */
+	private static final int MAX_SOURCE_LENGTH = 4096;
+
+	private record Key(String source, String flags, boolean flat) {
+	}
+
+	private static volatile int maxSize = DEFAULT_MAX_SIZE;
+	private static long hits;
+	private static long misses;
+	private static long evictions;
+
+	private static final LinkedHashMap<Key, RECompiled> CACHE = new LinkedHashMap<>(64, 0.75F, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, RECompiled> eldest) {
+			if (size() > maxSize) {
+				evictions++;
+				return true;
+			}
+
+			return false;
+		}
+	};
+
+	private RegExpCache() {
+	}
+
+	static RECompiled get(String source, String flags, boolean flat) {
+		if (source.length() > MAX_SOURCE_LENGTH) {
+			return null;
+		}
+
+		synchronized (CACHE) {
+			RECompiled re = CACHE.get(new Key(source, flags == null ? "" : flags, flat));
+
+			if (re == null) {
+				misses++;
+			} else {
+				hits++;
+			}
+
+			return re;
+		}
+	}
+
+	static void put(String source, String flags, boolean flat, RECompiled re) {
+		if (source.length() > MAX_SOURCE_LENGTH || maxSize <= 0) {
+			return;
+		}
+
+		synchronized (CACHE) {
+			CACHE.put(new Key(source, flags == null ? "" : flags, flat), re);
+		}
+	}
+
+	public static int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Change how many compiled expressions are kept, 0 disables the cache.
+	 */
+	public static void setMaxSize(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Negative cache size " + size);
+		}
+
+		synchronized (CACHE) {
+			maxSize = size;
+			int excess = CACHE.size() - size;
+			Iterator<RECompiled> iterator = CACHE.values().iterator();
+
+			while (excess-- > 0) {
+				iterator.next();
+				iterator.remove();
+				evictions++;
+			}
+		}
+	}
+
+	public static int size() {
+		synchronized (CACHE) {
+			return CACHE.size();
+		}
+	}
+
+	/**
+	 * Remove all compiled expressions and reset the statistics.
+	 */
+	public static void clear() {
+		synchronized (CACHE) {
+			CACHE.clear();
+			hits = 0L;
+			misses = 0L;
+			evictions = 0L;
+		}
+	}
+
+	public static long getHits() {
+		synchronized (CACHE) {
+			return hits;
+		}
+	}
+
+	public static long getMisses() {
+		synchronized (CACHE) {
+			return misses;
+		}
+	}
+
+	public static long getEvictions() {
+		synchronized (CACHE) {
+			return evictions;
+		}
+	}
+
+	/**
+	 * @return fraction of lookups that found a compiled expression, 0 if there weren't any yet
+	 */
+	public static double getHitRate() {
+		synchronized (CACHE) {
+			long total = hits + misses;
+			return total == 0L ? 0D : (double) hits / total;
+		}
+	}
+}
@@ -6,6 +6,8 @@
 
 package dev.latvian.mods.rhino.typedarrays;
 
+import java.nio.ByteBuffer;
+
 public class ByteIo {
 	public static Byte readInt8(byte[] buf, int offset) {
 		return buf[offset];
@@ -151,4 +153,71 @@ public class ByteIo {
 		long base = Double.doubleToLongBits(val);
 		writeUint64(buf, offset, base, littleEndian);
 	}
+
+	// Versions for ByteBuffers, which can be direct or memory-mapped. The byte order is the order of the buffer,
+	// and values are returned unboxed.
+
+	public static byte readInt8(ByteBuffer buf, int offset) {
+		return buf.get(offset);
+	}
+
+	public static void writeInt8(ByteBuffer buf, int offset, int val) {
+		buf.put(offset, (byte) val);
+	}
+
+	public static int readUint8(ByteBuffer buf, int offset) {
+		return buf.get(offset) & 0xff;
+	}
+
+	public static void writeUint8(ByteBuffer buf, int offset, int val) {
+		buf.put(offset, (byte) (val & 0xff));
+	}
+
+	public static short readInt16(ByteBuffer buf, int offset) {
+		return buf.getShort(offset);
+	}
+
+	public static void writeInt16(ByteBuffer buf, int offset, int val) {
+		buf.putShort(offset, (short) val);
+	}
+
+	public static int readUint16(ByteBuffer buf, int offset) {
+		return buf.getShort(offset) & 0xffff;
+	}
+
+	public static void writeUint16(ByteBuffer buf, int offset, int val) {
+		buf.putShort(offset, (short) (val & 0xffff));
+	}
+
+	public static int readInt32(ByteBuffer buf, int offset) {
+		return buf.getInt(offset);
+	}
+
+	public static void writeInt32(ByteBuffer buf, int offset, int val) {
+		buf.putInt(offset, val);
+	}
+
+	public static long readUint32(ByteBuffer buf, int offset) {
+		return buf.getInt(offset) & 0xffffffffL;
+	}
+
+	public static void writeUint32(ByteBuffer buf, int offset, long val) {
+		buf.putInt(offset, (int) val);
+	}
+
+	public static float readFloat32(ByteBuffer buf, int offset) {
+		return buf.getFloat(offset);
+	}
+
+	public static void writeFloat32(ByteBuffer buf, int offset, double val) {
+		buf.putInt(offset, Float.floatToIntBits((float) val));
+	}
+
+	public static double readFloat64(ByteBuffer buf, int offset) {
+		return buf.getDouble(offset);
+	}
+
+	public static void writeFloat64(ByteBuffer buf, int offset, double val) {
+		buf.putLong(offset, Double.doubleToLongBits(val));
+	}
 }
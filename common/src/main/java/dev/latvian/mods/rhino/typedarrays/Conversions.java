@@ -17,12 +17,23 @@
 		 return (byte) ScriptRuntime.toInt32(arg);
 	 }
 
+	 public static int toInt8(double d) {
+		 return (byte) ScriptRuntime.toInt32(d);
+	 }
+
 	 public static int toUint8(Object arg) {
 		 return ScriptRuntime.toInt32(arg) & 0xff;
 	 }
 
+	 public static int toUint8(double d) {
+		 return ScriptRuntime.toInt32(d) & 0xff;
+	 }
+
 	 public static int toUint8Clamp(Object arg) {
-		 double d = ScriptRuntime.toNumber(arg);
+		 return toUint8Clamp(ScriptRuntime.toNumber(arg));
+	 }
+
+	 public static int toUint8Clamp(double d) {
 		 if (d <= 0.0) {
 			 return 0;
 		 }
@@ -48,10 +59,18 @@
 		 return (short) ScriptRuntime.toInt32(arg);
 	 }
 
+	 public static int toInt16(double d) {
+		 return (short) ScriptRuntime.toInt32(d);
+	 }
+
 	 public static int toUint16(Object arg) {
 		 return ScriptRuntime.toInt32(arg) & 0xffff;
 	 }
 
+	 public static int toUint16(double d) {
+		 return ScriptRuntime.toInt32(d) & 0xffff;
+	 }
+
 	 public static int toInt32(Object arg) {
 		 return ScriptRuntime.toInt32(arg);
 	 }
@@ -12,12 +12,23 @@ import dev.latvian.mods.rhino.IdScriptableObject;
 import dev.latvian.mods.rhino.ScriptRuntime;
 import dev.latvian.mods.rhino.Scriptable;
 import dev.latvian.mods.rhino.Undefined;
+import dev.latvian.mods.rhino.Wrapper;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serial;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
  * A NativeArrayBuffer is the backing buffer for a typed array. Used inside JavaScript code,
- * it implements the ArrayBuffer interface. Used directly from Java, it simply holds a byte array.
+ * it implements the ArrayBuffer interface. Used directly from Java, it holds a byte array,
+ * or wraps a direct or memory-mapped ByteBuffer so that large binary data can be used
+ * without copying it onto the heap.
  */
 
 public class NativeArrayBuffer extends IdScriptableObject {
@@ -28,7 +39,9 @@ public class NativeArrayBuffer extends IdScriptableObject {
 
 	private static final byte[] EMPTY_BUF = new byte[0];
 
-	final byte[] buffer;
+	// Both share the same content, the views read and write through the one in the order they need
+	private transient ByteBuffer bigEndian;
+	private transient ByteBuffer littleEndian;
 
 	@Override
 	public String getClassName() {
@@ -44,7 +57,36 @@ public class NativeArrayBuffer extends IdScriptableObject {
 	 * Create an empty buffer.
 	 */
 	public NativeArrayBuffer() {
-		buffer = EMPTY_BUF;
+		this(ByteBuffer.wrap(EMPTY_BUF));
+	}
+
+	/**
+	 * Create a buffer that shares the content of the given one, from its position to its limit.
+	 * Later changes to the position, limit or order of the given buffer have no effect.
+	 *
+	 * @throws IllegalArgumentException if the buffer is read-only
+	 */
+	public NativeArrayBuffer(ByteBuffer buffer) {
+		if (buffer.isReadOnly()) {
+			throw new IllegalArgumentException("ArrayBuffer can't wrap a read-only buffer");
+		}
+
+		bigEndian = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+		littleEndian = bigEndian.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Create a buffer that maps the whole file into memory. Changes are written back to the file
+	 * if it is opened as writable, otherwise they are only visible to this buffer.
+	 */
+	public static NativeArrayBuffer map(Path file, boolean writable) throws IOException {
+		try (FileChannel channel = writable ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE) : FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() >= Integer.MAX_VALUE) {
+				throw new IOException("File " + file + " is too large for an ArrayBuffer");
+			}
+
+			return new NativeArrayBuffer(channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.PRIVATE, 0L, channel.size()));
+		}
 	}
 
 	/**
@@ -67,26 +109,51 @@ public class NativeArrayBuffer extends IdScriptableObject {
 		if (intLen < 0) {
 			throw ScriptRuntime.rangeError("Negative array length " + len);
 		}
-		if (intLen == 0) {
-			buffer = EMPTY_BUF;
-		} else {
-			buffer = new byte[intLen];
-		}
+		bigEndian = ByteBuffer.wrap(intLen == 0 ? EMPTY_BUF : new byte[intLen]);
+		littleEndian = bigEndian.duplicate().order(ByteOrder.LITTLE_ENDIAN);
 	}
 
 	/**
 	 * Get the number of bytes in the buffer.
 	 */
 	public int getLength() {
-		return buffer.length;
+		return bigEndian.capacity();
+	}
+
+	/**
+	 * @return true if the content is not held in a byte array on the heap
+	 */
+	public boolean isDirect() {
+		return !bigEndian.hasArray();
 	}
 
 	/**
 	 * Return the actual bytes that back the buffer. This is a reference to the real buffer,
 	 * so changes to bytes here will be reflected in the actual object and all its views.
+	 *
+	 * @throws UnsupportedOperationException if the buffer doesn't exactly wrap a byte array, see {@link #getByteBuffer()}
 	 */
 	public byte[] getBuffer() {
-		return buffer;
+		if (!bigEndian.hasArray() || bigEndian.arrayOffset() != 0 || bigEndian.array().length != bigEndian.capacity()) {
+			throw new UnsupportedOperationException("ArrayBuffer is not backed by a byte array");
+		}
+
+		return bigEndian.array();
+	}
+
+	/**
+	 * Return a big-endian ByteBuffer that shares the content of this buffer, which works
+	 * for every kind of backing storage.
+	 */
+	public ByteBuffer getByteBuffer() {
+		return bigEndian.duplicate();
+	}
+
+	/**
+	 * Only use absolute get and put methods on the returned buffer, as it is shared by all views.
+	 */
+	ByteBuffer data(boolean littleEndian) {
+		return littleEndian ? this.littleEndian : bigEndian;
 	}
 
 	// Actual implementations of actual code
@@ -104,15 +171,33 @@ public class NativeArrayBuffer extends IdScriptableObject {
 	public NativeArrayBuffer slice(double s, double e) {
 		// Handle negative start as relative to start
 		// Clamp as per the spec to between 0 and length
-		int end = ScriptRuntime.toInt32(Math.max(0, Math.min(buffer.length, (e < 0 ? buffer.length + e : e))));
-		int start = ScriptRuntime.toInt32(Math.min(end, Math.max(0, (s < 0 ? buffer.length + s : s))));
+		int length = getLength();
+		int end = ScriptRuntime.toInt32(Math.max(0, Math.min(length, (e < 0 ? length + e : e))));
+		int start = ScriptRuntime.toInt32(Math.min(end, Math.max(0, (s < 0 ? length + s : s))));
 		int len = end - start;
 
 		NativeArrayBuffer newBuf = new NativeArrayBuffer(len);
-		System.arraycopy(buffer, start, newBuf.buffer, 0, len);
+		bigEndian.get(start, newBuf.bigEndian.array(), 0, len);
 		return newBuf;
 	}
 
+	@Serial
+	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+		stream.defaultReadObject();
+		byte[] bytes = (byte[]) stream.readObject();
+		bigEndian = ByteBuffer.wrap(bytes);
+		littleEndian = bigEndian.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	@Serial
+	private void writeObject(ObjectOutputStream stream) throws IOException {
+		stream.defaultWriteObject();
+		// Direct and mapped content is copied, so it comes back as a heap buffer
+		byte[] bytes = new byte[getLength()];
+		bigEndian.get(0, bytes);
+		stream.writeObject(bytes);
+	}
+
 	// Function-calling dispatcher
 
 	@Override
@@ -126,13 +211,16 @@ public class NativeArrayBuffer extends IdScriptableObject {
 				return (isArg(args, 0) && (args[0] instanceof NativeArrayBufferView));
 
 			case Id_constructor:
+				if (isArg(args, 0) && args[0] instanceof Wrapper w && w.unwrap() instanceof ByteBuffer buffer) {
+					return new NativeArrayBuffer(buffer);
+				}
 				double length = isArg(args, 0) ? ScriptRuntime.toNumber(args[0]) : 0;
 				return new NativeArrayBuffer(length);
 
 			case Id_slice:
 				NativeArrayBuffer self = realThis(thisObj, f);
 				double start = isArg(args, 0) ? ScriptRuntime.toNumber(args[0]) : 0;
-				double end = isArg(args, 1) ? ScriptRuntime.toNumber(args[1]) : self.buffer.length;
+				double end = isArg(args, 1) ? ScriptRuntime.toNumber(args[1]) : self.getLength();
 				return self.slice(start, end);
 		}
 		throw new IllegalArgumentException(String.valueOf(id));
@@ -212,7 +300,7 @@ public class NativeArrayBuffer extends IdScriptableObject {
 	@Override
 	protected Object getInstanceIdValue(int id) {
 		if (id == Id_byteLength) {
-			return ScriptRuntime.wrapInt(buffer.length);
+			return ScriptRuntime.wrapInt(getLength());
 		}
 		return super.getInstanceIdValue(id);
 	}
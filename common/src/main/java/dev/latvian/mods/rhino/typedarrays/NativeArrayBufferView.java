@@ -12,6 +12,7 @@ import dev.latvian.mods.rhino.ScriptRuntime;
 import dev.latvian.mods.rhino.Undefined;
 
 import java.io.Serial;
+import java.nio.ByteBuffer;
 
 /**
  * This class is the abstract parent for all views of the array. It shows a view of the underlying
@@ -82,6 +83,13 @@ public abstract class NativeArrayBufferView extends IdScriptableObject {
 		return useLittleEndian;
 	}
 
+	/**
+	 * Return the content of the buffer in the byte order used by typed arrays.
+	 */
+	protected ByteBuffer data() {
+		return arrayBuffer.data(useLittleEndian());
+	}
+
 	protected static boolean isArg(Object[] args, int i) {
 		return ((args.length > i) && !Undefined.instance.equals(args[i]));
 	}
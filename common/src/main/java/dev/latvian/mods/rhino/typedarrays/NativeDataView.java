@@ -113,18 +113,22 @@ public class NativeDataView extends NativeArrayBufferView {
 		switch (bytes) {
 			case 1:
 				if (signed) {
-					return ByteIo.readInt8(arrayBuffer.buffer, offset + pos);
+					return ByteIo.readInt8(arrayBuffer.data(false), offset + pos);
 				} else {
-					return ByteIo.readUint8(arrayBuffer.buffer, offset + pos);
+					return ByteIo.readUint8(arrayBuffer.data(false), offset + pos);
 				}
 			case 2:
 				if (signed) {
-					return ByteIo.readInt16(arrayBuffer.buffer, offset + pos, littleEndian);
+					return ByteIo.readInt16(arrayBuffer.data(littleEndian), offset + pos);
 				} else {
-					return ByteIo.readUint16(arrayBuffer.buffer, offset + pos, littleEndian);
+					return ByteIo.readUint16(arrayBuffer.data(littleEndian), offset + pos);
 				}
 			case 4:
-				return signed ? ByteIo.readInt32(arrayBuffer.buffer, offset + pos, littleEndian) : ByteIo.readUint32(arrayBuffer.buffer, offset + pos, littleEndian);
+				if (signed) {
+					return ByteIo.readInt32(arrayBuffer.data(littleEndian), offset + pos);
+				} else {
+					return ByteIo.readUint32(arrayBuffer.data(littleEndian), offset + pos);
+				}
 			default:
 				throw new AssertionError();
 		}
@@ -136,11 +140,14 @@ public class NativeDataView extends NativeArrayBufferView {
 
 		boolean littleEndian = isArg(args, 1) && (bytes > 1) && ScriptRuntime.toBoolean(args[1]);
 
-		return switch (bytes) {
-			case 4 -> ByteIo.readFloat32(arrayBuffer.buffer, offset + pos, littleEndian);
-			case 8 -> ByteIo.readFloat64(arrayBuffer.buffer, offset + pos, littleEndian);
-			default -> throw new AssertionError();
-		};
+		switch (bytes) {
+			case 4:
+				return ByteIo.readFloat32(arrayBuffer.data(littleEndian), offset + pos);
+			case 8:
+				return ByteIo.readFloat64(arrayBuffer.data(littleEndian), offset + pos);
+			default:
+				throw new AssertionError();
+		}
 	}
 
 	private void js_setInt(int bytes, boolean signed, Object[] args) {
@@ -163,13 +170,13 @@ public class NativeDataView extends NativeArrayBufferView {
 					if (pos + bytes > byteLength) {
 						throw ScriptRuntime.rangeError("offset out of range");
 					}
-					ByteIo.writeInt8(arrayBuffer.buffer, offset + pos, value);
+					ByteIo.writeInt8(arrayBuffer.data(false), offset + pos, value);
 				} else {
 					int value = Conversions.toUint8(val);
 					if (pos + bytes > byteLength) {
 						throw ScriptRuntime.rangeError("offset out of range");
 					}
-					ByteIo.writeUint8(arrayBuffer.buffer, offset + pos, value);
+					ByteIo.writeUint8(arrayBuffer.data(false), offset + pos, value);
 				}
 				break;
 			case 2:
@@ -178,13 +185,13 @@ public class NativeDataView extends NativeArrayBufferView {
 					if (pos + bytes > byteLength) {
 						throw ScriptRuntime.rangeError("offset out of range");
 					}
-					ByteIo.writeInt16(arrayBuffer.buffer, offset + pos, value, littleEndian);
+					ByteIo.writeInt16(arrayBuffer.data(littleEndian), offset + pos, value);
 				} else {
 					int value = Conversions.toUint16(val);
 					if (pos + bytes > byteLength) {
 						throw ScriptRuntime.rangeError("offset out of range");
 					}
-					ByteIo.writeUint16(arrayBuffer.buffer, offset + pos, value, littleEndian);
+					ByteIo.writeUint16(arrayBuffer.data(littleEndian), offset + pos, value);
 				}
 				break;
 			case 4:
@@ -193,13 +200,13 @@ public class NativeDataView extends NativeArrayBufferView {
 					if (pos + bytes > byteLength) {
 						throw ScriptRuntime.rangeError("offset out of range");
 					}
-					ByteIo.writeInt32(arrayBuffer.buffer, offset + pos, value, littleEndian);
+					ByteIo.writeInt32(arrayBuffer.data(littleEndian), offset + pos, value);
 				} else {
 					long value = Conversions.toUint32(val);
 					if (pos + bytes > byteLength) {
 						throw ScriptRuntime.rangeError("offset out of range");
 					}
-					ByteIo.writeUint32(arrayBuffer.buffer, offset + pos, value, littleEndian);
+					ByteIo.writeUint32(arrayBuffer.data(littleEndian), offset + pos, value);
 				}
 				break;
 			default:
@@ -225,8 +232,8 @@ public class NativeDataView extends NativeArrayBufferView {
 		}
 
 		switch (bytes) {
-			case 4 -> ByteIo.writeFloat32(arrayBuffer.buffer, offset + pos, val, littleEndian);
-			case 8 -> ByteIo.writeFloat64(arrayBuffer.buffer, offset + pos, val, littleEndian);
+			case 4 -> ByteIo.writeFloat32(arrayBuffer.data(littleEndian), offset + pos, val);
+			case 8 -> ByteIo.writeFloat64(arrayBuffer.data(littleEndian), offset + pos, val);
 			default -> throw new AssertionError();
 		}
 	}
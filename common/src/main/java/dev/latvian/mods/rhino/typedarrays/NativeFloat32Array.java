@@ -70,7 +70,7 @@ public class NativeFloat32Array extends NativeTypedArrayView<Float> {
 		if (checkIndex(index)) {
 			return Undefined.instance;
 		}
-		return ByteIo.readFloat32(arrayBuffer.buffer, (index * BYTES_PER_ELEMENT) + offset, useLittleEndian());
+		return ByteIo.readFloat32(data(), (index * BYTES_PER_ELEMENT) + offset);
 	}
 
 	@Override
@@ -79,10 +79,20 @@ public class NativeFloat32Array extends NativeTypedArrayView<Float> {
 			return Undefined.instance;
 		}
 		double val = ScriptRuntime.toNumber(c);
-		ByteIo.writeFloat32(arrayBuffer.buffer, (index * BYTES_PER_ELEMENT) + offset, val, useLittleEndian());
+		ByteIo.writeFloat32(data(), (index * BYTES_PER_ELEMENT) + offset, val);
 		return null;
 	}
 
+	@Override
+	public double getDouble(int index) {
+		return ByteIo.readFloat32(data(), (index * BYTES_PER_ELEMENT) + offset);
+	}
+
+	@Override
+	public void setDouble(int index, double value) {
+		ByteIo.writeFloat32(data(), (index * BYTES_PER_ELEMENT) + offset, value);
+	}
+
 	@Override
 	public Float get(int i) {
 		if (checkIndex(i)) {
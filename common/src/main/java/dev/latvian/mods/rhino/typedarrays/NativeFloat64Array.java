@@ -70,8 +70,7 @@ public class NativeFloat64Array extends NativeTypedArrayView<Double> {
 		if (checkIndex(index)) {
 			return Undefined.instance;
 		}
-		long base = ByteIo.readUint64Primitive(arrayBuffer.buffer, (index * BYTES_PER_ELEMENT) + offset, useLittleEndian());
-		return Double.longBitsToDouble(base);
+		return ByteIo.readFloat64(data(), (index * BYTES_PER_ELEMENT) + offset);
 	}
 
 	@Override
@@ -80,11 +79,20 @@ public class NativeFloat64Array extends NativeTypedArrayView<Double> {
 			return Undefined.instance;
 		}
 		double val = ScriptRuntime.toNumber(c);
-		long base = Double.doubleToLongBits(val);
-		ByteIo.writeUint64(arrayBuffer.buffer, (index * BYTES_PER_ELEMENT) + offset, base, useLittleEndian());
+		ByteIo.writeFloat64(data(), (index * BYTES_PER_ELEMENT) + offset, val);
 		return null;
 	}
 
+	@Override
+	public double getDouble(int index) {
+		return ByteIo.readFloat64(data(), (index * BYTES_PER_ELEMENT) + offset);
+	}
+
+	@Override
+	public void setDouble(int index, double value) {
+		ByteIo.writeFloat64(data(), (index * BYTES_PER_ELEMENT) + offset, value);
+	}
+
 	@Override
 	public Double get(int i) {
 		if (checkIndex(i)) {
@@ -69,7 +69,7 @@ public class NativeInt16Array extends NativeTypedArrayView<Short> {
 		if (checkIndex(index)) {
 			return Undefined.instance;
 		}
-		return ByteIo.readInt16(arrayBuffer.buffer, (index * BYTES_PER_ELEMENT) + offset, useLittleEndian());
+		return ByteIo.readInt16(data(), (index * BYTES_PER_ELEMENT) + offset);
 	}
 
 	@Override
@@ -78,10 +78,20 @@ public class NativeInt16Array extends NativeTypedArrayView<Short> {
 			return Undefined.instance;
 		}
 		int val = Conversions.toInt16(c);
-		ByteIo.writeInt16(arrayBuffer.buffer, (index * BYTES_PER_ELEMENT) + offset, val, useLittleEndian());
+		ByteIo.writeInt16(data(), (index * BYTES_PER_ELEMENT) + offset, val);
 		return null;
 	}
 
+	@Override
+	public double getDouble(int index) {
+		return ByteIo.readInt16(data(), (index * BYTES_PER_ELEMENT) + offset);
+	}
+
+	@Override
+	public void setDouble(int index, double value) {
+		ByteIo.writeInt16(data(), (index * BYTES_PER_ELEMENT) + offset, Conversions.toInt16(value));
+	}
+
 	@Override
 	public Short get(int i) {
 		if (checkIndex(i)) {
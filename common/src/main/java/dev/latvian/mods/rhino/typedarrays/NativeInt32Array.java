@@ -70,7 +70,7 @@ public class NativeInt32Array extends NativeTypedArrayView<Integer> {
 		if (checkIndex(index)) {
 			return Undefined.instance;
 		}
-		return ByteIo.readInt32(arrayBuffer.buffer, (index * BYTES_PER_ELEMENT) + offset, useLittleEndian());
+		return ByteIo.readInt32(data(), (index * BYTES_PER_ELEMENT) + offset);
 	}
 
 	@Override
@@ -79,10 +79,20 @@ public class NativeInt32Array extends NativeTypedArrayView<Integer> {
 			return Undefined.instance;
 		}
 		int val = ScriptRuntime.toInt32(c);
-		ByteIo.writeInt32(arrayBuffer.buffer, (index * BYTES_PER_ELEMENT) + offset, val, useLittleEndian());
+		ByteIo.writeInt32(data(), (index * BYTES_PER_ELEMENT) + offset, val);
 		return null;
 	}
 
+	@Override
+	public double getDouble(int index) {
+		return ByteIo.readInt32(data(), (index * BYTES_PER_ELEMENT) + offset);
+	}
+
+	@Override
+	public void setDouble(int index, double value) {
+		ByteIo.writeInt32(data(), (index * BYTES_PER_ELEMENT) + offset, ScriptRuntime.toInt32(value));
+	}
+
 	@Override
 	public Integer get(int i) {
 		if (checkIndex(i)) {
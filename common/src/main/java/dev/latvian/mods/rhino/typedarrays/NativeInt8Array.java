@@ -68,7 +68,7 @@ public class NativeInt8Array extends NativeTypedArrayView<Byte> {
 		if (checkIndex(index)) {
 			return Undefined.instance;
 		}
-		return ByteIo.readInt8(arrayBuffer.buffer, index + offset);
+		return ByteIo.readInt8(data(), index + offset);
 	}
 
 	@Override
@@ -77,12 +77,22 @@ public class NativeInt8Array extends NativeTypedArrayView<Byte> {
 			return Undefined.instance;
 		}
 		int val = Conversions.toInt8(c);
-		ByteIo.writeInt8(arrayBuffer.buffer, index + offset, val);
+		ByteIo.writeInt8(data(), index + offset, val);
 		return null;
 	}
 
 	// List implementation (much of it handled by the superclass)
 
+	@Override
+	public double getDouble(int index) {
+		return ByteIo.readInt8(data(), index + offset);
+	}
+
+	@Override
+	public void setDouble(int index, double value) {
+		ByteIo.writeInt8(data(), index + offset, Conversions.toInt8(value));
+	}
+
 	@Override
 	public Byte get(int i) {
 		if (checkIndex(i)) {
@@ -99,6 +99,16 @@ public abstract class NativeTypedArrayView<T> extends NativeArrayBufferView impl
 
 	protected abstract Object js_set(int index, Object c);
 
+	/**
+	 * Read an element as a number without boxing it. The index must be between 0 and {@link #getArrayLength()}.
+	 */
+	public abstract double getDouble(int index);
+
+	/**
+	 * Convert the number to the element type and store it without boxing it. The index must be between 0 and {@link #getArrayLength()}.
+	 */
+	public abstract void setDouble(int index, double value);
+
 	protected abstract NativeTypedArrayView<T> realThis(Scriptable thisObj, IdFunctionObject f);
 
 	private NativeArrayBuffer makeArrayBuffer(Context cx, Scriptable scope, int length) {
@@ -145,10 +155,10 @@ public abstract class NativeTypedArrayView<T> extends NativeArrayBufferView impl
 				byteLen = na.getLength() - byteOff;
 			}
 
-			if ((byteOff < 0) || (byteOff > na.buffer.length)) {
+			if ((byteOff < 0) || (byteOff > na.getLength())) {
 				throw ScriptRuntime.rangeError("offset out of range");
 			}
-			if ((byteLen < 0) || ((byteOff + byteLen) > na.buffer.length)) {
+			if ((byteLen < 0) || ((byteOff + byteLen) > na.getLength())) {
 				throw ScriptRuntime.rangeError("length out of range");
 			}
 			if ((byteOff % getBytesPerElement()) != 0) {
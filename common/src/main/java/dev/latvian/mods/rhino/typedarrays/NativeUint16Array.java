@@ -69,7 +69,7 @@ public class NativeUint16Array extends NativeTypedArrayView<Integer> {
 		if (checkIndex(index)) {
 			return Undefined.instance;
 		}
-		return ByteIo.readUint16(arrayBuffer.buffer, (index * BYTES_PER_ELEMENT) + offset, useLittleEndian());
+		return ByteIo.readUint16(data(), (index * BYTES_PER_ELEMENT) + offset);
 	}
 
 	@Override
@@ -78,10 +78,20 @@ public class NativeUint16Array extends NativeTypedArrayView<Integer> {
 			return Undefined.instance;
 		}
 		int val = Conversions.toUint16(c);
-		ByteIo.writeUint16(arrayBuffer.buffer, (index * BYTES_PER_ELEMENT) + offset, val, useLittleEndian());
+		ByteIo.writeUint16(data(), (index * BYTES_PER_ELEMENT) + offset, val);
 		return null;
 	}
 
+	@Override
+	public double getDouble(int index) {
+		return ByteIo.readUint16(data(), (index * BYTES_PER_ELEMENT) + offset);
+	}
+
+	@Override
+	public void setDouble(int index, double value) {
+		ByteIo.writeUint16(data(), (index * BYTES_PER_ELEMENT) + offset, Conversions.toUint16(value));
+	}
+
 	@Override
 	public Integer get(int i) {
 		if (checkIndex(i)) {
@@ -8,6 +8,7 @@ package dev.latvian.mods.rhino.typedarrays;
 
 import dev.latvian.mods.rhino.Context;
 import dev.latvian.mods.rhino.IdFunctionObject;
+import dev.latvian.mods.rhino.ScriptRuntime;
 import dev.latvian.mods.rhino.Scriptable;
 import dev.latvian.mods.rhino.Undefined;
 
@@ -69,7 +70,7 @@ public class NativeUint32Array extends NativeTypedArrayView<Long> {
 		if (checkIndex(index)) {
 			return Undefined.instance;
 		}
-		return ByteIo.readUint32(arrayBuffer.buffer, (index * BYTES_PER_ELEMENT) + offset, useLittleEndian());
+		return ByteIo.readUint32(data(), (index * BYTES_PER_ELEMENT) + offset);
 	}
 
 	@Override
@@ -78,10 +79,20 @@ public class NativeUint32Array extends NativeTypedArrayView<Long> {
 			return Undefined.instance;
 		}
 		long val = Conversions.toUint32(c);
-		ByteIo.writeUint32(arrayBuffer.buffer, (index * BYTES_PER_ELEMENT) + offset, val, useLittleEndian());
+		ByteIo.writeUint32(data(), (index * BYTES_PER_ELEMENT) + offset, val);
 		return null;
 	}
 
+	@Override
+	public double getDouble(int index) {
+		return ByteIo.readUint32(data(), (index * BYTES_PER_ELEMENT) + offset);
+	}
+
+	@Override
+	public void setDouble(int index, double value) {
+		ByteIo.writeUint32(data(), (index * BYTES_PER_ELEMENT) + offset, ScriptRuntime.toUint32(value));
+	}
+
 	@Override
 	public Long get(int i) {
 		if (checkIndex(i)) {
@@ -68,7 +68,7 @@ public class NativeUint8Array extends NativeTypedArrayView<Integer> {
 		if (checkIndex(index)) {
 			return Undefined.instance;
 		}
-		return ByteIo.readUint8(arrayBuffer.buffer, index + offset);
+		return ByteIo.readUint8(data(), index + offset);
 	}
 
 	@Override
@@ -77,10 +77,20 @@ public class NativeUint8Array extends NativeTypedArrayView<Integer> {
 			return Undefined.instance;
 		}
 		int val = Conversions.toUint8(c);
-		ByteIo.writeUint8(arrayBuffer.buffer, index + offset, val);
+		ByteIo.writeUint8(data(), index + offset, val);
 		return null;
 	}
 
+	@Override
+	public double getDouble(int index) {
+		return ByteIo.readUint8(data(), index + offset);
+	}
+
+	@Override
+	public void setDouble(int index, double value) {
+		ByteIo.writeUint8(data(), index + offset, Conversions.toUint8(value));
+	}
+
 	@Override
 	public Integer get(int i) {
 		if (checkIndex(i)) {
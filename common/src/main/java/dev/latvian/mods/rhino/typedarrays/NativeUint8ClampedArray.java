@@ -69,7 +69,7 @@ public class NativeUint8ClampedArray extends NativeTypedArrayView<Integer> {
 		if (checkIndex(index)) {
 			return Undefined.instance;
 		}
-		return ByteIo.readUint8(arrayBuffer.buffer, index + offset);
+		return ByteIo.readUint8(data(), index + offset);
 	}
 
 	@Override
@@ -78,10 +78,20 @@ public class NativeUint8ClampedArray extends NativeTypedArrayView<Integer> {
 			return Undefined.instance;
 		}
 		int val = Conversions.toUint8Clamp(c);
-		ByteIo.writeUint8(arrayBuffer.buffer, index + offset, val);
+		ByteIo.writeUint8(data(), index + offset, val);
 		return null;
 	}
 
+	@Override
+	public double getDouble(int index) {
+		return ByteIo.readUint8(data(), index + offset);
+	}
+
+	@Override
+	public void setDouble(int index, double value) {
+		ByteIo.writeUint8(data(), index + offset, Conversions.toUint8Clamp(value));
+	}
+
 	@Override
 	public Integer get(int i) {
 		if (checkIndex(i)) {
@@ -0,0 +1,67 @@
+package dev.latvian.mods.rhino.util;
+
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.NativeJavaList;
+import dev.latvian.mods.rhino.Scriptable;
+import dev.latvian.mods.rhino.mod.util.NBTWrapper;
+import net.minecraft.nbt.ByteArrayTag;
+import net.minecraft.nbt.CollectionTag;
+import net.minecraft.nbt.IntArrayTag;
+import net.minecraft.nbt.LongArrayTag;
+import net.minecraft.nbt.Tag;
+
+/**
+ * Script view of a {@link CollectionTag}. Elements of numeric array tags are read
+ * straight from their backing array instead of being boxed into a tag first, and
+ * elements of list tags are only wrapped when they are accessed.
+ */
+public class CollectionTagView extends NativeJavaList {
+	private final CollectionTag<Tag> tag;
+
+	public CollectionTagView(Scriptable scope, CollectionTag<Tag> tag) {
+		super(scope, tag, new CollectionTagWrapper(tag));
+		this.tag = tag;
+	}
+
+	@Override
+	public boolean has(int index, Scriptable start) {
+		return index >= 0 && index < tag.size() || super.has(index, start);
+	}
+
+	@Override
+	public Object get(int index, Scriptable start) {
+		if (index < 0 || index >= tag.size()) {
+			return super.get(index, start);
+		}
+
+		Object obj;
+
+		if (tag instanceof IntArrayTag t) {
+			obj = t.getAsIntArray()[index];
+		} else if (tag instanceof LongArrayTag t) {
+			obj = t.getAsLongArray()[index];
+		} else if (tag instanceof ByteArrayTag t) {
+			obj = t.getAsByteArray()[index];
+		} else {
+			return CompoundTagView.wrapTag(this, tag.get(index));
+		}
+
+		Context cx = Context.getContext();
+		return cx.getWrapFactory().wrap(cx, this, obj, obj.getClass());
+	}
+
+	@Override
+	public void put(int index, Scriptable start, Object value) {
+		if (index < 0 || index >= tag.size()) {
+			super.put(index, start, value);
+			return;
+		}
+
+		Tag t = NBTWrapper.toTag(Context.jsToJava(value, Object.class));
+
+		// setTag converts numbers to the element type of array tags
+		if (t == null || !tag.setTag(index, t)) {
+			throw Context.reportRuntimeError("Can't set element " + index + " of " + tag.getType().getPrettyName() + " to " + value);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package dev.latvian.mods.rhino.util;
+
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.NativeJavaObject;
+import dev.latvian.mods.rhino.ScriptRuntime;
+import dev.latvian.mods.rhino.Scriptable;
+import dev.latvian.mods.rhino.mod.util.NBTWrapper;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
+
+/**
+ * Script view of a {@link CompoundTag}. Properties are read from and written to
+ * the tag itself, and child tags are only wrapped when they are accessed.
+ */
+public class CompoundTagView extends NativeJavaObject {
+	private final CompoundTag tag;
+
+	public CompoundTagView(Scriptable scope, CompoundTag tag) {
+		super(scope, tag, tag.getClass());
+		this.tag = tag;
+	}
+
+	@Override
+	public String getClassName() {
+		return "JavaMap";
+	}
+
+	@Override
+	public boolean has(String name, Scriptable start) {
+		return tag.contains(name) || super.has(name, start);
+	}
+
+	@Override
+	public boolean has(int index, Scriptable start) {
+		return tag.contains(Integer.toString(index));
+	}
+
+	@Override
+	public Object get(String name, Scriptable start) {
+		Tag t = tag.get(name);
+		return t == null ? super.get(name, start) : wrapTag(this, t);
+	}
+
+	@Override
+	public Object get(int index, Scriptable start) {
+		Tag t = tag.get(Integer.toString(index));
+		return t == null ? super.get(index, start) : wrapTag(this, t);
+	}
+
+	@Override
+	public void put(String name, Scriptable start, Object value) {
+		Tag t = NBTWrapper.toTag(Context.jsToJava(value, Object.class));
+
+		if (t == null) {
+			tag.remove(name);
+		} else {
+			tag.put(name, t);
+		}
+	}
+
+	@Override
+	public void put(int index, Scriptable start, Object value) {
+		put(Integer.toString(index), start, value);
+	}
+
+	@Override
+	public Object[] getIds() {
+		return tag.getAllKeys().toArray();
+	}
+
+	@Override
+	public void delete(String name) {
+		Deletable.deleteObject(tag.get(name));
+		tag.remove(name);
+	}
+
+	@Override
+	public void delete(int index) {
+		delete(Integer.toString(index));
+	}
+
+	@Override
+	protected void initMembers() {
+		super.initMembers();
+		addCustomFunction("hasOwnProperty", this::hasOwnProperty, String.class);
+	}
+
+	private boolean hasOwnProperty(Object[] args) {
+		return tag.contains(ScriptRuntime.toString(args[0]));
+	}
+
+	/**
+	 * Convert a child tag to its script value. Strings and numbers are unwrapped,
+	 * compound and collection tags get a view of their own.
+	 */
+	static Object wrapTag(Scriptable scope, Tag t) {
+		Object obj = NBTWrapper.fromTag(t);
+
+		if (obj == null) {
+			return null;
+		}
+
+		Context cx = Context.getContext();
+		return cx.getWrapFactory().wrap(cx, scope, obj, obj.getClass());
+	}
+}
@@ -0,0 +1,22 @@
+package dev.latvian.mods.rhino.util.unit;
+
+/**
+ * Base class of the units generated by {@link UnitCompiler}.
+ */
+public abstract class CompiledUnit extends Unit {
+	public final Unit source;
+
+	protected CompiledUnit(Unit s) {
+		source = s;
+	}
+
+	@Override
+	public void append(StringBuilder sb) {
+		source.append(sb);
+	}
+
+	@Override
+	public Unit compile() {
+		return this;
+	}
+}
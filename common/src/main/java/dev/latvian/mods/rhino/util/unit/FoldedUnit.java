@@ -0,0 +1,25 @@
+package dev.latvian.mods.rhino.util.unit;
+
+/**
+ * Value of a constant tree that keeps the tree for its text. It isn't fixed, so
+ * fixed unit arithmetic doesn't fold it further, only {@link UnitCompiler#fold(Unit)} does.
+ */
+final class FoldedUnit extends Unit {
+	private final Unit unit;
+	private final float value;
+
+	FoldedUnit(Unit u, float v) {
+		unit = u;
+		value = v;
+	}
+
+	@Override
+	public float get() {
+		return value;
+	}
+
+	@Override
+	public void append(StringBuilder sb) {
+		unit.append(sb);
+	}
+}
@@ -1,9 +1,9 @@
 package dev.latvian.mods.rhino.util.unit;
 
 public class IfUnit extends Unit {
-	private final Unit statement;
-	private final Unit trueUnit;
-	private final Unit falseUnit;
+	public final Unit statement;
+	public final Unit trueUnit;
+	public final Unit falseUnit;
 
 	public IfUnit(Unit s, Unit t, Unit f) {
 		statement = s;
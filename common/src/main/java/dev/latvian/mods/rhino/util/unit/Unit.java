@@ -171,4 +171,12 @@ public abstract class Unit {
 	public Unit toBool() {
 		return new BoolUnit(this);
 	}
+
+	/**
+	 * @return unit that evaluates the same as this one, compiled into a single class
+	 * @see UnitCompiler
+	 */
+	public Unit compile() {
+		return UnitCompiler.compile(this);
+	}
 }
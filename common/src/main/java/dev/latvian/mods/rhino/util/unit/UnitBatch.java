@@ -0,0 +1,614 @@
+package dev.latvian.mods.rhino.util.unit;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates a unit for many sets of variables at once.
+ * <p>
+ * Instead of walking the tree once per element, every node is evaluated
+ * once for all elements, as a plain loop over arrays that the JIT can
+ * vectorize. Variables are taken from the arrays bound to their name,
+ * units the batch doesn't know are called once per element.
+ * <p>
+ * All operands are evaluated for every element, including the branch of
+ * if() and the right side of && and || that a single evaluation would skip.
+ * An int remainder by zero gives 0 instead of throwing ArithmeticException.
+ * The temporary arrays are kept between calls, so a batch should be reused
+ * and only used by one thread at a time.
+ */
+public final class UnitBatch {
+	public final Unit unit;
+	// Subtrees that always have the same value, and squares of units that must be evaluated twice
+	private final Set<Unit> fixedUnits = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final Set<Unit> impureSquares = Collections.newSetFromMap(new IdentityHashMap<>());
+	private float[][] floatBuffers = new float[4][];
+	private int[][] intBuffers = new int[4][];
+	private int floatTop;
+	private int intTop;
+	private Map<String, float[]> variables;
+	private int count;
+
+	public UnitBatch(Unit u) {
+		unit = u;
+		analyze(u);
+	}
+
+	private void analyze(Unit u) {
+		if (UnitCompiler.isFoldable(u)) {
+			fixedUnits.add(u);
+		} else if (!isCalled(u)) {
+			if (u instanceof SqUnit sq && !UnitCompiler.isPure(sq.unit)) {
+				impureSquares.add(u);
+			}
+
+			for (Unit child : UnitCompiler.getChildren(u)) {
+				analyze(child);
+			}
+		}
+	}
+
+	/**
+	 * @param variables values of variables by name, at least as long as the output
+	 * @param out       receives the value of the unit for each element
+	 */
+	public void evaluate(Map<String, float[]> variables, float[] out) {
+		evaluate(variables, out, out.length);
+	}
+
+	public void evaluate(Map<String, float[]> variables, float[] out, int count) {
+		this.variables = variables;
+		this.count = count;
+
+		try {
+			evalFloat(unit, out);
+		} finally {
+			this.variables = null;
+			floatTop = 0;
+			intTop = 0;
+		}
+	}
+
+	private float[] acquireFloats() {
+		if (floatTop == floatBuffers.length) {
+			floatBuffers = Arrays.copyOf(floatBuffers, floatTop * 2);
+		}
+
+		float[] buffer = floatBuffers[floatTop];
+
+		if (buffer == null || buffer.length < count) {
+			floatBuffers[floatTop] = buffer = new float[count];
+		}
+
+		floatTop++;
+		return buffer;
+	}
+
+	private int[] acquireInts() {
+		if (intTop == intBuffers.length) {
+			intBuffers = Arrays.copyOf(intBuffers, intTop * 2);
+		}
+
+		int[] buffer = intBuffers[intTop];
+
+		if (buffer == null || buffer.length < count) {
+			intBuffers[intTop] = buffer = new int[count];
+		}
+
+		intTop++;
+		return buffer;
+	}
+
+	private float[] getVariable(Unit u) {
+		return u instanceof VariableUnit v && u.getClass() == VariableUnit.class ? variables.get(v.key) : null;
+	}
+
+	private static boolean isCalled(Unit u) {
+		return !UnitCompiler.KNOWN_UNITS.contains(u.getClass());
+	}
+
+	private void evalFloat(Unit u, float[] dst) {
+		int n = count;
+
+		if (fixedUnits.contains(u)) {
+			Arrays.fill(dst, 0, n, u.get());
+			return;
+		}
+
+		float[] column = getVariable(u);
+
+		if (column != null) {
+			System.arraycopy(column, 0, dst, 0, n);
+			return;
+		} else if (isCalled(u)) {
+			for (int i = 0; i < n; i++) {
+				dst[i] = u.get();
+			}
+
+			return;
+		}
+
+		if (u instanceof OpUnit op && !(u instanceof ShiftLeftUnit || u instanceof ShiftRightUnit || u instanceof AndUnit || u instanceof OrUnit || u instanceof XorUnit)) {
+			evalFloat(op.unit, dst);
+			float[] b = acquireFloats();
+			evalFloat(op.with, b);
+
+			if (u instanceof AddUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] += b[i];
+				}
+			} else if (u instanceof SubUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] -= b[i];
+				}
+			} else if (u instanceof MulUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] *= b[i];
+				}
+			} else if (u instanceof DivUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] /= b[i];
+				}
+			} else if (u instanceof ModUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] %= b[i];
+				}
+			} else if (u instanceof PowUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = (float) Math.pow(dst[i], b[i]);
+				}
+			} else if (u instanceof EqUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = dst[i] == b[i] ? 1F : 0F;
+				}
+			} else if (u instanceof NeqUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = dst[i] == b[i] ? 0F : 1F;
+				}
+			} else if (u instanceof GtUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = dst[i] > b[i] ? 1F : 0F;
+				}
+			} else if (u instanceof LtUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = dst[i] < b[i] ? 1F : 0F;
+				}
+			} else if (u instanceof GteUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = dst[i] >= b[i] ? 1F : 0F;
+				}
+			} else if (u instanceof LteUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = dst[i] <= b[i] ? 1F : 0F;
+				}
+			}
+
+			floatTop--;
+		} else if (u instanceof Func2Unit func) {
+			evalFloat(func.unit, dst);
+			float[] b = acquireFloats();
+			evalFloat(func.with, b);
+
+			if (u instanceof MinUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = Math.min(dst[i], b[i]);
+				}
+			} else if (u instanceof MaxUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = Math.max(dst[i], b[i]);
+				}
+			} else if (u instanceof Atan2Unit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = (float) Math.atan2(dst[i], b[i]);
+				}
+			}
+
+			floatTop--;
+		} else if (impureSquares.contains(u) && u instanceof SqUnit sq) {
+			// The unit is evaluated twice, like SqUnit does
+			evalFloat(sq.unit, dst);
+			float[] b = acquireFloats();
+			evalFloat(sq.unit, b);
+
+			for (int i = 0; i < n; i++) {
+				dst[i] *= b[i];
+			}
+
+			floatTop--;
+		} else if (u instanceof Func1Unit func && !(u instanceof BoolUnit)) {
+			evalFloat(func.unit, dst);
+
+			if (u instanceof AbsUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = Math.abs(dst[i]);
+				}
+			} else if (u instanceof SinUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = (float) Math.sin(dst[i]);
+				}
+			} else if (u instanceof CosUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = (float) Math.cos(dst[i]);
+				}
+			} else if (u instanceof TanUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = (float) Math.tan(dst[i]);
+				}
+			} else if (u instanceof AtanUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = (float) Math.atan(dst[i]);
+				}
+			} else if (u instanceof DegUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = (float) Math.toDegrees(dst[i]);
+				}
+			} else if (u instanceof RadUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = (float) Math.toRadians(dst[i]);
+				}
+			} else if (u instanceof LogUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = (float) Math.log(dst[i]);
+				}
+			} else if (u instanceof Log10Unit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = (float) Math.log10(dst[i]);
+				}
+			} else if (u instanceof Log1pUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = (float) Math.log1p(dst[i]);
+				}
+			} else if (u instanceof SqrtUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = (float) Math.sqrt(dst[i]);
+				}
+			} else if (u instanceof SqUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] *= dst[i];
+				}
+			} else if (u instanceof FloorUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = FloorUnit.floor(dst[i]);
+				}
+			} else if (u instanceof CeilUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = CeilUnit.ceil(dst[i]);
+				}
+			}
+		} else if (u instanceof NegUnit neg) {
+			evalFloat(neg.unit, dst);
+
+			for (int i = 0; i < n; i++) {
+				float f = dst[i];
+				dst[i] = f == 0F ? 0F : -f;
+			}
+		} else if (u instanceof IfUnit ifUnit) {
+			int[] statement = acquireInts();
+			evalBoolean(ifUnit.statement, statement);
+			evalFloat(ifUnit.trueUnit, dst);
+			float[] b = acquireFloats();
+			evalFloat(ifUnit.falseUnit, b);
+
+			for (int i = 0; i < n; i++) {
+				dst[i] = statement[i] != 0 ? dst[i] : b[i];
+			}
+
+			floatTop--;
+			intTop--;
+		} else {
+			// Units that compute with ints or booleans
+			int[] a = acquireInts();
+
+			if (u instanceof BoolUnit) {
+				evalBoolean(u, a);
+			} else {
+				evalInt(u, a);
+			}
+
+			for (int i = 0; i < n; i++) {
+				dst[i] = a[i];
+			}
+
+			intTop--;
+		}
+	}
+
+	private void evalInt(Unit u, int[] dst) {
+		int n = count;
+
+		if (fixedUnits.contains(u)) {
+			Arrays.fill(dst, 0, n, u.getAsInt());
+			return;
+		} else if (getVariable(u) == null && isCalled(u)) {
+			for (int i = 0; i < n; i++) {
+				dst[i] = u.getAsInt();
+			}
+
+			return;
+		}
+
+		if (u instanceof AddUnit || u instanceof SubUnit || u instanceof MulUnit || u instanceof ModUnit || u instanceof ShiftLeftUnit || u instanceof ShiftRightUnit || u instanceof AndUnit || u instanceof OrUnit || u instanceof XorUnit || u instanceof EqUnit || u instanceof NeqUnit || u instanceof GtUnit || u instanceof LtUnit || u instanceof GteUnit || u instanceof LteUnit) {
+			OpUnit op = (OpUnit) u;
+			evalInt(op.unit, dst);
+			int[] b = acquireInts();
+			evalInt(op.with, b);
+
+			if (u instanceof AddUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] += b[i];
+				}
+			} else if (u instanceof SubUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] -= b[i];
+				}
+			} else if (u instanceof MulUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] *= b[i];
+				}
+			} else if (u instanceof ModUnit) {
+				// The remainder may belong to a branch a single evaluation skips, so don't throw
+				for (int i = 0; i < n; i++) {
+					dst[i] = b[i] == 0 ? 0 : dst[i] % b[i];
+				}
+			} else if (u instanceof ShiftLeftUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] <<= b[i];
+				}
+			} else if (u instanceof ShiftRightUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] >>= b[i];
+				}
+			} else if (u instanceof AndUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] &= b[i];
+				}
+			} else if (u instanceof OrUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] |= b[i];
+				}
+			} else if (u instanceof XorUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] ^= b[i];
+				}
+			} else if (u instanceof EqUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = dst[i] == b[i] ? 1 : 0;
+				}
+			} else if (u instanceof NeqUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = dst[i] == b[i] ? 0 : 1;
+				}
+			} else if (u instanceof GtUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = dst[i] > b[i] ? 1 : 0;
+				}
+			} else if (u instanceof LtUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = dst[i] < b[i] ? 1 : 0;
+				}
+			} else if (u instanceof GteUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = dst[i] >= b[i] ? 1 : 0;
+				}
+			} else {
+				for (int i = 0; i < n; i++) {
+					dst[i] = dst[i] <= b[i] ? 1 : 0;
+				}
+			}
+
+			intTop--;
+		} else if (u instanceof MinUnit || u instanceof MaxUnit) {
+			Func2Unit func = (Func2Unit) u;
+			evalInt(func.unit, dst);
+			int[] b = acquireInts();
+			evalInt(func.with, b);
+
+			if (u instanceof MinUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = Math.min(dst[i], b[i]);
+				}
+			} else {
+				for (int i = 0; i < n; i++) {
+					dst[i] = Math.max(dst[i], b[i]);
+				}
+			}
+
+			intTop--;
+		} else if (u instanceof AbsUnit abs) {
+			evalInt(abs.unit, dst);
+
+			for (int i = 0; i < n; i++) {
+				dst[i] = Math.abs(dst[i]);
+			}
+		} else if (u instanceof SqUnit sq) {
+			evalInt(sq.unit, dst);
+
+			if (!impureSquares.contains(u)) {
+				for (int i = 0; i < n; i++) {
+					dst[i] *= dst[i];
+				}
+			} else {
+				int[] b = acquireInts();
+				evalInt(sq.unit, b);
+
+				for (int i = 0; i < n; i++) {
+					dst[i] *= b[i];
+				}
+
+				intTop--;
+			}
+		} else if (u instanceof NegUnit neg) {
+			evalInt(neg.unit, dst);
+
+			for (int i = 0; i < n; i++) {
+				dst[i] = -dst[i];
+			}
+		} else if (u instanceof NotUnit not) {
+			evalInt(not.unit, dst);
+
+			for (int i = 0; i < n; i++) {
+				dst[i] = ~dst[i];
+			}
+		} else if (u instanceof BoolUnit) {
+			evalBoolean(u, dst);
+		} else if (u instanceof IfUnit ifUnit) {
+			int[] statement = acquireInts();
+			evalBoolean(ifUnit.statement, statement);
+			evalInt(ifUnit.trueUnit, dst);
+			int[] b = acquireInts();
+			evalInt(ifUnit.falseUnit, b);
+
+			for (int i = 0; i < n; i++) {
+				dst[i] = statement[i] != 0 ? dst[i] : b[i];
+			}
+
+			intTop -= 2;
+		} else if (u instanceof ColorUnit color) {
+			evalColorComponent(color.r, dst, 16);
+			int[] b = acquireInts();
+			evalColorComponent(color.g, b, 8);
+
+			for (int i = 0; i < n; i++) {
+				dst[i] |= b[i];
+			}
+
+			evalColorComponent(color.b, b, 0);
+
+			for (int i = 0; i < n; i++) {
+				dst[i] |= b[i];
+			}
+
+			if (color.a == null) {
+				for (int i = 0; i < n; i++) {
+					dst[i] |= 0xFF000000;
+				}
+			} else {
+				evalColorComponent(color.a, b, 24);
+
+				for (int i = 0; i < n; i++) {
+					dst[i] |= b[i];
+				}
+			}
+
+			intTop--;
+		} else {
+			// Unit doesn't override getAsInt()
+			float[] a = acquireFloats();
+			evalFloat(u, a);
+
+			for (int i = 0; i < n; i++) {
+				dst[i] = (int) a[i];
+			}
+
+			floatTop--;
+		}
+	}
+
+	private void evalColorComponent(Unit u, int[] dst, int shift) {
+		evalInt(u, dst);
+
+		for (int i = 0; i < count; i++) {
+			dst[i] = Math.min(Math.max(0, dst[i]), 255) << shift;
+		}
+	}
+
+	/**
+	 * Booleans are stored as 1 and 0.
+	 */
+	private void evalBoolean(Unit u, int[] dst) {
+		int n = count;
+
+		if (fixedUnits.contains(u)) {
+			Arrays.fill(dst, 0, n, u.getAsBoolean() ? 1 : 0);
+			return;
+		} else if (getVariable(u) == null && isCalled(u)) {
+			for (int i = 0; i < n; i++) {
+				dst[i] = u.getAsBoolean() ? 1 : 0;
+			}
+
+			return;
+		}
+
+		if (u instanceof AndUnit || u instanceof OrUnit || u instanceof XorUnit || u instanceof EqUnit || u instanceof NeqUnit) {
+			OpUnit op = (OpUnit) u;
+			evalBoolean(op.unit, dst);
+			int[] b = acquireInts();
+			evalBoolean(op.with, b);
+
+			if (u instanceof AndUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] &= b[i];
+				}
+			} else if (u instanceof OrUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] |= b[i];
+				}
+			} else if (u instanceof EqUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = dst[i] == b[i] ? 1 : 0;
+				}
+			} else {
+				for (int i = 0; i < n; i++) {
+					dst[i] ^= b[i];
+				}
+			}
+
+			intTop--;
+		} else if (u instanceof GtUnit || u instanceof LtUnit || u instanceof GteUnit || u instanceof LteUnit) {
+			OpUnit op = (OpUnit) u;
+			float[] a = acquireFloats();
+			evalFloat(op.unit, a);
+			float[] b = acquireFloats();
+			evalFloat(op.with, b);
+
+			if (u instanceof GtUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = a[i] > b[i] ? 1 : 0;
+				}
+			} else if (u instanceof LtUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = a[i] < b[i] ? 1 : 0;
+				}
+			} else if (u instanceof GteUnit) {
+				for (int i = 0; i < n; i++) {
+					dst[i] = a[i] >= b[i] ? 1 : 0;
+				}
+			} else {
+				for (int i = 0; i < n; i++) {
+					dst[i] = a[i] <= b[i] ? 1 : 0;
+				}
+			}
+
+			floatTop -= 2;
+		} else if (u instanceof NotUnit not) {
+			evalBoolean(not.unit, dst);
+
+			for (int i = 0; i < n; i++) {
+				dst[i] ^= 1;
+			}
+		} else if (u instanceof BoolUnit bool) {
+			evalBoolean(bool.unit, dst);
+		} else if (u instanceof IfUnit ifUnit) {
+			evalBoolean(ifUnit.statement, dst);
+		} else if (u instanceof ColorUnit) {
+			evalInt(u, dst);
+
+			for (int i = 0; i < n; i++) {
+				dst[i] = dst[i] != 0 ? 1 : 0;
+			}
+		} else {
+			// Unit doesn't override getAsBoolean()
+			float[] a = acquireFloats();
+			evalFloat(u, a);
+
+			for (int i = 0; i < n; i++) {
+				dst[i] = a[i] != 0F ? 1 : 0;
+			}
+
+			floatTop--;
+		}
+	}
+}
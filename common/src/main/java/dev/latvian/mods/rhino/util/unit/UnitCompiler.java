@@ -0,0 +1,622 @@
+package dev.latvian.mods.rhino.util.unit;
+
+import dev.latvian.mods.rhino.DefiningClassLoader;
+import dev.latvian.mods.rhino.classfile.ByteCode;
+import dev.latvian.mods.rhino.classfile.ClassFileWriter;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiles a tree of units into a generated {@link CompiledUnit}, so that
+ * evaluating an expression is one call the JIT can inline instead of a
+ * virtual call for every node.
+ * <p>
+ * The generated get(), getAsInt() and getAsBoolean() do exactly what the
+ * tree does, including the int and boolean variants of each unit. Subtrees
+ * that only depend on fixed units are evaluated once at compile time. Units
+ * the compiler doesn't know, like variables or subclasses of the built-in
+ * units, are called as they are.
+ */
+public final class UnitCompiler {
+	private static final String UNIT = "dev/latvian/mods/rhino/util/unit/Unit";
+	private static final String UNIT_ARRAY = "[L" + UNIT + ";";
+	private static final String COMPILED_UNIT = "dev/latvian/mods/rhino/util/unit/CompiledUnit";
+	private static final String FLOOR_UNIT = "dev/latvian/mods/rhino/util/unit/FloorUnit";
+	private static final String CEIL_UNIT = "dev/latvian/mods/rhino/util/unit/CeilUnit";
+
+	private static final int FLOAT = 0;
+	private static final int INT = 1;
+	private static final int BOOLEAN = 2;
+
+	/**
+	 * Larger trees are left alone so generated methods stay well below the
+	 * 64K code limit of class files.
+	 */
+	private static final int MAX_NODES = 2048;
+
+	static final Set<Class<?>> KNOWN_UNITS = Set.of(
+			AddUnit.class, SubUnit.class, MulUnit.class, DivUnit.class, ModUnit.class, PowUnit.class,
+			ShiftLeftUnit.class, ShiftRightUnit.class, AndUnit.class, OrUnit.class, XorUnit.class,
+			EqUnit.class, NeqUnit.class, GtUnit.class, LtUnit.class, GteUnit.class, LteUnit.class,
+			NegUnit.class, NotUnit.class, BoolUnit.class, IfUnit.class, ColorUnit.class,
+			AbsUnit.class, MinUnit.class, MaxUnit.class, SinUnit.class, CosUnit.class, TanUnit.class,
+			AtanUnit.class, Atan2Unit.class, DegUnit.class, RadUnit.class, LogUnit.class, Log10Unit.class,
+			Log1pUnit.class, SqrtUnit.class, SqUnit.class, FloorUnit.class, CeilUnit.class
+	);
+
+	private static final AtomicInteger classSerial = new AtomicInteger();
+
+	/**
+	 * @return the compiled unit, a constant unit if the whole tree is constant,
+	 * or the unit itself if it can't be compiled
+	 */
+	public static Unit compile(Unit unit) {
+		if (unit instanceof CompiledUnit || unit.isFixed() || isConstant(unit)) {
+			return unit;
+		} else if (isFoldable(unit)) {
+			Unit folded = fold(unit);
+
+			if (folded != unit) {
+				return folded;
+			}
+		} else if (countNodes(unit) > MAX_NODES) {
+			return unit;
+		}
+
+		UnitCompiler compiler = new UnitCompiler();
+		String className = "compiledUnit" + classSerial.incrementAndGet();
+
+		try {
+			byte[] bytes = compiler.generateClass(className, unit);
+			DefiningClassLoader loader = new DefiningClassLoader(UnitCompiler.class.getClassLoader());
+			Class<?> c = loader.defineClass(className, bytes);
+			loader.linkClass(c);
+			return (Unit) c.getConstructor(Unit.class, Unit[].class).newInstance(unit, compiler.units.toArray(new Unit[0]));
+		} catch (ClassFileWriter.ClassFileFormatException | LinkageError | ReflectiveOperationException ex) {
+			return unit;
+		}
+	}
+
+	/**
+	 * @return unit with the value and the text of the unit if it is a built-in unit of
+	 * only fixed units, and its int and boolean values follow from the float one
+	 */
+	static Unit fold(Unit unit) {
+		if (isConstant(unit) || !isFoldable(unit)) {
+			return unit;
+		}
+
+		try {
+			float value = unit.get();
+
+			if ((int) value == unit.getAsInt() && (value != 0F) == unit.getAsBoolean()) {
+				return new FoldedUnit(unit, value);
+			}
+		} catch (ArithmeticException ex) {
+			// Integer division by zero, leave it to happen when the unit is used
+		}
+
+		return unit;
+	}
+
+	private static boolean isConstant(Unit u) {
+		return u.getClass() == FixedUnit.class || u.getClass() == ConstantUnit.class || u.getClass() == FoldedUnit.class;
+	}
+
+	static Unit[] getChildren(Unit u) {
+		if (u instanceof OpUnit op) {
+			return new Unit[]{op.unit, op.with};
+		} else if (u instanceof Func2Unit func) {
+			return new Unit[]{func.unit, func.with};
+		} else if (u instanceof Func1Unit func) {
+			return new Unit[]{func.unit};
+		} else if (u instanceof SpecialOpUnit op) {
+			return new Unit[]{op.unit};
+		} else if (u instanceof IfUnit ifUnit) {
+			return new Unit[]{ifUnit.statement, ifUnit.trueUnit, ifUnit.falseUnit};
+		} else if (u instanceof ColorUnit color) {
+			return color.a == null ? new Unit[]{color.r, color.g, color.b} : new Unit[]{color.r, color.g, color.b, color.a};
+		}
+
+		return new Unit[0];
+	}
+
+	/**
+	 * @return true if the unit always evaluates to the same value
+	 */
+	static boolean isFoldable(Unit u) {
+		if (isConstant(u)) {
+			return true;
+		} else if (!KNOWN_UNITS.contains(u.getClass())) {
+			return false;
+		}
+
+		for (Unit child : getChildren(u)) {
+			if (!isFoldable(child)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return true if evaluating the unit twice can be replaced by evaluating it once
+	 */
+	static boolean isPure(Unit u) {
+		if (u.getClass() == MutableUnit.class) {
+			return true;
+		} else if (!isConstant(u) && !KNOWN_UNITS.contains(u.getClass())) {
+			// May be random or change on every call
+			return false;
+		}
+
+		for (Unit child : getChildren(u)) {
+			if (!isPure(child)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static int countNodes(Unit u) {
+		if (!KNOWN_UNITS.contains(u.getClass())) {
+			return 1;
+		}
+
+		int count = 1;
+
+		for (Unit child : getChildren(u)) {
+			count += countNodes(child);
+		}
+
+		// Squares may evaluate their unit twice
+		return u instanceof SqUnit ? count * 2 : count;
+	}
+
+	private ClassFileWriter cfw;
+	private String internalName;
+	private final List<Unit> units = new ArrayList<>();
+	private final Map<Unit, Integer> unitIndices = new IdentityHashMap<>();
+
+	private UnitCompiler() {
+	}
+
+	private byte[] generateClass(String className, Unit unit) {
+		cfw = new ClassFileWriter(className, COMPILED_UNIT.replace('/', '.'), "<unit>");
+		cfw.addField("units", UNIT_ARRAY, (short) (ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL));
+		internalName = className.replace('.', '/');
+
+		cfw.startMethod("<init>", "(L" + UNIT + ";" + UNIT_ARRAY + ")V", ClassFileWriter.ACC_PUBLIC);
+		cfw.addALoad(0);
+		cfw.addALoad(1);
+		cfw.addInvoke(ByteCode.INVOKESPECIAL, COMPILED_UNIT, "<init>", "(L" + UNIT + ";)V");
+		cfw.addALoad(0);
+		cfw.addALoad(2);
+		cfw.add(ByteCode.PUTFIELD, internalName, "units", UNIT_ARRAY);
+		cfw.add(ByteCode.RETURN);
+		cfw.stopMethod((short) 3);
+
+		cfw.startMethod("get", "()F", ClassFileWriter.ACC_PUBLIC);
+		emit(unit, FLOAT);
+		cfw.add(ByteCode.FRETURN);
+		cfw.stopMethod((short) 1);
+
+		cfw.startMethod("getAsInt", "()I", ClassFileWriter.ACC_PUBLIC);
+		emit(unit, INT);
+		cfw.add(ByteCode.IRETURN);
+		cfw.stopMethod((short) 1);
+
+		cfw.startMethod("getAsBoolean", "()Z", ClassFileWriter.ACC_PUBLIC);
+		emit(unit, BOOLEAN);
+		cfw.add(ByteCode.IRETURN);
+		cfw.stopMethod((short) 1);
+
+		return cfw.toByteArray();
+	}
+
+	/**
+	 * Push the value of the unit as float, int or boolean.
+	 */
+	private void emit(Unit u, int mode) {
+		if (isFoldable(u) && emitConstant(u, mode)) {
+			return;
+		}
+
+		if (!KNOWN_UNITS.contains(u.getClass())) {
+			emitCall(u, mode);
+		} else if (!emitKnown(u, mode)) {
+			// Unit doesn't override getAsInt() or getAsBoolean(), convert like Unit does
+			emitKnown(u, FLOAT);
+
+			if (mode == INT) {
+				cfw.add(ByteCode.F2I);
+			} else {
+				cfw.add(ByteCode.FCONST_0);
+				cfw.add(ByteCode.FCMPL);
+				pushBoolean(ByteCode.IFNE);
+			}
+		}
+	}
+
+	private boolean emitConstant(Unit u, int mode) {
+		try {
+			switch (mode) {
+				case FLOAT -> {
+					float value = u.get();
+					cfw.addLoadConstant(value);
+				}
+				case INT -> {
+					int value = u.getAsInt();
+					cfw.addPush(value);
+				}
+				default -> {
+					boolean value = u.getAsBoolean();
+					cfw.addPush(value);
+				}
+			}
+
+			return true;
+		} catch (ArithmeticException ex) {
+			return false;
+		}
+	}
+
+	private void emitCall(Unit u, int mode) {
+		Integer index = unitIndices.get(u);
+
+		if (index == null) {
+			index = units.size();
+			units.add(u);
+			unitIndices.put(u, index);
+		}
+
+		cfw.addALoad(0);
+		cfw.add(ByteCode.GETFIELD, internalName, "units", UNIT_ARRAY);
+		cfw.addPush(index);
+		cfw.add(ByteCode.AALOAD);
+
+		switch (mode) {
+			case FLOAT -> cfw.addInvoke(ByteCode.INVOKEVIRTUAL, UNIT, "get", "()F");
+			case INT -> cfw.addInvoke(ByteCode.INVOKEVIRTUAL, UNIT, "getAsInt", "()I");
+			default -> cfw.addInvoke(ByteCode.INVOKEVIRTUAL, UNIT, "getAsBoolean", "()Z");
+		}
+	}
+
+	/**
+	 * @return false if the unit inherits the method for this mode from {@link Unit}
+	 */
+	private boolean emitKnown(Unit u, int mode) {
+		if (u instanceof AddUnit op) {
+			return emitArithmetic(op, mode, ByteCode.FADD, ByteCode.IADD);
+		} else if (u instanceof SubUnit op) {
+			return emitArithmetic(op, mode, ByteCode.FSUB, ByteCode.ISUB);
+		} else if (u instanceof MulUnit op) {
+			return emitArithmetic(op, mode, ByteCode.FMUL, ByteCode.IMUL);
+		} else if (u instanceof DivUnit op) {
+			return emitArithmetic(op, mode, ByteCode.FDIV, -1);
+		} else if (u instanceof ModUnit op) {
+			return emitArithmetic(op, mode, ByteCode.FREM, ByteCode.IREM);
+		} else if (u instanceof PowUnit op) {
+			return emitMath(op.unit, op.with, mode, "pow");
+		} else if (u instanceof ShiftLeftUnit op) {
+			return emitBitwise(op, mode, ByteCode.ISHL);
+		} else if (u instanceof ShiftRightUnit op) {
+			return emitBitwise(op, mode, ByteCode.ISHR);
+		} else if (u instanceof AndUnit op) {
+			return emitBitwise(op, mode, ByteCode.IAND);
+		} else if (u instanceof OrUnit op) {
+			return emitBitwise(op, mode, ByteCode.IOR);
+		} else if (u instanceof XorUnit op) {
+			return emitBitwise(op, mode, ByteCode.IXOR);
+		} else if (u instanceof EqUnit op) {
+			return emitEquality(op, mode, ByteCode.IFEQ, ByteCode.IF_ICMPEQ);
+		} else if (u instanceof NeqUnit op) {
+			return emitEquality(op, mode, ByteCode.IFNE, ByteCode.IF_ICMPNE);
+		} else if (u instanceof GtUnit op) {
+			return emitComparison(op, mode, ByteCode.FCMPL, ByteCode.IFGT, ByteCode.IF_ICMPGT);
+		} else if (u instanceof LtUnit op) {
+			return emitComparison(op, mode, ByteCode.FCMPG, ByteCode.IFLT, ByteCode.IF_ICMPLT);
+		} else if (u instanceof GteUnit op) {
+			return emitComparison(op, mode, ByteCode.FCMPL, ByteCode.IFGE, ByteCode.IF_ICMPGE);
+		} else if (u instanceof LteUnit op) {
+			return emitComparison(op, mode, ByteCode.FCMPG, ByteCode.IFLE, ByteCode.IF_ICMPLE);
+		} else if (u instanceof NegUnit op) {
+			if (mode == FLOAT) {
+				// 0F - f is -f except that both zeros become 0F, like NegUnit
+				cfw.add(ByteCode.FCONST_0);
+				emit(op.unit, FLOAT);
+				cfw.add(ByteCode.FSUB);
+				return true;
+			} else if (mode == INT) {
+				emit(op.unit, INT);
+				cfw.add(ByteCode.INEG);
+				return true;
+			}
+
+			return false;
+		} else if (u instanceof NotUnit op) {
+			if (mode == BOOLEAN) {
+				emit(op.unit, BOOLEAN);
+				cfw.add(ByteCode.ICONST_1);
+				cfw.add(ByteCode.IXOR);
+			} else {
+				emit(op.unit, INT);
+				cfw.add(ByteCode.ICONST_M1);
+				cfw.add(ByteCode.IXOR);
+
+				if (mode == FLOAT) {
+					cfw.add(ByteCode.I2F);
+				}
+			}
+
+			return true;
+		} else if (u instanceof BoolUnit op) {
+			emit(op.unit, BOOLEAN);
+
+			if (mode == FLOAT) {
+				cfw.add(ByteCode.I2F);
+			}
+
+			return true;
+		} else if (u instanceof IfUnit op) {
+			emit(op.statement, BOOLEAN);
+
+			if (mode == BOOLEAN) {
+				return true;
+			}
+
+			int elseLabel = cfw.acquireLabel();
+			int endLabel = cfw.acquireLabel();
+			cfw.add(ByteCode.IFEQ, elseLabel);
+			short top = cfw.getStackTop();
+			emit(op.trueUnit, mode);
+			cfw.add(ByteCode.GOTO, endLabel);
+			cfw.markLabel(elseLabel, top);
+			emit(op.falseUnit, mode);
+			cfw.markLabel(endLabel);
+			return true;
+		} else if (u instanceof ColorUnit op) {
+			emitColorComponent(op.r);
+			cfw.addPush(16);
+			cfw.add(ByteCode.ISHL);
+			emitColorComponent(op.g);
+			cfw.addPush(8);
+			cfw.add(ByteCode.ISHL);
+			cfw.add(ByteCode.IOR);
+			emitColorComponent(op.b);
+			cfw.add(ByteCode.IOR);
+
+			if (op.a == null) {
+				cfw.addPush(0xFF000000);
+			} else {
+				emitColorComponent(op.a);
+				cfw.addPush(24);
+				cfw.add(ByteCode.ISHL);
+			}
+
+			cfw.add(ByteCode.IOR);
+
+			if (mode == FLOAT) {
+				cfw.add(ByteCode.I2F);
+			} else if (mode == BOOLEAN) {
+				pushBoolean(ByteCode.IFNE);
+			}
+
+			return true;
+		} else if (u instanceof AbsUnit op) {
+			return emitIntOrFloat(op.unit, null, mode, "abs");
+		} else if (u instanceof MinUnit op) {
+			return emitIntOrFloat(op.unit, op.with, mode, "min");
+		} else if (u instanceof MaxUnit op) {
+			return emitIntOrFloat(op.unit, op.with, mode, "max");
+		} else if (u instanceof SinUnit op) {
+			return emitMath(op.unit, null, mode, "sin");
+		} else if (u instanceof CosUnit op) {
+			return emitMath(op.unit, null, mode, "cos");
+		} else if (u instanceof TanUnit op) {
+			return emitMath(op.unit, null, mode, "tan");
+		} else if (u instanceof AtanUnit op) {
+			return emitMath(op.unit, null, mode, "atan");
+		} else if (u instanceof Atan2Unit op) {
+			return emitMath(op.unit, op.with, mode, "atan2");
+		} else if (u instanceof DegUnit op) {
+			return emitMath(op.unit, null, mode, "toDegrees");
+		} else if (u instanceof RadUnit op) {
+			return emitMath(op.unit, null, mode, "toRadians");
+		} else if (u instanceof LogUnit op) {
+			return emitMath(op.unit, null, mode, "log");
+		} else if (u instanceof Log10Unit op) {
+			return emitMath(op.unit, null, mode, "log10");
+		} else if (u instanceof Log1pUnit op) {
+			return emitMath(op.unit, null, mode, "log1p");
+		} else if (u instanceof SqrtUnit op) {
+			return emitMath(op.unit, null, mode, "sqrt");
+		} else if (u instanceof SqUnit op) {
+			if (mode == BOOLEAN) {
+				return false;
+			}
+
+			emit(op.unit, mode);
+
+			if (isPure(op.unit)) {
+				cfw.add(ByteCode.DUP);
+			} else {
+				emit(op.unit, mode);
+			}
+
+			cfw.add(mode == FLOAT ? ByteCode.FMUL : ByteCode.IMUL);
+			return true;
+		} else if (u instanceof FloorUnit op) {
+			return emitRound(op.unit, mode, FLOOR_UNIT, "floor");
+		} else if (u instanceof CeilUnit op) {
+			return emitRound(op.unit, mode, CEIL_UNIT, "ceil");
+		}
+
+		throw new IllegalStateException("Unknown unit " + u.getClass().getName());
+	}
+
+	private boolean emitArithmetic(OpUnit op, int mode, int floatOp, int intOp) {
+		if (mode == FLOAT) {
+			emit(op.unit, FLOAT);
+			emit(op.with, FLOAT);
+			cfw.add(floatOp);
+			return true;
+		} else if (mode == INT && intOp != -1) {
+			emit(op.unit, INT);
+			emit(op.with, INT);
+			cfw.add(intOp);
+			return true;
+		}
+
+		return false;
+	}
+
+	private boolean emitBitwise(OpUnit op, int mode, int intOp) {
+		if (mode == BOOLEAN) {
+			if (intOp == ByteCode.IAND || intOp == ByteCode.IOR) {
+				// && and || don't evaluate the right side if the left one decides
+				int shortLabel = cfw.acquireLabel();
+				int endLabel = cfw.acquireLabel();
+				emit(op.unit, BOOLEAN);
+				cfw.add(intOp == ByteCode.IAND ? ByteCode.IFEQ : ByteCode.IFNE, shortLabel);
+				short top = cfw.getStackTop();
+				emit(op.with, BOOLEAN);
+				cfw.add(ByteCode.GOTO, endLabel);
+				cfw.markLabel(shortLabel, top);
+				cfw.addPush(intOp == ByteCode.IOR);
+				cfw.markLabel(endLabel);
+				return true;
+			} else if (intOp == ByteCode.IXOR) {
+				emit(op.unit, BOOLEAN);
+				emit(op.with, BOOLEAN);
+				cfw.add(ByteCode.IXOR);
+				return true;
+			}
+
+			return false;
+		}
+
+		emit(op.unit, INT);
+		emit(op.with, INT);
+		cfw.add(intOp);
+
+		if (mode == FLOAT) {
+			cfw.add(ByteCode.I2F);
+		}
+
+		return true;
+	}
+
+	private boolean emitEquality(OpUnit op, int mode, int floatJump, int intJump) {
+		emit(op.unit, mode);
+		emit(op.with, mode);
+
+		if (mode == FLOAT) {
+			cfw.add(ByteCode.FCMPL);
+			pushBoolean(floatJump);
+			cfw.add(ByteCode.I2F);
+		} else {
+			pushBoolean(intJump);
+		}
+
+		return true;
+	}
+
+	/**
+	 * @param compareOp FCMPL or FCMPG, chosen so that NaN makes the comparison false
+	 */
+	private boolean emitComparison(OpUnit op, int mode, int compareOp, int floatJump, int intJump) {
+		if (mode == INT) {
+			emit(op.unit, INT);
+			emit(op.with, INT);
+			pushBoolean(intJump);
+			return true;
+		}
+
+		emit(op.unit, FLOAT);
+		emit(op.with, FLOAT);
+		cfw.add(compareOp);
+		pushBoolean(floatJump);
+
+		if (mode == FLOAT) {
+			cfw.add(ByteCode.I2F);
+		}
+
+		return true;
+	}
+
+	private boolean emitIntOrFloat(Unit unit, Unit with, int mode, String name) {
+		if (mode == BOOLEAN) {
+			return false;
+		}
+
+		emit(unit, mode);
+
+		if (with != null) {
+			emit(with, mode);
+		}
+
+		String type = mode == FLOAT ? "F" : "I";
+		cfw.addInvoke(ByteCode.INVOKESTATIC, "java/lang/Math", name, "(" + type + (with == null ? "" : type) + ")" + type);
+		return true;
+	}
+
+	private boolean emitMath(Unit unit, Unit with, int mode, String name) {
+		if (mode != FLOAT) {
+			return false;
+		}
+
+		emit(unit, FLOAT);
+		cfw.add(ByteCode.F2D);
+
+		if (with != null) {
+			emit(with, FLOAT);
+			cfw.add(ByteCode.F2D);
+		}
+
+		cfw.addInvoke(ByteCode.INVOKESTATIC, "java/lang/Math", name, with == null ? "(D)D" : "(DD)D");
+		cfw.add(ByteCode.D2F);
+		return true;
+	}
+
+	private boolean emitRound(Unit unit, int mode, String owner, String name) {
+		if (mode != FLOAT) {
+			return false;
+		}
+
+		emit(unit, FLOAT);
+		cfw.addInvoke(ByteCode.INVOKESTATIC, owner, name, "(F)I");
+		cfw.add(ByteCode.I2F);
+		return true;
+	}
+
+	private void emitColorComponent(Unit unit) {
+		emit(unit, INT);
+		cfw.add(ByteCode.ICONST_0);
+		cfw.addInvoke(ByteCode.INVOKESTATIC, "java/lang/Math", "max", "(II)I");
+		cfw.addPush(255);
+		cfw.addInvoke(ByteCode.INVOKESTATIC, "java/lang/Math", "min", "(II)I");
+	}
+
+	/**
+	 * Replace the operands of the jump with 1 if it would jump and 0 otherwise.
+	 */
+	private void pushBoolean(int jumpOp) {
+		int trueLabel = cfw.acquireLabel();
+		int endLabel = cfw.acquireLabel();
+		cfw.add(jumpOp, trueLabel);
+		short top = cfw.getStackTop();
+		cfw.add(ByteCode.ICONST_0);
+		cfw.add(ByteCode.GOTO, endLabel);
+		cfw.markLabel(trueLabel, top);
+		cfw.add(ByteCode.ICONST_1);
+		cfw.markLabel(endLabel);
+	}
+}
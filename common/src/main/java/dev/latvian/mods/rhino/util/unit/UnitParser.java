@@ -123,10 +123,10 @@ class UnitParser {
 			return new VariableUnit(storage, readW());
 		} else if (start == '-') {
 			move();
-			return readUnit().neg();
+			return UnitCompiler.fold(readUnit().neg());
 		} else if (start == '~' || start == '!') {
 			move();
-			return readUnit().not();
+			return UnitCompiler.fold(readUnit().not());
 		} else if (start == '#') {
 			move();
 			String hex = readW();
@@ -3,21 +3,34 @@ package dev.latvian.mods.rhino.util.unit;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public class UnitStorage {
+	public static final int DEFAULT_CACHE_SIZE = 256;
+
 	private final Map<String, Unit> variables;
 	private final Map<String, ConstantUnit> constants;
 	private final Map<String, OpSupplier> operations;
 	private final Map<String, FuncSupplier> functions;
-	private long variableVersion = 0L;
+	private volatile long variableVersion = 0L;
+	// Least recently used parsed units, only valid for cacheVersion
+	private final LinkedHashMap<String, Unit> cache;
+	private int cacheSize = DEFAULT_CACHE_SIZE;
+	private long cacheVersion = 0L;
 
 	public UnitStorage() {
 		variables = new HashMap<>();
 		constants = new HashMap<>();
 		operations = new HashMap<>();
 		functions = new HashMap<>();
+		cache = new LinkedHashMap<>(16, 0.75F, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Unit> eldest) {
+				return size() > cacheSize;
+			}
+		};
 
 		addConstant("PI", (float) Math.PI);
 		addConstant("E", (float) Math.E);
@@ -72,6 +85,7 @@ public class UnitStorage {
 
 	public void clearVariables() {
 		variables.clear();
+		variableVersion++;
 	}
 
 	public void setVariable(String key, Unit unit) {
@@ -90,14 +104,17 @@ public class UnitStorage {
 
 	public void addConstant(String name, float val) {
 		constants.put(name, new ConstantUnit(name, val));
+		clearCache();
 	}
 
 	public void addOp(String name, OpSupplier op) {
 		operations.put(name, op);
+		clearCache();
 	}
 
 	public void addFunc(String name, FuncSupplier func) {
 		functions.put(name, func);
+		clearCache();
 	}
 
 	public void addFunc1(String name, FuncSupplier.Func1 func) {
@@ -116,16 +133,54 @@ public class UnitStorage {
 	@Nullable
 	public Unit createOp(String name, Unit unit, Unit with) {
 		OpSupplier op = operations.get(name);
-		return op == null ? null : op.create(unit, with);
+		return op == null ? null : UnitCompiler.fold(op.create(unit, with));
 	}
 
 	@Nullable
 	public Unit createFunc(String name, List<Unit> args) {
 		FuncSupplier func = functions.get(name);
-		return func == null ? null : func.create(args);
+		return func == null ? null : UnitCompiler.fold(func.create(args));
 	}
 
+	/**
+	 * Parsed units are cached until a variable, constant, operation or function changes,
+	 * so the same string returns the same unit.
+	 */
 	public Unit parse(String string) {
-		return new UnitParser(string, this).parse();
+		synchronized (cache) {
+			if (cacheVersion != variableVersion) {
+				cache.clear();
+				cacheVersion = variableVersion;
+			}
+
+			Unit unit = cache.get(string);
+
+			if (unit == null) {
+				unit = new UnitParser(string, this).parse();
+				cache.put(string, unit);
+			}
+
+			return unit;
+		}
+	}
+
+	public void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @param size maximum number of parsed units to keep, 0 disables the cache
+	 */
+	public void setCacheSize(int size) {
+		synchronized (cache) {
+			cacheSize = Math.max(size, 0);
+			cache.clear();
+		}
+	}
+
+	public int getCacheSize() {
+		return cacheSize;
 	}
 }
@@ -1,10 +1,15 @@
 package dev.latvian.mods.rhino.util.unit;
 
+import org.jetbrains.annotations.Nullable;
+
 public class VariableUnit extends Unit {
+	// Parsed units are cached and shared between threads, so the lookup is replaced as a whole
+	private record Binding(long version, @Nullable Unit unit) {
+	}
+
 	public final UnitStorage unitStorage;
 	public final String key;
-	private Unit unit = null;
-	private long version = -1L;
+	private volatile Binding binding = null;
 
 	public VariableUnit(UnitStorage u, String k) {
 		unitStorage = u;
@@ -14,13 +19,14 @@ public class VariableUnit extends Unit {
 	@Override
 	public float get() {
 		long v = unitStorage.getVariableVersion();
+		Binding b = binding;
 
-		if (version != v) {
-			version = v;
-			unit = unitStorage.getVariable(key);
+		if (b == null || b.version != v) {
+			b = new Binding(v, unitStorage.getVariable(key));
+			binding = b;
 		}
 
-		return unit == null ? 0F : unit.get();
+		return b.unit == null ? 0F : b.unit.get();
 	}
 
 	@Override
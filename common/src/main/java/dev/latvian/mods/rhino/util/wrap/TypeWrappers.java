@@ -83,4 +83,12 @@ public class TypeWrappers {
 
 		return null;
 	}
+
+	/**
+	 * @return true if the wrapper of target only accepts some values, so that whether it applies can't be told from the class of a value alone
+	 */
+	public boolean hasValidator(Class<?> target) {
+		TypeWrapper<?> wrapper = wrappers.get(target);
+		return wrapper != null && wrapper.validator != TypeWrapper.ALWAYS_VALID;
+	}
 }
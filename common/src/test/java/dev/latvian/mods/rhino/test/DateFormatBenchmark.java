@@ -0,0 +1,95 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.Context;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Formats dates from several threads at once, with a shared SimpleDateFormat behind a lock
+ * (how NativeDate used to format), a shared DateTimeFormatter (how it formats now) and
+ * through Date.prototype.toString and toLocaleString in scripts.
+ * <p>
+ * Arguments: thread count, default 8, and dates per thread, default 100000.
+ */
+public class DateFormatBenchmark {
+	private static final String SCRIPT = "let n = 0; for (let i = 0; i < COUNT; i++) { let d = new Date(1.6e12 + i * 25200000); n += d.toString().length + d.toLocaleString().length + d.getHours() } n";
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+
+		DateFormat simpleDateFormat = new SimpleDateFormat("MMMM d, yyyy h:mm:ss a z");
+		DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("MMMM d, yyyy h:mm:ss a z").withZone(ZoneId.systemDefault());
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		try {
+			for (int round = 0; round < 5; round++) {
+				System.out.println("Round " + round);
+
+				run(executor, threads, "synchronized SimpleDateFormat", () -> {
+					long n = 0L;
+
+					for (int i = 0; i < count; i++) {
+						Date date = new Date(1600000000000L + i * 25200000L);
+
+						synchronized (simpleDateFormat) {
+							n += simpleDateFormat.format(date).length();
+						}
+					}
+
+					return n;
+				});
+
+				run(executor, threads, "shared DateTimeFormatter", () -> {
+					long n = 0L;
+
+					for (int i = 0; i < count; i++) {
+						n += dateTimeFormatter.format(Instant.ofEpochMilli(1600000000000L + i * 25200000L)).length();
+					}
+
+					return n;
+				});
+
+				run(executor, threads, "NativeDate in scripts", () -> {
+					Context cx = Context.enterWithNewFactory();
+
+					try {
+						return cx.evaluateString(cx.initStandardObjects(), SCRIPT.replace("COUNT", String.valueOf(count)), "benchmark", 1, null);
+					} finally {
+						Context.exit();
+					}
+				});
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void run(ExecutorService executor, int threads, String name, Callable<Object> task) throws Exception {
+		long start = System.nanoTime();
+		var futures = new ArrayList<Future<Object>>(threads);
+
+		for (int i = 0; i < threads; i++) {
+			futures.add(executor.submit(task));
+		}
+
+		Object result = null;
+
+		for (var future : futures) {
+			result = future.get();
+		}
+
+		System.out.println("  " + name + ": " + (System.nanoTime() - start) / 1000000L + " ms (" + result + ")");
+	}
+}
@@ -0,0 +1,80 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.mod.util.NBTStreamWriter;
+import dev.latvian.mods.rhino.mod.util.NBTUtils;
+import dev.latvian.mods.rhino.mod.util.NbtType;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.nbt.TagTypes;
+import net.minecraft.network.FriendlyByteBuf;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+public class NBTStreamTest {
+	public static void main(String[] args) {
+		System.out.println("NBT Stream Writer Test");
+
+		// Should print [1,2,3] true
+		{
+			var buf = new FriendlyByteBuf(Unpooled.buffer());
+			var writer = NBTStreamWriter.of(buf)
+					.beginList(null, NbtType.INT, 3)
+					.putInt(null, 1)
+					.putInt(null, 2)
+					.putInt(null, 3)
+					.end();
+			System.out.println(readRoot(buf) + " " + writer.isFinished());
+		}
+
+		// Should print [["a","b"],[]] true
+		{
+			var buf = new FriendlyByteBuf(Unpooled.buffer());
+			var writer = NBTStreamWriter.of(buf)
+					.beginList(null, NbtType.LIST, 2)
+					.beginList(null, NbtType.STRING, 2)
+					.putString(null, "a")
+					.putString(null, "b")
+					.end()
+					.beginList(null, NbtType.STRING, 0)
+					.end()
+					.end();
+			System.out.println(readRoot(buf) + " " + writer.isFinished());
+		}
+
+		// Should print {a:1b,b:[1.5d]} true
+		{
+			var buf = new FriendlyByteBuf(Unpooled.buffer());
+			var writer = NBTStreamWriter.of(buf)
+					.beginCompound(null)
+					.putByte("a", (byte) 1)
+					.beginList("b", NbtType.DOUBLE, 1)
+					.putDouble(null, 1.5D)
+					.end()
+					.end();
+			System.out.println(NBTUtils.read(buf) + " " + writer.isFinished());
+		}
+
+		// Should print Root tag has already been written
+		try {
+			var buf = new FriendlyByteBuf(Unpooled.buffer());
+			NBTStreamWriter.of(buf).beginList(null, NbtType.INT, 0).end().putInt(null, 1);
+		} catch (IllegalStateException ex) {
+			System.out.println(ex.getMessage());
+		}
+	}
+
+	private static Tag readRoot(FriendlyByteBuf buf) {
+		try {
+			var stream = new DataInputStream(new ByteBufInputStream(buf));
+			var type = TagTypes.getType(stream.readByte());
+			StringTag.skipString(stream);
+			return type.load(stream, 0, NbtAccounter.UNLIMITED);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+}
@@ -27,6 +27,13 @@ public class RhinoTest {
 		// test.load("/rhinotest/nbt.js");
 		test.load("/rhinotest/nullish_coalescing.js");
 		test.load("/rhinotest/pow.js");
+
+		// Functions called more than 10 times run compiled from here on
+		context.setCompileThreshold(10);
+		test.load("/rhinotest/compiled_functions.js");
+		test.load("/rhinotest/property_cache.js");
+		test.load("/rhinotest/shapes.js");
+		test.load("/rhinotest/packed_arrays.js");
 	}
 
 	public final Context context;
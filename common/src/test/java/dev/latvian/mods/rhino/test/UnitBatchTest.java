@@ -0,0 +1,60 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.util.unit.FixedUnit;
+import dev.latvian.mods.rhino.util.unit.UnitBatch;
+import dev.latvian.mods.rhino.util.unit.UnitStorage;
+
+import java.util.Map;
+
+public class UnitBatchTest {
+	private static final String[] UNITS = {
+			"($x+($y*2))",
+			"(($x%$y)+($y%$x))",
+			"(0.5<<if(($x/$x), $y, ((100.0%$y)<sin($y))))",
+			"if(($x>$y), ($x<<2), ($y>>1))",
+			"color($x, $y, 255)",
+			"(($x^$y)==($y!=0))",
+			"min(abs($x), sqrt($y))",
+			"floor(($x/3))",
+			"if($y, (1<<($x%$y)), 2)",
+	};
+
+	private static final float[] XS = {0F, 1F, -3F, 2.5F, 7F, 100F, Float.NaN, -0.5F};
+	private static final float[] YS = {0F, 3F, 0F, -1F, 2F, 0.25F, 5F, 0F};
+
+	public static void main(String[] args) {
+		System.out.println("Unit Batch Test");
+
+		// Should print 0 differences for every unit
+		var storage = new UnitStorage();
+
+		for (String string : UNITS) {
+			var unit = storage.parse(string);
+			var batch = new UnitBatch(unit);
+			var out = new float[XS.length];
+			batch.evaluate(Map.of("x", XS, "y", YS), out);
+			int differences = 0;
+
+			for (int i = 0; i < XS.length; i++) {
+				storage.setVariable("x", FixedUnit.of(XS[i]));
+				storage.setVariable("y", FixedUnit.of(YS[i]));
+
+				float expected;
+
+				try {
+					expected = unit.get();
+				} catch (ArithmeticException ex) {
+					// The single evaluation has no value to compare with
+					continue;
+				}
+
+				if (Float.compare(expected, out[i]) != 0) {
+					differences++;
+					System.out.println("  " + string + " [" + i + "]: " + expected + " != " + out[i]);
+				}
+			}
+
+			System.out.println(string + ": " + differences + " differences");
+		}
+	}
+}
@@ -0,0 +1,121 @@
+console.info('Compiled Functions Test')
+
+// Every function is called more often than the compile threshold, so later calls run compiled
+
+function sum(n) {
+	let s = 0
+	for (let i = 0; i < n; i++) {
+		s += i
+	}
+	return s
+}
+
+function fib(n) {
+	return n < 2 ? n : fib(n - 1) + fib(n - 2)
+}
+
+// Recursion deeper than the Java stack allows for compiled calls
+function count(n) {
+	return n ? count(n - 1) + 1 : 0
+}
+
+function label(name, n) {
+	return name + ':' + n
+}
+
+function area(rect) {
+	return rect.w * rect.h
+}
+
+function optional(a, b) {
+	return b === undefined ? a : a + b
+}
+
+function describe(v) {
+	if (v === null) {
+		return 'null'
+	} else if (typeof v === 'number') {
+		return v > 0 ? 'positive' : 'not positive'
+	}
+
+	return typeof v
+}
+
+function Point(x, y) {
+	this.x = x
+	this.y = y
+}
+
+Point.prototype.length = function () {
+	return Math.sqrt(this.x * this.x + this.y * this.y)
+}
+
+// Should print 4950.0
+{
+	let c = 0
+	for (let i = 0; i < 100; i++) {
+		c = sum(100)
+	}
+	console.info(c)
+}
+
+// Should print 610.0
+{
+	let c = fib(15)
+	console.info(c)
+}
+
+// Should print a:0 | a:99
+{
+	let c = []
+	for (let i = 0; i < 100; i++) {
+		c.push(label('a', i))
+	}
+	console.info(c[0] + ' | ' + c[99])
+}
+
+// Should print 50500.0
+{
+	let c = 0
+	for (let i = 0; i < 100; i++) {
+		c += area({w: i + 1, h: 10})
+	}
+	console.info(c)
+}
+
+// Should print 5050.0
+{
+	let c = 0
+	for (let i = 0; i < 50; i++) {
+		c += optional(i) + optional(i, 51)
+	}
+	console.info(c + 50)
+}
+
+// Should print null positive not positive string object undefined
+{
+	let c = ''
+	for (let i = 0; i < 20; i++) {
+		c = [describe(null), describe(1), describe(-1), describe('a'), describe({}), describe(undefined)].join(' ')
+	}
+	console.info(c)
+}
+
+// Should print 500.0
+{
+	let c = 0
+	for (let i = 0; i < 100; i++) {
+		c += new Point(3, 4).length()
+	}
+	console.info(c)
+}
+
+// Should print 50000.0
+{
+	let c = 0
+	for (let i = 0; i < 20; i++) {
+		c = count(10)
+	}
+	c = count(50000)
+	console.info(c)
+}
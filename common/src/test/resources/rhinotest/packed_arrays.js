@@ -0,0 +1,111 @@
+console.info('Packed Array Test')
+
+// Arrays of only numbers keep them unboxed until anything else is stored
+
+// Should print 100 4950 1,2.5,-3
+{
+	let a = []
+	for (let i = 0; i < 100; i++) {
+		a.push(i)
+	}
+	let sum = 0
+	for (let v of a) {
+		sum += v
+	}
+	console.info([a.length, sum, [1, 2.5, -3].join(',')].join(' '))
+}
+
+// Should print 1,x,3 string number
+{
+	let a = [1, 2, 3]
+	a[1] = 'x'
+	console.info([a.join(','), typeof a[1], typeof a[2]].join(' '))
+}
+
+// Should print 6 1,,3,,,6 false true true
+{
+	let a = [1, , 3]
+	a[5] = 6
+	console.info([a.length, a.join(','), 1 in a, 2 in a, a[4] === undefined].join(' '))
+}
+
+// Should print 4 true 2 true 1 1.5 0
+{
+	let a = [1.5, 2.5]
+	a[3] = 4
+	let c = [a.pop()]
+	c.push(a.pop() === undefined, a.length)
+	c.push(a.pop() === 2.5, a.length, a.pop(), a.length)
+	console.info(c.join(' '))
+}
+
+// Should print true 3 1,2,
+{
+	let a = [1, 2]
+	a.length = 4
+	let c = [a.pop() === undefined, a.length]
+	c.push(a.join(','))
+	console.info(c.join(' '))
+}
+
+// Should print 1 true true 0 true 6
+{
+	let a = []
+	a[2] = 1
+	let c = [a.pop()]
+	c.push(a.pop() === undefined, a.pop() === undefined, a.length)
+	let b = [1, 2, 3, 4]
+	b.unshift(0)
+	b.length = 7
+	c.push(b.pop() === undefined, b.length)
+	console.info(c.join(' '))
+}
+
+// Should print -1,1.5,10,9 -1,1.5,9,10 10,9,1.5,-1
+{
+	let a = [10, 9, 1.5, -1]
+	let c = [a.slice().sort().join(',')]
+	c.push(a.slice().sort((x, y) => x - y).join(','))
+	c.push(a.slice().sort((x, y) => y - x).join(','))
+	console.info(c.join(' '))
+}
+
+// Should print 1,3,,, 5 true false false
+{
+	let a = [3, undefined, , 1]
+	a.length = 5
+	a.sort()
+	console.info([a.join(','), a.length, 2 in a, 3 in a, 4 in a].join(' '))
+}
+
+// Should print -1 true true
+{
+	let a = [NaN, -0, 0]
+	console.info([a.indexOf(NaN), a.includes(NaN), 1 / a[1] === -Infinity].join(' '))
+}
+
+// Should print 3,2,1 1,9,9,3 0,0,0 1,2,3,4 2,3
+{
+	let a = [1, 2, 3]
+	let c = [a.slice().reverse().join(',')]
+	let b = a.slice()
+	b.splice(1, 1, 9, 9)
+	c.push(b.join(','))
+	c.push(new Array(3).fill(0).join(','))
+	c.push(a.concat([4]).join(','))
+	c.push(a.slice(1).join(','))
+	console.info(c.join(' '))
+}
+
+// Should print 1 1,,,4 2
+{
+	let a = [1, 2, 3]
+	a.length = 1
+	let c = [a.join(',')]
+	a[3] = 4
+	c.push(a.join(','))
+	a.length = 0
+	a.push(2)
+	c.push(a.join(','))
+	console.info(c.join(' '))
+}
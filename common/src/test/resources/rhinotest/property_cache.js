@@ -0,0 +1,114 @@
+console.info('Property Cache Test')
+
+// Each function holds one property access site, which caches the shapes it has seen
+
+function getX(o) {
+	return o.x
+}
+
+function setX(o, v) {
+	o.x = v
+}
+
+function getName(o) {
+	return o.name
+}
+
+function Named() {
+}
+
+Named.prototype.name = 'proto'
+
+// Should print 4950.0
+{
+	let c = 0
+	for (let i = 0; i < 100; i++) {
+		c += getX({x: i, y: 1})
+	}
+	console.info(c)
+}
+
+// Should print 1 2 3 4 1 2 3 4
+{
+	let objects = [{x: 1}, {y: 0, x: 2}, {z: 0, y: 0, x: 3}, {w: 0, z: 0, y: 0, x: 4}]
+	let c = []
+	for (let i = 0; i < 8; i++) {
+		c.push(getX(objects[i % 4]))
+	}
+	console.info(c.join(' '))
+}
+
+// Should print 1 2 3 4 5 6 7 8 undefined
+{
+	let objects = [{x: 1}, {a: 0, x: 2}, {b: 0, x: 3}, {c: 0, x: 4}, {d: 0, x: 5}, {e: 0, x: 6}, {f: 0, x: 7}, {g: 0, x: 8}, {h: 0}]
+	let c = []
+	for (let i = 0; i < 2; i++) {
+		c = objects.map(o => String(getX(o)))
+	}
+	console.info(c.join(' '))
+}
+
+// Should print proto proto own proto changed
+{
+	let a = new Named()
+	let b = new Named()
+	let c = []
+	for (let i = 0; i < 20; i++) {
+		c = [getName(a), getName(b)]
+	}
+	b.name = 'own'
+	c.push(getName(b))
+	c.push(getName(a))
+	Named.prototype.name = 'changed'
+	c.push(getName(a))
+	console.info(c.join(' '))
+}
+
+// Should print 10 20 accessor:30 30
+{
+	let a = {x: 0}
+	let b = {x: 0}
+	let log = []
+	for (let i = 0; i < 20; i++) {
+		setX(a, 10)
+		setX(b, 20)
+	}
+	let c = [getX(a), getX(b)]
+	Object.defineProperty(b, 'x', {
+		get() {
+			return 'accessor:' + log[0]
+		},
+		set(v) {
+			log.push(v)
+		}
+	})
+	setX(b, 30)
+	c.push(getX(b))
+	c.push(log.join(','))
+	console.info(c.join(' '))
+}
+
+// Should print 5 1 5
+{
+	let a = {x: 1}
+	let b = Object.freeze({x: 1})
+	for (let i = 0; i < 20; i++) {
+		setX(a, 5)
+		setX(b, 5)
+	}
+	console.info([getX(a), getX(b), getX(a)].join(' '))
+}
+
+// Should print 7 8 true 9
+{
+	let a = {y: 0}
+	let b = {y: 0}
+	setX(a, 7)
+	setX(b, 8)
+	let c = [getX(a), getX(b)]
+	delprop b.x
+	c.push(getX(b) === undefined)
+	setX(b, 9)
+	c.push(getX(b))
+	console.info(c.join(' '))
+}
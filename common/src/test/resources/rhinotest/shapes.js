@@ -0,0 +1,110 @@
+console.info('Object Shape Test')
+
+// Objects built with the same keys in the same order share a shape, anything else must not be affected by that
+
+function point(x, y) {
+	let o = {}
+	o.x = x
+	o.y = y
+	return o
+}
+
+// Should print {"x":1.0,"y":2.0} {"y":2.0,"x":1.0} {"x":3.0,"y":4.0}
+{
+	let a = point(1, 2)
+	let b = {}
+	b.y = 2
+	b.x = 1
+	let c = []
+	for (let i = 0; i < 20; i++) {
+		c.push(point(3, 4))
+	}
+	c = c[19]
+	console.info([JSON.stringify(a), JSON.stringify(b), JSON.stringify(c)].join(' '))
+}
+
+// Should print a,c a,c,d a,c,d,b 1 3 4 5
+{
+	let o = {a: 1, b: 2, c: 3}
+	delprop o.b
+	let c = [Object.keys(o).join(',')]
+	o.d = 4
+	c.push(Object.keys(o).join(','))
+	o.b = 5
+	c.push(Object.keys(o).join(','))
+	c.push(o.a, o.c, o.d, o.b)
+	console.info(c.join(' '))
+}
+
+// Should print {"x":1.0,"y":2.0} {"x":1.0} true false
+{
+	let a = point(1, 2)
+	let b = point(1, 2)
+	delprop b.y
+	console.info([JSON.stringify(a), JSON.stringify(b), 'y' in a, 'y' in b].join(' '))
+}
+
+// Should print 0 {"b":2.0,"a":1.0}
+{
+	let o = {a: 0, b: 0}
+	delprop o.a
+	delprop o.b
+	let c = [Object.keys(o).length]
+	o.b = 2
+	o.a = 1
+	c.push(JSON.stringify(o))
+	console.info(c.join(' '))
+}
+
+// Should print 1,2,b,a y x 1 2
+{
+	let o = {b: 1}
+	o[2] = 'x'
+	o.a = 2
+	o[1] = 'y'
+	console.info([Object.keys(o).join(','), o[1], o[2], o.b, o.a].join(' '))
+}
+
+// Should print 200 19900 p0 p199 150 p50
+{
+	let o = {}
+	for (let i = 0; i < 200; i++) {
+		o['p' + i] = i
+	}
+	let sum = 0
+	for (let key of Object.keys(o)) {
+		sum += o[key]
+	}
+	let c = [Object.keys(o).length, sum, Object.keys(o)[0], Object.keys(o)[199]]
+	for (let i = 0; i < 50; i++) {
+		delprop o['p' + i]
+	}
+	c.push(Object.keys(o).length, Object.keys(o)[0])
+	console.info(c.join(' '))
+}
+
+// Should print 1 {"x":1.0,"y":20.0,"z":30.0} {"x":1.0,"y":2.0}
+{
+	let a = point(1, 2)
+	let b = Object.assign({}, a, {y: 20, z: 30})
+	console.info([b.x, JSON.stringify(b), JSON.stringify(a)].join(' '))
+}
+
+// Should print a,b 3 2 {"a":3.0} 0 4 a
+{
+	let o = {}
+	o.a = 1
+	o.b = 2
+	let c = [Object.keys(o).join(',')]
+	o.a = 3
+	c.push(o.a, Object.getOwnPropertyDescriptor(o, 'b').value)
+	delprop o.b
+	c.push(JSON.stringify(o))
+	Object.defineProperty(o, 'a', {value: 4, enumerable: false})
+	let keys = []
+	for (let key in o) {
+		keys.push(key)
+	}
+	c.push(keys.length, o.a, Object.getOwnPropertyNames(o).join(','))
+	console.info(c.join(' '))
+}